@@ -0,0 +1,68 @@
+package com.github.bytesutils.benchmark;
+
+import com.github.bytesutils.BitReader;
+import com.github.bytesutils.BitWriter;
+import com.github.bytesutils.ByteArrayList;
+import com.github.bytesutils.BytesReader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+
+/**
+ * BitReader和BitWriter按12位和5位读写4K的数据,结果为单个值的吞吐量
+ */
+@State(Scope.Thread)
+public class BitBenchmark {
+
+    private static final int SIZE = 4096;
+    private static final int COUNT12 = SIZE * 8 / 12;
+
+    private byte[] data;
+    private final int[] values = new int[COUNT12];
+
+    @Setup
+    public void setup() {
+        data = new byte[SIZE];
+        new Random(42).nextBytes(data);
+        for (int i = 0; i < COUNT12; i++) {
+            values[i] = i & 0xFFF;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT12)
+    public void getBits12(Blackhole bh) {
+        BitReader reader = new BitReader(new BytesReader(data));
+        for (int i = 0; i < COUNT12; i++) {
+            bh.consume(reader.getBits(12));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE * 8 / 5)
+    public void getBits5Lsb(Blackhole bh) {
+        BitReader reader = new BitReader(new BytesReader(data), false);
+        for (int i = 0; i < SIZE * 8 / 5; i++) {
+            bh.consume(reader.getBits(5));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT12)
+    public int[] unpack12() {
+        new BitReader(new BytesReader(data)).getBits(values, 0, COUNT12, 12);
+        return values;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT12)
+    public ByteArrayList putBits12() {
+        return new BitWriter(new ByteArrayList(SIZE)).putBits(values, 0, COUNT12, 12).flush();
+    }
+}
@@ -0,0 +1,334 @@
+package com.github.bytesutils.benchmark;
+
+import com.github.bytesutils.ByteArrayList;
+import com.github.bytesutils.ByteArrayListPool;
+import com.github.bytesutils.DataType;
+import com.github.bytesutils.DirectByteArrayList;
+import com.github.bytesutils.SegmentedByteArrayList;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+
+/**
+ * 使用ByteArrayList的每一种add方法构建约4K的数据,结果为单次add的吞吐量
+ * 每次调用都从默认容量开始,包含了扩容的开销
+ */
+@State(Scope.Thread)
+public class ByteArrayListBenchmark {
+
+    private static final int SIZE = 4096;
+    private static final int LARGE_SIZE = 1 << 20;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private byte[] chunk;
+    private String text;
+    private ByteArrayListPool pool;
+    private CountingStream out;
+    private CountingChannel channel;
+    private DirectByteArrayList direct;
+
+    @Setup
+    public void setup() {
+        chunk = new byte[16];
+        for (int i = 0; i < chunk.length; i++) {
+            chunk[i] = (byte) i;
+        }
+        text = "0123456789abcdef";
+        pool = new ByteArrayListPool(SIZE * 2, 4);
+        out = new CountingStream();
+        channel = new CountingChannel();
+        direct = new DirectByteArrayList(SIZE * 2);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public byte[] addByte() {
+        ByteArrayList list = new ByteArrayList();
+        for (int i = 0; i < SIZE; i++) {
+            list.add((byte) i);
+        }
+        return list.toArray();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE / 2)
+    public byte[] addShort() {
+        ByteArrayList list = new ByteArrayList();
+        for (int i = 0; i < SIZE / 2; i++) {
+            list.add((short) i, true);
+        }
+        return list.toArray();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE / 4)
+    public byte[] addInt() {
+        ByteArrayList list = new ByteArrayList();
+        for (int i = 0; i < SIZE / 4; i++) {
+            list.add(i, true);
+        }
+        return list.toArray();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE / 4)
+    public byte[] addIntBe() {
+        ByteArrayList list = new ByteArrayList();
+        for (int i = 0; i < SIZE / 4; i++) {
+            list.add(i, false);
+        }
+        return list.toArray();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE / 8)
+    public byte[] addLong() {
+        ByteArrayList list = new ByteArrayList();
+        for (int i = 0; i < SIZE / 8; i++) {
+            list.add((long) i, true);
+        }
+        return list.toArray();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE / 4)
+    public byte[] addFloat() {
+        ByteArrayList list = new ByteArrayList();
+        for (int i = 0; i < SIZE / 4; i++) {
+            list.add((float) i, true);
+        }
+        return list.toArray();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE / 8)
+    public byte[] addDouble() {
+        ByteArrayList list = new ByteArrayList();
+        for (int i = 0; i < SIZE / 8; i++) {
+            list.add((double) i, true);
+        }
+        return list.toArray();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE / 16)
+    public byte[] addBytes() {
+        ByteArrayList list = new ByteArrayList();
+        for (int i = 0; i < SIZE / 16; i++) {
+            list.add(chunk);
+        }
+        return list.toArray();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE / 16)
+    public byte[] addBytesRange() {
+        ByteArrayList list = new ByteArrayList();
+        for (int i = 0; i < SIZE / 16; i++) {
+            list.add(chunk, 0, chunk.length);
+        }
+        return list.toArray();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE / 16)
+    public byte[] addStringCharset() {
+        ByteArrayList list = new ByteArrayList();
+        for (int i = 0; i < SIZE / 16; i++) {
+            list.add(text, UTF_8);
+        }
+        return list.toArray();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE / 16)
+    public byte[] addStringName() {
+        ByteArrayList list = new ByteArrayList();
+        for (int i = 0; i < SIZE / 16; i++) {
+            list.add(text, "UTF-8");
+        }
+        return list.toArray();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE / 16)
+    public byte[] addStringPrefixed() {
+        ByteArrayList list = new ByteArrayList();
+        for (int i = 0; i < SIZE / 16; i++) {
+            list.add(text, UTF_8, DataType.TYPE_MUABLE1);
+        }
+        return list.toArray();
+    }
+
+    /**
+     * 先构建内容,再用add(int, byte[])把2字节长度头插入到最前面
+     */
+    @Benchmark
+    @OperationsPerInvocation(SIZE / 16)
+    public byte[] frameInsertHeader() {
+        ByteArrayList list = new ByteArrayList();
+        for (int i = 0; i < SIZE / 16; i++) {
+            list.add(chunk);
+        }
+        list.add(0, new byte[]{(byte) list.size(), (byte) (list.size() >> 8)});
+        return list.toArray();
+    }
+
+    /**
+     * 先预留2字节长度头,构建内容后再回填,只需要一次顺序写入
+     */
+    @Benchmark
+    @OperationsPerInvocation(SIZE / 16)
+    public byte[] frameReserveHeader() {
+        ByteArrayList list = new ByteArrayList();
+        int header = list.reserve(2);
+        for (int i = 0; i < SIZE / 16; i++) {
+            list.add(chunk);
+        }
+        list.setU16At(header, list.size() - 2);
+        return list.toArray();
+    }
+
+    /**
+     * 每一帧都新建ByteArrayList,通过toArray拷贝后写出
+     */
+    @Benchmark
+    @OperationsPerInvocation(SIZE / 16)
+    public long frameNew() throws IOException {
+        ByteArrayList list = new ByteArrayList();
+        int header = list.reserve(2);
+        for (int i = 0; i < SIZE / 16; i++) {
+            list.add(chunk);
+        }
+        list.setU16At(header, list.size() - 2);
+        out.write(list.toArray());
+        return out.count;
+    }
+
+    /**
+     * 从池中获取ByteArrayList,直接写出后归还,稳定运行后不分配新的对象
+     */
+    @Benchmark
+    @OperationsPerInvocation(SIZE / 16)
+    public long framePooled() throws IOException {
+        ByteArrayList list = pool.obtain();
+        int header = list.reserve(2);
+        for (int i = 0; i < SIZE / 16; i++) {
+            list.add(chunk);
+        }
+        list.setU16At(header, list.size() - 2);
+        list.writeTo(out);
+        pool.recycle(list);
+        return out.count;
+    }
+
+    /**
+     * 用ByteArrayList构建1M的数据后写出,扩容时会反复拷贝已有的数据
+     */
+    @Benchmark
+    @OperationsPerInvocation(LARGE_SIZE / 16)
+    public long largeArray() throws IOException {
+        ByteArrayList list = new ByteArrayList();
+        for (int i = 0; i < LARGE_SIZE / 16; i++) {
+            list.add(chunk);
+        }
+        list.writeTo(out);
+        return out.count;
+    }
+
+    /**
+     * 用SegmentedByteArrayList构建1M的数据后逐块写出,扩充时不拷贝已有的数据
+     */
+    @Benchmark
+    @OperationsPerInvocation(LARGE_SIZE / 16)
+    public long largeSegmented() throws IOException {
+        SegmentedByteArrayList list = new SegmentedByteArrayList();
+        for (int i = 0; i < LARGE_SIZE / 16; i++) {
+            list.add(chunk);
+        }
+        list.writeTo(out);
+        return out.count;
+    }
+
+    /**
+     * 在堆上构建一帧,toArray后包装为ByteBuffer写入通道
+     */
+    @Benchmark
+    @OperationsPerInvocation(SIZE / 16)
+    public long frameHeapChannel() throws IOException {
+        ByteArrayList list = new ByteArrayList();
+        int header = list.reserve(2);
+        for (int i = 0; i < SIZE / 16; i++) {
+            list.add(chunk);
+        }
+        list.setU16At(header, list.size() - 2);
+        channel.write(ByteBuffer.wrap(list.toArray()));
+        return channel.count;
+    }
+
+    /**
+     * 在直接内存中构建一帧,直接写入通道,复用同一个DirectByteArrayList
+     */
+    @Benchmark
+    @OperationsPerInvocation(SIZE / 16)
+    public long frameDirectChannel() throws IOException {
+        DirectByteArrayList list = direct.reset();
+        int header = list.reserve(2);
+        for (int i = 0; i < SIZE / 16; i++) {
+            list.add(chunk);
+        }
+        list.setU16At(header, list.size() - 2);
+        list.writeTo(channel);
+        return channel.count;
+    }
+
+    /**
+     * 只统计写入的字节数
+     */
+    private static final class CountingStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    /**
+     * 只统计写入的字节数
+     */
+    private static final class CountingChannel implements WritableByteChannel {
+        long count;
+
+        @Override
+        public int write(ByteBuffer src) {
+            int n = src.remaining();
+            src.position(src.limit());
+            count += n;
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
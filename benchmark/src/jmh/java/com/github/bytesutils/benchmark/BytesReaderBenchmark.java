@@ -0,0 +1,231 @@
+package com.github.bytesutils.benchmark;
+
+import com.github.bytesutils.ByteArrayList;
+import com.github.bytesutils.BytesReader;
+import com.github.bytesutils.CompositeBytesReader;
+import com.github.bytesutils.StringDecoder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * BytesReader从头到尾顺序读取4K的数据,每次调用读取的次数见{@link OperationsPerInvocation},结果为单次读取的吞吐量
+ */
+@State(Scope.Thread)
+public class BytesReaderBenchmark {
+
+    private static final int SIZE = 4096;
+    /**
+     * 随机数据中不存在的同步字,每次都要扫描到末尾
+     */
+    private static final byte[] SYNC_WORD = {0x7E, 0x7E, (byte) 0xA5, 0x5A, 0x7E, 0x7E};
+    /**
+     * 变长整数的个数,大部分只占1到2个字节
+     */
+    private static final int VARINT_COUNT = 1024;
+
+    private byte[] data;
+    private byte[] padding;
+    private byte[] varints;
+    /**
+     * 将data分为3段,两处分割点都不是4字节对齐的
+     */
+    private byte[][] chunks;
+    private final short[] shorts = new short[SIZE / 2];
+    private final int[] ints = new int[SIZE / 4];
+    private final double[] doubles = new double[SIZE / 8];
+    private final StringDecoder decoder = new StringDecoder("UTF-8");
+    private final StringBuilder builder = new StringBuilder();
+
+    @Setup
+    public void setup() {
+        data = new byte[SIZE];
+        new Random(42).nextBytes(data);
+        padding = new byte[SIZE];
+        Arrays.fill(padding, (byte) 0xFF);
+        Random random = new Random(42);
+        ByteArrayList list = new ByteArrayList(VARINT_COUNT * 2);
+        for (int i = 0; i < VARINT_COUNT; i++) {
+            list.addVarU32(i % 16 == 0 ? random.nextInt() & 0xffffffffL : random.nextInt(1 << 14));
+        }
+        varints = list.toArray();
+        chunks = new byte[][]{Arrays.copyOfRange(data, 0, 1365), Arrays.copyOfRange(data, 1365, 2731),
+                Arrays.copyOfRange(data, 2731, SIZE)};
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void getU8(Blackhole bh) {
+        BytesReader reader = new BytesReader(data);
+        for (int i = 0; i < SIZE; i++) {
+            bh.consume(reader.getU8());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE / 2)
+    public void getU16(Blackhole bh) {
+        BytesReader reader = new BytesReader(data);
+        for (int i = 0; i < SIZE / 2; i++) {
+            bh.consume(reader.getU16(true));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE / 2)
+    public void getS16Be(Blackhole bh) {
+        BytesReader reader = new BytesReader(data);
+        for (int i = 0; i < SIZE / 2; i++) {
+            bh.consume(reader.getS16(false));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE / 2)
+    public short[] getS16ArrayBe() {
+        new BytesReader(data).getS16Array(shorts, 0, SIZE / 2, false);
+        return shorts;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE / 4)
+    public void getS32(Blackhole bh) {
+        BytesReader reader = new BytesReader(data);
+        for (int i = 0; i < SIZE / 4; i++) {
+            bh.consume(reader.getS32(true));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE / 4)
+    public void getS32Composite(Blackhole bh) {
+        BytesReader reader = new CompositeBytesReader(chunks);
+        for (int i = 0; i < SIZE / 4; i++) {
+            bh.consume(reader.getS32(true));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE / 4)
+    public int[] getS32Array() {
+        new BytesReader(data).getS32Array(ints, 0, SIZE / 4, true);
+        return ints;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE / 4)
+    public void getU32Be(Blackhole bh) {
+        BytesReader reader = new BytesReader(data);
+        for (int i = 0; i < SIZE / 4; i++) {
+            bh.consume(reader.getU32(false));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE / 8)
+    public void getS64(Blackhole bh) {
+        BytesReader reader = new BytesReader(data);
+        for (int i = 0; i < SIZE / 8; i++) {
+            bh.consume(reader.getS64(true));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE / 4)
+    public void getFloat(Blackhole bh) {
+        BytesReader reader = new BytesReader(data);
+        for (int i = 0; i < SIZE / 4; i++) {
+            bh.consume(reader.getFloat(true));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE / 8)
+    public void getDouble(Blackhole bh) {
+        BytesReader reader = new BytesReader(data);
+        for (int i = 0; i < SIZE / 8; i++) {
+            bh.consume(reader.getDouble(true));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE / 8)
+    public double[] getDoubleArray() {
+        new BytesReader(data).getDoubleArray(doubles, 0, SIZE / 8, true);
+        return doubles;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE / 16)
+    public void getBytes16(Blackhole bh) {
+        BytesReader reader = new BytesReader(data);
+        for (int i = 0; i < SIZE / 16; i++) {
+            bh.consume(reader.getBytes(16));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE / 16)
+    public void getString16(Blackhole bh) {
+        BytesReader reader = new BytesReader(data);
+        for (int i = 0; i < SIZE / 16; i++) {
+            bh.consume(reader.getString(16, "ISO-8859-1"));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE / 16)
+    public void getString16Decoder(Blackhole bh) {
+        BytesReader reader = new BytesReader(data);
+        for (int i = 0; i < SIZE / 16; i++) {
+            builder.setLength(0);
+            bh.consume(reader.getString(16, decoder, builder));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VARINT_COUNT)
+    public void getVarU32(Blackhole bh) {
+        BytesReader reader = new BytesReader(varints);
+        for (int i = 0; i < VARINT_COUNT; i++) {
+            bh.consume(reader.getVarU32());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE / 2)
+    public void spyU16(Blackhole bh) {
+        BytesReader reader = new BytesReader(data);
+        for (int i = 0; i < SIZE / 2; i++) {
+            bh.consume(reader.spyU16(true));
+            reader.getU16(true);
+        }
+    }
+
+    @Benchmark
+    public String toHexString() {
+        return BytesReader.toString(data);
+    }
+
+    @Benchmark
+    public boolean isLeftoverAllFF() {
+        return new BytesReader(data).isLeftoverAllFF();
+    }
+
+    @Benchmark
+    public boolean isRemainingFilledWithFF() {
+        return new BytesReader(padding).isRemainingFilledWith((byte) 0xFF);
+    }
+
+    @Benchmark
+    public int indexOfSyncWord() {
+        return new BytesReader(data).indexOf(SYNC_WORD);
+    }
+}
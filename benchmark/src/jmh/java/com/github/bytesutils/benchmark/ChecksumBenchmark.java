@@ -0,0 +1,80 @@
+package com.github.bytesutils.benchmark;
+
+import com.github.bytesutils.BytesReader;
+import com.github.bytesutils.Checksums;
+import com.github.bytesutils.Crc;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.zip.Checksum;
+
+/**
+ * 对BytesReader中4K的数据计算校验和,与逐个字节计算的CRC-16/MODBUS对比,结果为单个字节的吞吐量
+ */
+@State(Scope.Thread)
+public class ChecksumBenchmark {
+
+    private static final int SIZE = 4096;
+
+    private byte[] data;
+    private BytesReader reader;
+    private final Crc crc16 = Crc.crc16Modbus();
+    private final Crc crc32c = Crc.crc32c();
+    private final Checksum crc32 = Checksums.crc32();
+    private final Checksum sum8 = Checksums.sum8();
+
+    @Setup
+    public void setup() {
+        data = new byte[SIZE];
+        new Random(42).nextBytes(data);
+        reader = new BytesReader(data);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public int crc16ModbusBitwise() {
+        int crc = 0xFFFF;
+        for (int i = 0; i < SIZE; i++) {
+            crc ^= data[i] & 0xff;
+            for (int j = 0; j < 8; j++) {
+                crc = (crc & 1) != 0 ? crc >>> 1 ^ 0xA001 : crc >>> 1;
+            }
+        }
+        return crc;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public long crc16Modbus() {
+        return checksum(crc16);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public long crc32c() {
+        return checksum(crc32c);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public long crc32() {
+        return checksum(crc32);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public long sum8() {
+        return checksum(sum8);
+    }
+
+    private long checksum(Checksum checksum) {
+        checksum.reset();
+        reader.updateChecksum(checksum, 0, SIZE);
+        return checksum.getValue();
+    }
+}
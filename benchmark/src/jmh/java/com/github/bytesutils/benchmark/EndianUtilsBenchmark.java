@@ -0,0 +1,123 @@
+package com.github.bytesutils.benchmark;
+
+import com.github.bytesutils.EndianUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * EndianUtils中各种数据类型与大小端byte数组的互转
+ * 返回新数组的方法与直接读写指定位置的方法分别测试,便于对比中间数组带来的开销
+ */
+@State(Scope.Thread)
+public class EndianUtilsBenchmark {
+
+    private final byte[] bytes = new byte[8];
+    private short s;
+    private int i;
+    private long l;
+    private float f;
+    private double d;
+
+    @Setup
+    public void setup() {
+        for (int k = 0; k < bytes.length; k++) {
+            bytes[k] = (byte) (k * 31 + 7);
+        }
+        s = 0x1234;
+        i = 0x12345678;
+        l = 0x123456789abcdef0L;
+        f = 3.14f;
+        d = 2.718281828;
+    }
+
+    @Benchmark
+    public byte[] shortToLe() {
+        return EndianUtils.toLe(s);
+    }
+
+    @Benchmark
+    public byte[] intToLe() {
+        return EndianUtils.toLe(i);
+    }
+
+    @Benchmark
+    public byte[] longToBe() {
+        return EndianUtils.toBe(l);
+    }
+
+    @Benchmark
+    public byte[] floatToLe() {
+        return EndianUtils.toLe(f);
+    }
+
+    @Benchmark
+    public byte[] doubleToBe() {
+        return EndianUtils.toBe(d);
+    }
+
+    @Benchmark
+    public byte[] intToLeInPlace() {
+        EndianUtils.toLe(i, bytes, 0);
+        return bytes;
+    }
+
+    @Benchmark
+    public byte[] longToBeInPlace() {
+        EndianUtils.toBe(l, bytes, 0);
+        return bytes;
+    }
+
+    @Benchmark
+    public byte[] doubleToBeInPlace() {
+        EndianUtils.toBe(d, bytes, 0);
+        return bytes;
+    }
+
+    @Benchmark
+    public short le2Short() {
+        return EndianUtils.le2Short(bytes);
+    }
+
+    @Benchmark
+    public int le2Int() {
+        return EndianUtils.le2Int(bytes);
+    }
+
+    @Benchmark
+    public long be2Long() {
+        return EndianUtils.be2Long(bytes);
+    }
+
+    @Benchmark
+    public float le2Float() {
+        return EndianUtils.le2Float(bytes);
+    }
+
+    @Benchmark
+    public double be2Double() {
+        return EndianUtils.be2Double(bytes);
+    }
+
+    @Benchmark
+    public long le2U32() {
+        return EndianUtils.le2U32(bytes);
+    }
+
+    @Benchmark
+    public int le2IntAtOffset() {
+        return EndianUtils.le2Int(bytes, 0);
+    }
+
+    @Benchmark
+    public long be2LongAtOffset() {
+        return EndianUtils.be2Long(bytes, 0);
+    }
+
+    @Benchmark
+    public double be2DoubleAtOffset() {
+        return EndianUtils.be2Double(bytes, 0);
+    }
+}
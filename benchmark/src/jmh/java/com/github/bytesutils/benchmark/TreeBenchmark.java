@@ -0,0 +1,148 @@
+package com.github.bytesutils.benchmark;
+
+import com.github.bytesutils.BytesReader;
+import com.github.bytesutils.CompiledSchema;
+import com.github.bytesutils.DataDescribe;
+import com.github.bytesutils.DataType;
+import com.github.bytesutils.Tree;
+import com.github.bytesutils.TreeProjection;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Tree的解析和构建
+ * <p>
+ * small: 只有数值类型的固定长度结构
+ * nested: 与sample中TreeSample相同的包含子节点的结构
+ * strings: 以字符串为主的结构
+ */
+@State(Scope.Thread)
+public class TreeBenchmark {
+
+    private static final DataDescribe[] CHILD = {
+            new DataDescribe(DataType.TYPE_U8), new DataDescribe(DataType.TYPE_U8)};
+
+    @Param({"small", "nested", "strings"})
+    public String schema;
+
+    private CompiledSchema compiled;
+    /**
+     * 设置好数据用于构建的树
+     */
+    private Tree built;
+    /**
+     * 重复用于解析的树
+     */
+    private Tree parsed;
+    private byte[] message;
+    private byte[] output;
+    private TreeProjection projection;
+
+    @Setup
+    public void setup() {
+        switch (schema) {
+            case "small":
+                compiled = new CompiledSchema(new DataDescribe[]{
+                        new DataDescribe(DataType.TYPE_U8), new DataDescribe(DataType.TYPE_U16),
+                        new DataDescribe(DataType.TYPE_S32), new DataDescribe(DataType.TYPE_U32, false),
+                        new DataDescribe(DataType.TYPE_FLOAT), new DataDescribe(DataType.TYPE_S64),
+                        new DataDescribe(DataType.TYPE_DOUBLE, false)});
+                built = new Tree(compiled).setU8(0, (short) 1).setU16(1, 2).setS32(2, -3).setU32(3, 4)
+                        .setFloat(4, 5.5f).setS64(5, -6).setDouble(6, 7.25);
+                parsed = new Tree(compiled);
+                projection = new TreeProjection(5);
+                break;
+            case "nested":
+                compiled = new CompiledSchema(new DataDescribe[]{
+                        new DataDescribe(DataType.TYPE_TREE), new DataDescribe(DataType.TYPE_U8),
+                        new DataDescribe(DataType.TYPE_S32), new DataDescribe(DataType.TYPE_FLOAT),
+                        new DataDescribe(DataType.TYPE_U32), new DataDescribe(DataType.TYPE_MUABLE0)});
+                built = new Tree(compiled, new Tree(CHILD).setU8(0, (short) 1).setU8(1, (short) 2))
+                        .setU8(1, (short) 3).setS32(2, 1).setFloat(3, 3.0f).setU32(4, 32L).setString(5, "123", "UTF-8");
+                parsed = new Tree(compiled, new Tree(CHILD));
+                projection = new TreeProjection(5);
+                break;
+            default:
+                compiled = new CompiledSchema(new DataDescribe[]{
+                        new DataDescribe(DataType.TYPE_U16), new DataDescribe(DataType.TYPE_MUABLE0),
+                        new DataDescribe(DataType.TYPE_MUABLE1), new DataDescribe(DataType.TYPE_MUABLE0),
+                        new DataDescribe(DataType.TYPE_MUABLE2_BE), new DataDescribe(DataType.TYPE_MUABLE1_BE)});
+                built = new Tree(compiled).setU16(0, 5)
+                        .setString(1, "device-name-0001", "UTF-8")
+                        .setString(2, "firmware v1.2.3 build 2021-11-02", "UTF-8")
+                        .setString(3, "ok", "UTF-8")
+                        .setString(4, "a somewhat longer description string used to make the payload string heavy", "UTF-8")
+                        .setString(5, "tail", "UTF-8");
+                parsed = new Tree(compiled);
+                projection = new TreeProjection(4);
+                break;
+        }
+        message = built.toByteArray();
+        output = new byte[message.length];
+    }
+
+    @Benchmark
+    public Tree parse() {
+        return parsed.parserByteArray(new BytesReader(message));
+    }
+
+    @Benchmark
+    public Tree parseNewTree() {
+        Tree tree = "nested".equals(schema) ? new Tree(compiled, new Tree(CHILD)) : new Tree(compiled);
+        return tree.parserByteArray(message);
+    }
+
+    @Benchmark
+    public Tree parseView() {
+        return parsed.parserByteArrayView(message, 0, message.length);
+    }
+
+    @Benchmark
+    public Tree parseLazy() {
+        return parsed.parserByteArrayLazy(message, 0, message.length, projection);
+    }
+
+    @Benchmark
+    public void parseViewAndGet(Blackhole bh) {
+        Tree tree = parsed.parserByteArrayView(message, 0, message.length);
+        switch (schema) {
+            case "small":
+                bh.consume(tree.getS64(5));
+                bh.consume(tree.getDouble(6));
+                break;
+            case "nested":
+                bh.consume(tree.getChildTree(0).getU8(1));
+                bh.consume(tree.getString(5, "UTF-8"));
+                break;
+            default:
+                bh.consume(tree.getString(2, "UTF-8"));
+                bh.consume(tree.getString(4, "UTF-8"));
+                break;
+        }
+    }
+
+    @Benchmark
+    public byte[] toByteArray() {
+        return built.toByteArray();
+    }
+
+    @Benchmark
+    public int writeTo() {
+        return built.writeTo(output, 0);
+    }
+
+    @Benchmark
+    public int encodedSize() {
+        return built.encodedSize();
+    }
+
+    @Benchmark
+    public Tree resetAndParse() {
+        return parsed.reset().parserByteArray(new BytesReader(message));
+    }
+}
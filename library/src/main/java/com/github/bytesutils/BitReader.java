@@ -0,0 +1,153 @@
+package com.github.bytesutils;
+
+/**
+ * 按位解析{@link BytesReader}中的数据,用于跨越字节边界的位域
+ * <p>
+ * 每次从BytesReader中预读8个字节放入64位的缓存,按位读取都从缓存中取出,不足8个字节时逐个字节预读.
+ * msbFirst为true时每个字节从最高位开始读取,多个位组成的值高位在前;为false时从最低位开始读取,低位在前
+ * <p>
+ * 由于会预读,按位读取期间BytesReader的索引会超前,按位读取结束后调用{@link BitReader#alignToByte()}
+ * 丢弃当前字节剩余的位并将预读的字节还给BytesReader,之后可以继续按字节读取;非线程安全
+ */
+public class BitReader {
+
+    private final BytesReader reader;
+    private final boolean msbFirst;
+    /**
+     * 预读的位,msbFirst时靠高位对齐,否则靠低位对齐
+     */
+    private long cache;
+    private int cached;
+
+    /**
+     * @param msbFirst 是否从每个字节的最高位开始读取
+     */
+    public BitReader(BytesReader reader, boolean msbFirst) {
+        this.reader = reader;
+        this.msbFirst = msbFirst;
+    }
+
+    /**
+     * 默认从每个字节的最高位开始读取
+     */
+    public BitReader(BytesReader reader) {
+        this(reader, true);
+    }
+
+    /**
+     * 获取剩余的位数
+     */
+    public long bitsRemaining() {
+        return cached + (long) reader.residue() * 8;
+    }
+
+    /**
+     * 读取1位
+     */
+    public boolean getBit() {
+        return getBits(1) != 0;
+    }
+
+    /**
+     * 读取n位组成无符号的值,剩余的位数不足时返回0,不会移动
+     *
+     * @param n 0到64
+     */
+    public long getBits(int n) {
+        if (n < 0 || n > 64) throw new IllegalArgumentException("bits: " + n);
+        if (n <= cached) return take(n);
+        if (n > bitsRemaining()) return 0;
+        int first = cached;
+        long head = take(first);
+        refill();
+        long tail = take(n - first);
+        return msbFirst ? head << (n - first) | tail : tail << first | head;
+    }
+
+    /**
+     * 读取n位组成有符号的值,最高位为符号位,剩余的位数不足时返回0,不会移动
+     *
+     * @param n 1到64
+     */
+    public long getSignedBits(int n) {
+        return getBits(n) << (64 - n) >> (64 - n);
+    }
+
+    /**
+     * 将count个每个占bits位的无符号值解包到dst中从offset开始的位置
+     * 剩余的位数不足时不会读取,也不会移动
+     *
+     * @param bits 1到32
+     * @return 是否读取成功
+     */
+    public boolean getBits(int[] dst, int offset, int count, int bits) {
+        if (bits < 1 || bits > 32) throw new IllegalArgumentException("bits: " + bits);
+        if (offset < 0 || count < 0 || offset > dst.length - count) {
+            throw new IndexOutOfBoundsException("Offset: " + offset + ", Count: " + count + ", Size: " + dst.length);
+        }
+        if ((long) count * bits > bitsRemaining()) return false;
+        for (int i = offset, end = offset + count; i < end; i++) {
+            dst[i] = (int) (bits <= cached ? take(bits) : getBits(bits));
+        }
+        return true;
+    }
+
+    /**
+     * 跳过n位,剩余的位数不足时不会移动
+     *
+     * @return 是否成功
+     */
+    public boolean skipBits(long n) {
+        if (n < 0 || n > bitsRemaining()) return false;
+        while (n > 0) {
+            int step = (int) Math.min(n, 64);
+            getBits(step);
+            n -= step;
+        }
+        return true;
+    }
+
+    /**
+     * 丢弃当前字节中还未读取的位,并将预读的整字节还给BytesReader,之后BytesReader的索引位于下一个未读取的字节
+     */
+    public void alignToByte() {
+        reader.movePos(-(cached / 8));
+        cache = 0;
+        cached = 0;
+    }
+
+    /**
+     * 从缓存中取出n位,调用前需要确认缓存中的位数足够
+     */
+    private long take(int n) {
+        if (n == 0) return 0;
+        long rst;
+        if (msbFirst) {
+            rst = cache >>> (64 - n);
+            cache = n == 64 ? 0 : cache << n;
+        } else {
+            rst = n == 64 ? cache : cache & ((1L << n) - 1);
+            cache = n == 64 ? 0 : cache >>> n;
+        }
+        cached -= n;
+        return rst;
+    }
+
+    /**
+     * 缓存为空时调用,预读8个字节,不足8个字节时读取剩下的所有字节
+     */
+    private void refill() {
+        if (reader.residue() >= 8) {
+            cache = reader.getS64(!msbFirst);
+            cached = 64;
+            return;
+        }
+        cache = 0;
+        cached = 0;
+        while (reader.residue() > 0) {
+            long b = reader.getU8();
+            cache |= msbFirst ? b << (56 - cached) : b << cached;
+            cached += 8;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.github.bytesutils;
+
+/**
+ * 按位写入数据到{@link ByteArrayList}中,用于构建跨越字节边界的位域
+ * <p>
+ * 写入的位先放入64位的缓存,满64位时一次写入8个字节.
+ * msbFirst为true时从每个字节的最高位开始写入,多个位组成的值高位在前;为false时从最低位开始写入,低位在前,与{@link BitReader}对应
+ * <p>
+ * 写入结束后需要调用{@link BitWriter#flush()}将缓存中剩余的位写入,最后一个字节中未使用的位为0;非线程安全
+ */
+public class BitWriter {
+
+    private final ByteArrayList list;
+    private final boolean msbFirst;
+    /**
+     * 待写入的位,msbFirst时靠高位对齐,否则靠低位对齐
+     */
+    private long cache;
+    private int filled;
+    private long written;
+
+    /**
+     * @param msbFirst 是否从每个字节的最高位开始写入
+     */
+    public BitWriter(ByteArrayList list, boolean msbFirst) {
+        this.list = list;
+        this.msbFirst = msbFirst;
+    }
+
+    /**
+     * 默认从每个字节的最高位开始写入
+     */
+    public BitWriter(ByteArrayList list) {
+        this(list, true);
+    }
+
+    /**
+     * 获取已经写入的位数,包含还在缓存中的位
+     */
+    public long bitsWritten() {
+        return written;
+    }
+
+    /**
+     * 写入1位
+     */
+    public BitWriter putBit(boolean bit) {
+        return putBits(bit ? 1 : 0, 1);
+    }
+
+    /**
+     * 写入value的低n位,高于n位的部分会被忽略
+     *
+     * @param n 0到64
+     */
+    public BitWriter putBits(long value, int n) {
+        if (n < 0 || n > 64) throw new IllegalArgumentException("bits: " + n);
+        if (n == 0) return this;
+        if (n < 64) value &= (1L << n) - 1;
+        written += n;
+        int free = 64 - filled;
+        if (n < free) {
+            cache |= msbFirst ? value << (free - n) : value << filled;
+            filled += n;
+            return this;
+        }
+        // 填满缓存后写出,剩下的位放入新的缓存
+        int rest = n - free;
+        if (msbFirst) {
+            cache |= value >>> rest;
+            list.add(cache, false);
+            cache = rest == 0 ? 0 : value << (64 - rest);
+        } else {
+            cache |= value << filled;
+            list.add(cache, true);
+            cache = rest == 0 ? 0 : value >>> free;
+        }
+        filled = rest;
+        return this;
+    }
+
+    /**
+     * 将count个值分别按bits位打包写入
+     *
+     * @param bits 1到32
+     */
+    public BitWriter putBits(int[] src, int offset, int count, int bits) {
+        if (bits < 1 || bits > 32) throw new IllegalArgumentException("bits: " + bits);
+        for (int i = offset, end = offset + count; i < end; i++) {
+            putBits(src[i], bits);
+        }
+        return this;
+    }
+
+    /**
+     * 将缓存中剩余的位写入,不足一个字节的部分用0补齐,之后可以继续按字节向ByteArrayList中添加数据
+     */
+    public ByteArrayList flush() {
+        for (int i = 0; i < filled; i += 8) {
+            list.add((byte) (msbFirst ? cache >>> (56 - i) : cache >>> i));
+        }
+        written = (written + 7) & ~7L;
+        cache = 0;
+        filled = 0;
+        return list;
+    }
+}
@@ -1,8 +1,10 @@
 package com.github.bytesutils;
 
-import java.io.UnsupportedEncodingException;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.charset.Charset;
 import java.util.Arrays;
+import java.util.zip.Checksum;
 
 /**
  * 用途: byte的ArrayList,提供了方便的可以放入各种类型数据的方法
@@ -11,6 +13,10 @@ public class ByteArrayList {
 
     private int size = 0;
     private byte[] elementData;
+    /**
+     * 是否已经归还到{@link ByteArrayListPool}中,用于防止重复归还
+     */
+    boolean recycled;
 
     public ByteArrayList(int initialCapacity) {
         if (initialCapacity < 0) {
@@ -45,6 +51,7 @@ public class ByteArrayList {
 
         if (index > size) {
             ensureCapacityInternal(index + 1);
+            Arrays.fill(elementData, size, index, (byte) 0);
             elementData[index] = element;
             size = index + 1;
         } else {
@@ -64,6 +71,13 @@ public class ByteArrayList {
         return this;
     }
 
+    public ByteArrayList add(byte[] src, int offset, int length) {
+        ensureCapacityInternal(size + length);
+        System.arraycopy(src, offset, elementData, size, length);
+        size += length;
+        return this;
+    }
+
     public ByteArrayList add(int index, byte[] src) {
         if (index < 0)
             throw new IllegalArgumentException("Index Error:" + index + ", Size: " + size);
@@ -71,6 +85,7 @@ public class ByteArrayList {
         int numNew = src.length;
         if (index > size) {
             ensureCapacityInternal(index + numNew);
+            Arrays.fill(elementData, size, index, (byte) 0);
             System.arraycopy(src, 0, elementData, index, numNew);
             size = index + src.length;
         } else {
@@ -83,7 +98,14 @@ public class ByteArrayList {
     }
 
     public ByteArrayList add(short s, boolean isLe) {
-        return add(isLe ? EndianUtils.toLe(s) : EndianUtils.toBe(s));
+        ensureCapacityInternal(size + 2);
+        if (isLe) {
+            EndianUtils.toLe(s, elementData, size);
+        } else {
+            EndianUtils.toBe(s, elementData, size);
+        }
+        size += 2;
+        return this;
     }
 
     public ByteArrayList add(short s) {
@@ -91,7 +113,14 @@ public class ByteArrayList {
     }
 
     public ByteArrayList add(int i, boolean isLe) {
-        return add(isLe ? EndianUtils.toLe(i) : EndianUtils.toBe(i));
+        ensureCapacityInternal(size + 4);
+        if (isLe) {
+            EndianUtils.toLe(i, elementData, size);
+        } else {
+            EndianUtils.toBe(i, elementData, size);
+        }
+        size += 4;
+        return this;
     }
 
     public ByteArrayList add(int i) {
@@ -99,7 +128,14 @@ public class ByteArrayList {
     }
 
     public ByteArrayList add(long l, boolean isLe) {
-        return add(isLe ? EndianUtils.toLe(l) : EndianUtils.toBe(l));
+        ensureCapacityInternal(size + 8);
+        if (isLe) {
+            EndianUtils.toLe(l, elementData, size);
+        } else {
+            EndianUtils.toBe(l, elementData, size);
+        }
+        size += 8;
+        return this;
     }
 
     public ByteArrayList add(long l) {
@@ -107,7 +143,7 @@ public class ByteArrayList {
     }
 
     public ByteArrayList add(float f, boolean isLe) {
-        return add(isLe ? EndianUtils.toLe(f) : EndianUtils.toBe(f));
+        return add(Float.floatToRawIntBits(f), isLe);
     }
 
     public ByteArrayList add(float f) {
@@ -115,32 +151,249 @@ public class ByteArrayList {
     }
 
     public ByteArrayList add(double d, boolean isLe) {
-        return add(isLe ? EndianUtils.toLe(d) : EndianUtils.toBe(d));
+        return add(Double.doubleToRawLongBits(d), isLe);
     }
 
     public ByteArrayList add(double d) {
         return add(d, true);
     }
 
+    /**
+     * 将l的低32位作为无符号数按变长整数(LEB128)添加,占用1到5个字节
+     */
+    public ByteArrayList addVarU32(long l) {
+        return addVarU64(l & 0xffffffffL);
+    }
+
+    /**
+     * 将i按ZigZag编码后的变长整数添加,绝对值较小的负数也只占用较少的字节,占用1到5个字节
+     */
+    public ByteArrayList addVarS32(int i) {
+        return addVarU64(Varint.zigzag(i) & 0xffffffffL);
+    }
+
+    /**
+     * 将l作为无符号数按变长整数(LEB128)添加,占用1到10个字节
+     */
+    public ByteArrayList addVarU64(long l) {
+        ensureCapacityInternal(size + Varint.MAX_LENGTH64);
+        size = Varint.write(l, elementData, size);
+        return this;
+    }
+
+    /**
+     * 将l按ZigZag编码后的变长整数添加,占用1到10个字节
+     */
+    public ByteArrayList addVarS64(long l) {
+        return addVarU64(Varint.zigzag(l));
+    }
+
+    /**
+     * 将s通过{@link StringEncoder}直接编码到内部的数组中,不会创建临时的数组
+     */
     public ByteArrayList add(String s, Charset charSet) {
         if (s != null && s.length() != 0 && charSet != null) {
-            return add(s.getBytes(charSet));
+            StringEncoder encoder = StringEncoder.get(charSet);
+            ensureCapacityInternal(size + encoder.maxLength(s));
+            size = encoder.encode(s, elementData, size);
         }
         return this;
     }
 
+    /**
+     * 见{@link ByteArrayList#add(String, Charset)},字符集通过{@link StringDecoder#forName(String)}查找,不支持时不添加
+     */
     public ByteArrayList add(String s, String charSet) {
-        if (s != null && s.length() != 0 && charSet != null && charSet.length() != 0) {
-            try {
-                return add(s.getBytes(charSet));
-            } catch (UnsupportedEncodingException ignored) {
-            }
+        return add(s, StringDecoder.forName(charSet));
+    }
+
+    public ByteArrayList add(String s) {
+        return add(s, StringDecoder.GBK);
+    }
+
+    /**
+     * 添加带长度前缀的字符串,与{@link Tree}中对应类型的数据格式相同,编码后再回填长度前缀
+     * s为null、字符集不支持或者编码后的长度超出长度前缀所能表示的范围时,只添加长度为0的前缀
+     *
+     * @param type {@link DataType#TYPE_MUABLE0}、{@link DataType#TYPE_MUABLE1}、{@link DataType#TYPE_MUABLE2}、
+     *             {@link DataType#TYPE_MUABLE1_BE}、{@link DataType#TYPE_MUABLE2_BE}或{@link DataType#TYPE_VAR_MUABLE}
+     */
+    public ByteArrayList add(String s, Charset charSet, int type) {
+        int prefixLength;
+        long maxLength;
+        switch (type) {
+            case DataType.TYPE_MUABLE0:
+                prefixLength = 1;
+                maxLength = 0xff;
+                break;
+            case DataType.TYPE_MUABLE1:
+            case DataType.TYPE_MUABLE1_BE:
+                prefixLength = 2;
+                maxLength = 0xffff;
+                break;
+            case DataType.TYPE_MUABLE2:
+            case DataType.TYPE_MUABLE2_BE:
+                prefixLength = 4;
+                maxLength = 0xffffffffL;
+                break;
+            case DataType.TYPE_VAR_MUABLE:
+                prefixLength = Varint.MAX_LENGTH32;
+                maxLength = 0xffffffffL;
+                break;
+            default:
+                throw new IllegalMonitorStateException("don't have the type " + type);
+        }
+        int start = size;
+        int length = 0;
+        if (s != null && s.length() != 0 && charSet != null) {
+            StringEncoder encoder = StringEncoder.get(charSet);
+            ensureCapacityInternal(start + prefixLength + encoder.maxLength(s));
+            length = encoder.encode(s, elementData, start + prefixLength) - start - prefixLength;
+            if (length > maxLength) length = 0;
+        } else {
+            ensureCapacityInternal(start + prefixLength);
         }
+        switch (type) {
+            case DataType.TYPE_MUABLE0:
+                elementData[start] = (byte) length;
+                break;
+            case DataType.TYPE_MUABLE1:
+                EndianUtils.toLe((short) length, elementData, start);
+                break;
+            case DataType.TYPE_MUABLE1_BE:
+                EndianUtils.toBe((short) length, elementData, start);
+                break;
+            case DataType.TYPE_MUABLE2:
+                EndianUtils.toLe(length, elementData, start);
+                break;
+            case DataType.TYPE_MUABLE2_BE:
+                EndianUtils.toBe(length, elementData, start);
+                break;
+            default:
+                int actual = Varint.sizeOf(length);
+                if (actual < prefixLength) {
+                    System.arraycopy(elementData, start + prefixLength, elementData, start + actual, length);
+                    prefixLength = actual;
+                }
+                Varint.write(length, elementData, start);
+                break;
+        }
+        size = start + prefixLength + length;
         return this;
     }
 
-    public ByteArrayList add(String s) {
-        return add(s, "GBK");
+    /**
+     * 见{@link ByteArrayList#add(String, Charset, int)},字符集通过{@link StringDecoder#forName(String)}查找
+     */
+    public ByteArrayList add(String s, String charSet, int type) {
+        return add(s, StringDecoder.forName(charSet), type);
+    }
+
+    /**
+     * 在末尾预留length个字节的空数据,之后通过setXxxAt在返回的位置回填,例如帧头中的长度和校验
+     *
+     * @return 预留的数据的起始位置
+     */
+    public int reserve(int length) {
+        int index = size;
+        addSize(length);
+        return index;
+    }
+
+    /**
+     * 覆盖index位置的1个字节,以下setXxxAt都只能覆盖已有的数据,不会改变size
+     */
+    public ByteArrayList setS8At(int index, byte b) {
+        checkRange(index, 1);
+        elementData[index] = b;
+        return this;
+    }
+
+    public ByteArrayList setU8At(int index, short s) {
+        return setS8At(index, (byte) s);
+    }
+
+    public ByteArrayList setS16At(int index, short s, boolean isLe) {
+        checkRange(index, 2);
+        if (isLe) {
+            EndianUtils.toLe(s, elementData, index);
+        } else {
+            EndianUtils.toBe(s, elementData, index);
+        }
+        return this;
+    }
+
+    public ByteArrayList setS16At(int index, short s) {
+        return setS16At(index, s, true);
+    }
+
+    public ByteArrayList setU16At(int index, int i, boolean isLe) {
+        return setS16At(index, (short) i, isLe);
+    }
+
+    public ByteArrayList setU16At(int index, int i) {
+        return setU16At(index, i, true);
+    }
+
+    public ByteArrayList setS32At(int index, int i, boolean isLe) {
+        checkRange(index, 4);
+        if (isLe) {
+            EndianUtils.toLe(i, elementData, index);
+        } else {
+            EndianUtils.toBe(i, elementData, index);
+        }
+        return this;
+    }
+
+    public ByteArrayList setS32At(int index, int i) {
+        return setS32At(index, i, true);
+    }
+
+    public ByteArrayList setU32At(int index, long l, boolean isLe) {
+        return setS32At(index, (int) l, isLe);
+    }
+
+    public ByteArrayList setU32At(int index, long l) {
+        return setU32At(index, l, true);
+    }
+
+    public ByteArrayList setS64At(int index, long l, boolean isLe) {
+        checkRange(index, 8);
+        if (isLe) {
+            EndianUtils.toLe(l, elementData, index);
+        } else {
+            EndianUtils.toBe(l, elementData, index);
+        }
+        return this;
+    }
+
+    public ByteArrayList setS64At(int index, long l) {
+        return setS64At(index, l, true);
+    }
+
+    public ByteArrayList setFloatAt(int index, float f, boolean isLe) {
+        return setS32At(index, Float.floatToRawIntBits(f), isLe);
+    }
+
+    public ByteArrayList setFloatAt(int index, float f) {
+        return setFloatAt(index, f, true);
+    }
+
+    public ByteArrayList setDoubleAt(int index, double d, boolean isLe) {
+        return setS64At(index, Double.doubleToRawLongBits(d), isLe);
+    }
+
+    public ByteArrayList setDoubleAt(int index, double d) {
+        return setDoubleAt(index, d, true);
+    }
+
+    /**
+     * 用src中从offset开始的length个字节覆盖index位置的数据
+     */
+    public ByteArrayList setBytesAt(int index, byte[] src, int offset, int length) {
+        checkRange(index, length);
+        System.arraycopy(src, offset, elementData, index, length);
+        return this;
     }
 
     public byte get(int index) {
@@ -169,11 +422,22 @@ public class ByteArrayList {
         size = 0;
     }
 
+    /**
+     * 只将size置为0,不清零已有的数据,保留已经分配的容量以便再次使用,见{@link ByteArrayListPool}
+     * <p>
+     * 之后通过addSize、setSize等扩充的空数据仍然为0
+     */
+    public ByteArrayList reset() {
+        size = 0;
+        return this;
+    }
+
     /**
      * 添加空数据
      */
     public void addSize(int addSize) {
         ensureCapacityInternal(size + addSize);
+        Arrays.fill(elementData, size, size + addSize, (byte) 0);
         size += addSize;
     }
 
@@ -183,6 +447,7 @@ public class ByteArrayList {
     public void setSize(int newSize) {
         if (newSize > size) {
             ensureCapacityInternal(newSize);
+            Arrays.fill(elementData, size, newSize, (byte) 0);
         } else {
             for (int i = newSize; i < size; i++) {
                 elementData[i] = 0;
@@ -191,12 +456,38 @@ public class ByteArrayList {
         size = newSize;
     }
 
+    /**
+     * 将从offset开始的length个字节加入checksum中计算,直接使用内部的数组,不会拷贝数据
+     */
+    public void updateChecksum(Checksum checksum, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > size - length)
+            throw new IndexOutOfBoundsException("Offset: " + offset + ", Length: " + length + ", Size: " + size);
+
+        checksum.update(elementData, offset, length);
+    }
+
     public byte[] toArray() {
         byte[] rst = new byte[size];
         System.arraycopy(elementData, 0, rst, 0, size);
         return rst;
     }
 
+    /**
+     * 将数据直接写入out,不需要先通过toArray拷贝一次
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(elementData, 0, size);
+    }
+
+    int capacity() {
+        return elementData == null ? 0 : elementData.length;
+    }
+
+    private void checkRange(int index, int length) {
+        if (index < 0 || length < 0 || index > size - length)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Length: " + length + ", Size: " + size);
+    }
+
     private void ensureCapacityInternal(int minCapacity) {
         if (minCapacity - elementData.length > 0) {
             int oldCapacity = elementData.length;
@@ -210,6 +501,6 @@ public class ByteArrayList {
 
     @Override
     public String toString() {
-        return BytesReader.toString(toArray());
+        return size == 0 ? "" : HexCodec.spaced(elementData, 0, size);
     }
 }
@@ -0,0 +1,92 @@
+package com.github.bytesutils;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * {@link ByteArrayList}的对象池,按容量分级保存,线程安全
+ * <p>
+ * 使用方式:
+ * 通过{@link ByteArrayListPool#obtain(int)}获取一个容量不小于所需的ByteArrayList,数据写出后调用{@link ByteArrayListPool#recycle(ByteArrayList)}归还,
+ * 归还时会调用{@link ByteArrayList#reset()},保留已经扩充的容量,所以归还后不能再使用该ByteArrayList,重复归还同一个ByteArrayList会被忽略.
+ * 容量从64开始每级翻倍,直到maxCapacity,每级最多保存maxSize个,池为空时会创建新的,池已满或容量超出范围时归还的会被丢弃.
+ * 配合{@link ByteArrayList#writeTo(java.io.OutputStream)}使用时,稳定运行后构建每一帧都不需要分配新的对象
+ */
+public class ByteArrayListPool {
+
+    private static final int MIN_SHIFT = 6;
+
+    private final ArrayBlockingQueue<ByteArrayList>[] classes;
+
+    /**
+     * @param maxCapacity 池中保存的ByteArrayList的最大容量,向上取为2的幂
+     * @param maxSize     每一级最多保存的ByteArrayList的数量
+     */
+    @SuppressWarnings("unchecked")
+    public ByteArrayListPool(int maxCapacity, int maxSize) {
+        int count = Math.max(Math.min(shiftOf(maxCapacity), 30) - MIN_SHIFT, 0) + 1;
+        classes = (ArrayBlockingQueue<ByteArrayList>[]) new ArrayBlockingQueue<?>[count];
+        for (int i = 0; i < count; i++) {
+            classes[i] = new ArrayBlockingQueue<>(maxSize);
+        }
+    }
+
+    /**
+     * 从池中获取一个容量不小于capacity的ByteArrayList,没有时创建一个新的
+     */
+    public ByteArrayList obtain(int capacity) {
+        int index = Math.max(shiftOf(capacity) - MIN_SHIFT, 0);
+        if (index >= classes.length) {
+            return new ByteArrayList(capacity);
+        }
+        for (int i = index; i < classes.length; i++) {
+            ByteArrayList list = classes[i].poll();
+            if (list != null) {
+                list.recycled = false;
+                return list;
+            }
+        }
+        return new ByteArrayList(1 << (index + MIN_SHIFT));
+    }
+
+    /**
+     * 从池中获取一个最小一级的ByteArrayList
+     */
+    public ByteArrayList obtain() {
+        return obtain(0);
+    }
+
+    /**
+     * 按当前容量归还到对应的一级中,不会清零数据,已经归还过的ByteArrayList再次归还时忽略
+     */
+    public void recycle(ByteArrayList list) {
+        if (list != null) {
+            synchronized (list) {
+                if (list.recycled) return;
+                list.recycled = true;
+            }
+            int capacity = list.capacity();
+            int index = 31 - Integer.numberOfLeadingZeros(capacity) - MIN_SHIFT;
+            if (index >= 0 && index < classes.length) {
+                classes[index].offer(list.reset());
+            }
+        }
+    }
+
+    /**
+     * 获取池中当前保存的ByteArrayList的数量
+     */
+    public int size() {
+        int size = 0;
+        for (ArrayBlockingQueue<ByteArrayList> queue : classes) {
+            size += queue.size();
+        }
+        return size;
+    }
+
+    /**
+     * 能容纳capacity的最小的2的幂的指数
+     */
+    private static int shiftOf(int capacity) {
+        return capacity <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(capacity - 1);
+    }
+}
@@ -1,39 +1,200 @@
 package com.github.bytesutils;
 
-import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.zip.Checksum;
 
 /**
  * 用来解析byte数组
+ * <p>
+ * 可以解析byte数组、byte数组中的一段或者ByteBuffer(包括直接内存),
+ * 所有读取都直接从底层数据的当前位置解码,不会创建临时数组;
+ * 通过{@link BytesReader#slice(int)}可以得到只包含其中一段数据的BytesReader,用于嵌套解析,同样不会拷贝数据
  */
 public class BytesReader {
 
-    private static final String TABLE = "0123456789ABCDEF";
+    /**
+     * 批量读取的元素个数不少于该值时才通过ByteBuffer的视图解码,个数较少时逐个解码更快
+     */
+    private static final int VIEW_THRESHOLD = 16;
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGHS = 0x8080808080808080L;
+    /**
+     * 计算直接内存中数据的校验和时每次拷贝的字节数
+     */
+    private static final int SCRATCH_SIZE = 1024;
     private int position = 0;
+    /**
+     * 底层为byte数组或者有可访问数组的ByteBuffer时为该数组,否则为null
+     */
     private byte[] data;
+    /**
+     * 底层为没有可访问数组的ByteBuffer(直接内存或只读)时为其副本,只使用绝对位置读取,否则为null
+     */
+    private ByteBuffer buffer;
+    /**
+     * 按8个字节一组扫描时使用的底层数据的小端ByteBuffer,第一次使用时创建
+     */
+    private ByteBuffer words;
+    /**
+     * 底层为直接内存时计算校验和使用的缓冲区,第一次使用时创建
+     */
+    private byte[] scratch;
+    /**
+     * 解析的范围在底层数据中的起始位置和结束位置
+     */
+    private int offset;
+    private int limit;
 
     public BytesReader(byte[] bytes) {
         this.data = bytes;
+        limit = bytes == null ? 0 : bytes.length;
     }
 
-    public boolean isLeftoverAllFF() {
-        boolean allFF = true;
-        if (data != null && position < data.length) {
-            byte[] rst = new byte[data.length - position];
-            System.arraycopy(data, position, rst, 0, data.length - position);
-            for (byte datum : rst) {
-                if (datum != -1) {
-                    allFF = false;
-                    break;
-                }
-            }
+    /**
+     * 只解析bytes中从offset开始的length个字节,不会拷贝数据,索引位置都是相对于offset的
+     */
+    public BytesReader(byte[] bytes, int offset, int length) {
+        if (bytes != null && (offset < 0 || length < 0 || offset > bytes.length - length)) {
+            throw new IndexOutOfBoundsException("Offset: " + offset + ", Length: " + length + ", Size: " + bytes.length);
         }
-        return allFF;
+        this.data = bytes;
+        this.offset = offset;
+        position = offset;
+        limit = bytes == null ? 0 : offset + length;
+    }
+
+    /**
+     * 解析buffer中从position到limit的数据,不会拷贝数据,也不会修改buffer的位置和字节序,索引位置都是相对于buffer的position的
+     */
+    public BytesReader(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            data = buffer.array();
+            offset = buffer.arrayOffset() + buffer.position();
+            limit = buffer.arrayOffset() + buffer.limit();
+        } else {
+            this.buffer = buffer.duplicate();
+            offset = buffer.position();
+            limit = buffer.limit();
+        }
+        position = offset;
+    }
+
+    private BytesReader(byte[] data, ByteBuffer buffer, int offset, int limit) {
+        this.data = data;
+        this.buffer = buffer;
+        this.offset = offset;
+        position = offset;
+        this.limit = limit;
+    }
+
+    /**
+     * 返回只包含当前的索引位置开始的length个字节的BytesReader,与本对象共享数据不会拷贝,之后本对象的索引会向后移动length个位置
+     * 剩余的数据不足时返回null,索引也不会移动
+     */
+    public BytesReader slice(int length) {
+        BytesReader rst = null;
+        if (length >= 0 && position + length <= limit) {
+            rst = new BytesReader(data, buffer == null ? null : buffer.duplicate(), position, position + length);
+            position += length;
+        }
+        return rst;
+    }
+
+    public boolean isLeftoverAllFF() {
+        return isRemainingFilledWith((byte) 0xFF);
     }
 
     public boolean isNotLeftoverAllFF() {
         return !isLeftoverAllFF();
     }
 
+    /**
+     * 剩余的数据是否全部为value,没有剩余的数据时返回true,索引不会移动
+     */
+    public boolean isRemainingFilledWith(byte value) {
+        int i = position;
+        if (limit - i >= 8) {
+            ByteBuffer words = words();
+            long pattern = ONES * (value & 0xff);
+            for (int last = limit - 8; i <= last; i += 8) {
+                if (words.getLong(i) != pattern) return false;
+            }
+        }
+        for (; i < limit; i++) {
+            if (byteAt(i) != value) return false;
+        }
+        return true;
+    }
+
+    /**
+     * 从当前的索引位置开始查找value第一次出现的位置,索引不会移动
+     *
+     * @return 与{@link BytesReader#getPos()}相同的位置,没有找到时返回-1
+     */
+    public int indexOf(byte value) {
+        int index = find(value, position, limit);
+        return index < 0 ? -1 : index - offset;
+    }
+
+    /**
+     * 从当前的索引位置开始查找pattern第一次出现的位置,用于查找帧头等同步字,索引不会移动
+     *
+     * @return 与{@link BytesReader#getPos()}相同的位置,没有找到时返回-1,pattern为空时返回当前的索引位置
+     */
+    public int indexOf(byte[] pattern) {
+        if (pattern.length == 0) return position - offset;
+        ByteBuffer patternWords = pattern.length > 8 ? ByteBuffer.wrap(pattern).order(ByteOrder.LITTLE_ENDIAN) : null;
+        // 先找到第一个字节,再比较剩下的部分
+        for (int i = position, last = limit - pattern.length; i <= last; i++) {
+            i = find(pattern[0], i, last + 1);
+            if (i < 0) break;
+            if (mismatch(i + 1, pattern, patternWords, 1, pattern.length - 1) < 0) return i - offset;
+        }
+        return -1;
+    }
+
+    /**
+     * 从当前的索引位置开始与other中从offset开始的length个字节比较,索引不会移动
+     *
+     * @return 第一个不同的字节相对于当前索引位置的偏移,全部相同时返回-1;
+     * 剩余的数据不足length个字节并且都相同时返回剩余的长度
+     */
+    public int mismatch(byte[] other, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > other.length - length) {
+            throw new IndexOutOfBoundsException("Offset: " + offset + ", Length: " + length + ", Size: " + other.length);
+        }
+        int n = Math.min(length, limit - position);
+        ByteBuffer otherWords = n >= 8 ? ByteBuffer.wrap(other).order(ByteOrder.LITTLE_ENDIAN) : null;
+        int rst = mismatch(position, other, otherWords, offset, n);
+        return rst >= 0 || n == length ? rst : n;
+    }
+
+    /**
+     * 将从pos开始的length个字节加入checksum中计算,pos与{@link BytesReader#getPos()}一样是相对于起始位置的,索引不会移动
+     * 直接使用底层的数组计算,不会拷贝数据;底层为直接内存时分块拷贝到复用的缓冲区中计算
+     *
+     * @return 范围超出数据时不会计算,返回false
+     */
+    public boolean updateChecksum(Checksum checksum, int pos, int length) {
+        if (pos < 0 || length < 0 || pos > limit - offset - length) return false;
+        if (length == 0) return true;
+        int index = offset + pos;
+        if (buffer == null) {
+            checksum.update(data, index, length);
+            return true;
+        }
+        if (scratch == null) scratch = new byte[SCRATCH_SIZE];
+        for (int end = index + length; index < end; ) {
+            int n = Math.min(end - index, SCRATCH_SIZE);
+            copy(index, scratch, 0, n);
+            checksum.update(scratch, 0, n);
+            index += n;
+        }
+        return true;
+    }
+
     /**
      * 返回 byte数组中当前的索引位置到索引加上指定长度位置的byte数据, 之后索引会向后移动指定长度个位置
      *
@@ -41,21 +202,36 @@ public class BytesReader {
      */
     public byte[] getBytes(int length) {
         byte[] rst = null;
-        if (data != null && position + length <= data.length) {
+        if (length >= 0 && position + length <= limit) {
             rst = new byte[length];
-            System.arraycopy(data, position, rst, 0, length);
+            copy(position, rst, 0, length);
             position += length;
         }
         return rst;
     }
 
+    /**
+     * 将byte数组中当前的索引位置开始的length个字节拷贝到dst的offset位置, 之后索引会向后移动length个位置
+     * 剩余的数据不足时不会拷贝,索引也不会移动
+     *
+     * @return 是否拷贝成功
+     */
+    public boolean getBytes(byte[] dst, int offset, int length) {
+        if (length >= 0 && position + length <= limit) {
+            copy(position, dst, offset, length);
+            position += length;
+            return true;
+        }
+        return false;
+    }
+
     /**
      * 从byte数组中当前的索引位置 将1个字节 转为 有符号8位,使用byte进行接收,索引会向后移动1个位置
      */
     public byte getS8() {
         byte rst = 0;
-        if (data != null && position + 1 <= data.length) {
-            rst = data[position];
+        if (position + 1 <= limit) {
+            rst = byteAt(position);
             position += 1;
         }
         return rst;
@@ -66,8 +242,8 @@ public class BytesReader {
      */
     public short getU8() {
         short rst = 0;
-        if (data != null && position + 1 <= data.length) {
-            rst = data[position] < 0 ? (short) (256 + data[position]) : (short) (data[position]);
+        if (position + 1 <= limit) {
+            rst = (short) (byteAt(position) & 0xff);
             position += 1;
         }
         return rst;
@@ -80,11 +256,9 @@ public class BytesReader {
      */
     public short getS16(boolean isLe) {
         short rst = 0;
-        if (data != null && position + 2 <= data.length) {
-            byte[] tmp = new byte[2];
-            System.arraycopy(data, position, tmp, 0, 2);
+        if (position + 2 <= limit) {
+            rst = s16At(position, isLe);
             position += 2;
-            rst = isLe ? EndianUtils.le2Short(tmp) : EndianUtils.be2Short(tmp);
         }
         return rst;
     }
@@ -103,11 +277,9 @@ public class BytesReader {
      */
     public int getU16(boolean isLe) {
         int rst = 0;
-        if (data != null && position + 2 <= data.length) {
-            byte[] tmp = new byte[2];
-            System.arraycopy(data, position, tmp, 0, 2);
+        if (position + 2 <= limit) {
+            rst = s16At(position, isLe) & 0xffff;
             position += 2;
-            rst = isLe ? EndianUtils.le2U16(tmp) : EndianUtils.be2U16(tmp);
         }
         return rst;
     }
@@ -126,11 +298,9 @@ public class BytesReader {
      */
     public int getS32(boolean isLe) {
         int rst = 0;
-        if (data != null && position + 4 <= data.length) {
-            byte[] tmp = new byte[4];
-            System.arraycopy(data, position, tmp, 0, 4);
+        if (position + 4 <= limit) {
+            rst = s32At(position, isLe);
             position += 4;
-            rst = isLe ? EndianUtils.le2Int(tmp) : EndianUtils.be2Int(tmp);
         }
         return rst;
     }
@@ -149,11 +319,9 @@ public class BytesReader {
      */
     public long getU32(boolean isLe) {
         long rst = 0;
-        if (data != null && position + 4 <= data.length) {
-            byte[] tmp = new byte[4];
-            System.arraycopy(data, position, tmp, 0, 4);
+        if (position + 4 <= limit) {
+            rst = s32At(position, isLe) & 0xffffffffL;
             position += 4;
-            rst = isLe ? EndianUtils.le2U32(tmp) : EndianUtils.be2U32(tmp);
         }
         return rst;
     }
@@ -172,11 +340,9 @@ public class BytesReader {
      */
     public long getS64(boolean isLe) {
         long rst = 0;
-        if (data != null && position + 8 <= data.length) {
-            byte[] tmp = new byte[8];
-            System.arraycopy(data, position, tmp, 0, 8);
+        if (position + 8 <= limit) {
+            rst = s64At(position, isLe);
             position += 8;
-            rst = isLe ? EndianUtils.le2Long(tmp) : EndianUtils.be2Long(tmp);
         }
         return rst;
     }
@@ -195,11 +361,9 @@ public class BytesReader {
      */
     public float getFloat(boolean isLe) {
         float rst = 0f;
-        if (data != null && position + 4 <= data.length) {
-            byte[] tmp = new byte[4];
-            System.arraycopy(data, position, tmp, 0, 4);
+        if (position + 4 <= limit) {
+            rst = Float.intBitsToFloat(s32At(position, isLe));
             position += 4;
-            rst = isLe ? EndianUtils.le2Float(tmp) : EndianUtils.be2Float(tmp);
         }
         return rst;
     }
@@ -212,17 +376,15 @@ public class BytesReader {
     }
 
     /**
-     * 从byte数组中当前的索引位置 将4个字节 转为 double,索引会向后移动8个位置
+     * 从byte数组中当前的索引位置 将8个字节 转为 double,索引会向后移动8个位置
      *
      * @param isLe 这段数据是否是小端
      */
     public double getDouble(boolean isLe) {
         double rst = 0f;
-        if (data != null && position + 4 <= data.length) {
-            byte[] tmp = new byte[4];
-            System.arraycopy(data, position, tmp, 0, 4);
-            position += 4;
-            rst = isLe ? EndianUtils.le2Double(tmp) : EndianUtils.be2Double(tmp);
+        if (position + 8 <= limit) {
+            rst = Double.longBitsToDouble(s64At(position, isLe));
+            position += 8;
         }
         return rst;
     }
@@ -234,75 +396,382 @@ public class BytesReader {
         return getDouble(true);
     }
 
+    /**
+     * 从当前的索引位置读取最多5个字节的变长整数(LEB128) 转为 无符号32位,使用long进行接收,索引向后移动实际占用的字节数
+     * 数据不完整或者超过5个字节还没有结束时返回0,索引不会移动
+     */
+    public long getVarU32() {
+        return varint(Varint.MAX_LENGTH32) & 0xffffffffL;
+    }
+
+    /**
+     * 从当前的索引位置读取最多5个字节的ZigZag编码的变长整数 转为 有符号32位,见{@link BytesReader#getVarU32()}
+     */
+    public int getVarS32() {
+        return (int) Varint.unzigzag(getVarU32());
+    }
+
+    /**
+     * 从当前的索引位置读取最多10个字节的变长整数(LEB128) 转为 64位,超过63位的值为负数,索引向后移动实际占用的字节数
+     * 数据不完整或者超过10个字节还没有结束时返回0,索引不会移动
+     */
+    public long getVarU64() {
+        return varint(Varint.MAX_LENGTH64);
+    }
+
+    /**
+     * 从当前的索引位置读取最多10个字节的ZigZag编码的变长整数 转为 有符号64位,见{@link BytesReader#getVarU64()}
+     */
+    public long getVarS64() {
+        return Varint.unzigzag(getVarU64());
+    }
+
+    /**
+     * 从当前的索引位置开始 将count个字节 转为 有符号8位,放入dst中从offset开始的位置,索引会向后移动count个位置
+     * 剩余的数据不足时不会读取,索引也不会移动
+     *
+     * @return 是否读取成功
+     */
+    public boolean getS8Array(byte[] dst, int offset, int count) {
+        if (!checkArray(dst.length, offset, count, 1)) return false;
+        copy(position, dst, offset, count);
+        position += count;
+        return true;
+    }
+
+    /**
+     * 从当前的索引位置开始 将count个字节 转为 无符号8位,放入dst中从offset开始的位置,索引会向后移动count个位置
+     * 剩余的数据不足时不会读取,索引也不会移动
+     *
+     * @return 是否读取成功
+     */
+    public boolean getU8Array(short[] dst, int offset, int count) {
+        if (!checkArray(dst.length, offset, count, 1)) return false;
+        int index = position;
+        if (buffer == null) {
+            for (int i = offset, end = offset + count; i < end; i++) dst[i] = (short) (data[index++] & 0xff);
+        } else {
+            for (int i = offset, end = offset + count; i < end; i++) dst[i] = (short) (buffer.get(index++) & 0xff);
+        }
+        position = index;
+        return true;
+    }
+
+    /**
+     * 从当前的索引位置开始 将count个2字节 转为 有符号16位,放入dst中从offset开始的位置,索引会向后移动count * 2个位置
+     * 剩余的数据不足时不会读取,索引也不会移动
+     *
+     * @param isLe 这段数据是否是小端
+     * @return 是否读取成功
+     */
+    public boolean getS16Array(short[] dst, int offset, int count, boolean isLe) {
+        if (!checkArray(dst.length, offset, count, 2)) return false;
+        if (count >= VIEW_THRESHOLD) {
+            view(count * 2, isLe).asShortBuffer().get(dst, offset, count);
+            position += count * 2;
+        } else {
+            for (int i = offset, end = offset + count; i < end; i++, position += 2) dst[i] = s16At(position, isLe);
+        }
+        return true;
+    }
+
+    /**
+     * 默认小端,见{@link BytesReader#getS16Array(short[], int, int, boolean)}
+     */
+    public boolean getS16Array(short[] dst, int offset, int count) {
+        return getS16Array(dst, offset, count, true);
+    }
+
+    /**
+     * 从当前的索引位置开始 将count个2字节 转为 无符号16位,放入dst中从offset开始的位置,索引会向后移动count * 2个位置
+     * 剩余的数据不足时不会读取,索引也不会移动
+     *
+     * @param isLe 这段数据是否是小端
+     * @return 是否读取成功
+     */
+    public boolean getU16Array(int[] dst, int offset, int count, boolean isLe) {
+        if (!checkArray(dst.length, offset, count, 2)) return false;
+        int end = offset + count;
+        if (buffer != null) {
+            for (int i = offset; i < end; i++, position += 2) dst[i] = s16At(position, isLe) & 0xffff;
+        } else if (isLe) {
+            for (int i = offset; i < end; i++, position += 2) dst[i] = EndianUtils.le2U16(data, position);
+        } else {
+            for (int i = offset; i < end; i++, position += 2) dst[i] = EndianUtils.be2U16(data, position);
+        }
+        return true;
+    }
+
+    /**
+     * 默认小端,见{@link BytesReader#getU16Array(int[], int, int, boolean)}
+     */
+    public boolean getU16Array(int[] dst, int offset, int count) {
+        return getU16Array(dst, offset, count, true);
+    }
+
+    /**
+     * 从当前的索引位置开始 将count个4字节 转为 有符号32位,放入dst中从offset开始的位置,索引会向后移动count * 4个位置
+     * 剩余的数据不足时不会读取,索引也不会移动
+     *
+     * @param isLe 这段数据是否是小端
+     * @return 是否读取成功
+     */
+    public boolean getS32Array(int[] dst, int offset, int count, boolean isLe) {
+        if (!checkArray(dst.length, offset, count, 4)) return false;
+        if (count >= VIEW_THRESHOLD) {
+            view(count * 4, isLe).asIntBuffer().get(dst, offset, count);
+            position += count * 4;
+        } else {
+            for (int i = offset, end = offset + count; i < end; i++, position += 4) dst[i] = s32At(position, isLe);
+        }
+        return true;
+    }
+
+    /**
+     * 默认小端,见{@link BytesReader#getS32Array(int[], int, int, boolean)}
+     */
+    public boolean getS32Array(int[] dst, int offset, int count) {
+        return getS32Array(dst, offset, count, true);
+    }
+
+    /**
+     * 从当前的索引位置开始 将count个4字节 转为 无符号32位,放入dst中从offset开始的位置,索引会向后移动count * 4个位置
+     * 剩余的数据不足时不会读取,索引也不会移动
+     *
+     * @param isLe 这段数据是否是小端
+     * @return 是否读取成功
+     */
+    public boolean getU32Array(long[] dst, int offset, int count, boolean isLe) {
+        if (!checkArray(dst.length, offset, count, 4)) return false;
+        int end = offset + count;
+        if (buffer != null) {
+            for (int i = offset; i < end; i++, position += 4) dst[i] = s32At(position, isLe) & 0xffffffffL;
+        } else if (isLe) {
+            for (int i = offset; i < end; i++, position += 4) dst[i] = EndianUtils.le2U32(data, position);
+        } else {
+            for (int i = offset; i < end; i++, position += 4) dst[i] = EndianUtils.be2U32(data, position);
+        }
+        return true;
+    }
+
+    /**
+     * 默认小端,见{@link BytesReader#getU32Array(long[], int, int, boolean)}
+     */
+    public boolean getU32Array(long[] dst, int offset, int count) {
+        return getU32Array(dst, offset, count, true);
+    }
+
+    /**
+     * 从当前的索引位置开始 将count个8字节 转为 有符号64位,放入dst中从offset开始的位置,索引会向后移动count * 8个位置
+     * 剩余的数据不足时不会读取,索引也不会移动
+     *
+     * @param isLe 这段数据是否是小端
+     * @return 是否读取成功
+     */
+    public boolean getS64Array(long[] dst, int offset, int count, boolean isLe) {
+        if (!checkArray(dst.length, offset, count, 8)) return false;
+        if (count >= VIEW_THRESHOLD) {
+            view(count * 8, isLe).asLongBuffer().get(dst, offset, count);
+            position += count * 8;
+        } else {
+            for (int i = offset, end = offset + count; i < end; i++, position += 8) dst[i] = s64At(position, isLe);
+        }
+        return true;
+    }
+
+    /**
+     * 默认小端,见{@link BytesReader#getS64Array(long[], int, int, boolean)}
+     */
+    public boolean getS64Array(long[] dst, int offset, int count) {
+        return getS64Array(dst, offset, count, true);
+    }
+
+    /**
+     * 从当前的索引位置开始 将count个4字节 转为 float,放入dst中从offset开始的位置,索引会向后移动count * 4个位置
+     * 剩余的数据不足时不会读取,索引也不会移动
+     *
+     * @param isLe 这段数据是否是小端
+     * @return 是否读取成功
+     */
+    public boolean getFloatArray(float[] dst, int offset, int count, boolean isLe) {
+        if (!checkArray(dst.length, offset, count, 4)) return false;
+        if (count >= VIEW_THRESHOLD) {
+            view(count * 4, isLe).asFloatBuffer().get(dst, offset, count);
+            position += count * 4;
+        } else {
+            for (int i = offset, end = offset + count; i < end; i++, position += 4) {
+                dst[i] = Float.intBitsToFloat(s32At(position, isLe));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 默认小端,见{@link BytesReader#getFloatArray(float[], int, int, boolean)}
+     */
+    public boolean getFloatArray(float[] dst, int offset, int count) {
+        return getFloatArray(dst, offset, count, true);
+    }
+
+    /**
+     * 从当前的索引位置开始 将count个8字节 转为 double,放入dst中从offset开始的位置,索引会向后移动count * 8个位置
+     * 剩余的数据不足时不会读取,索引也不会移动
+     *
+     * @param isLe 这段数据是否是小端
+     * @return 是否读取成功
+     */
+    public boolean getDoubleArray(double[] dst, int offset, int count, boolean isLe) {
+        if (!checkArray(dst.length, offset, count, 8)) return false;
+        if (count >= VIEW_THRESHOLD) {
+            view(count * 8, isLe).asDoubleBuffer().get(dst, offset, count);
+            position += count * 8;
+        } else {
+            for (int i = offset, end = offset + count; i < end; i++, position += 8) {
+                dst[i] = Double.longBitsToDouble(s64At(position, isLe));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 默认小端,见{@link BytesReader#getDoubleArray(double[], int, int, boolean)}
+     */
+    public boolean getDoubleArray(double[] dst, int offset, int count) {
+        return getDoubleArray(dst, offset, count, true);
+    }
+
     /**
      * 从当前的索引位置到索引加上指定长度位置的byte数据转化为String字符串,之后索引移动指定的长度
      * 如果传入的长度过长,会将剩下的所有数据转化为字符串,之后索引移动到末尾
+     * 字符集不支持时返回null,索引同样会移动
      */
-    public String getString(int length, String charSet) {
+    public String getString(int length, Charset charset) {
         String rst = null;
-        if (null != data) {
-            if (position + length > data.length) {
-                length = data.length - position;
+        if (null != data || null != buffer) {
+            if (position + length > limit) {
+                length = limit - position;
             }
-            byte[] tmp = new byte[length];
-            System.arraycopy(data, position, tmp, 0, length);
-            position += length;
-            try {
-                rst = new String(tmp, charSet);
-            } catch (UnsupportedEncodingException ignored) {
+            if (charset != null) {
+                if (data != null) {
+                    rst = StringDecoder.decode(data, position, length, charset);
+                } else {
+                    byte[] tmp = new byte[length];
+                    copy(position, tmp, 0, length);
+                    rst = StringDecoder.decode(tmp, 0, length, charset);
+                }
             }
+            position += length;
         }
         return rst;
     }
 
+    /**
+     * 见{@link BytesReader#getString(int, Charset)},字符集通过{@link StringDecoder#forName(String)}查找
+     */
+    public String getString(int length, String charSet) {
+        return getString(length, StringDecoder.forName(charSet));
+    }
+
     /**
      * 默认使用GBK编码
      */
     public String getString(int length) {
-        return getString(length, "GBK");
+        return getString(length, StringDecoder.GBK);
+    }
+
+    /**
+     * 与{@link BytesReader#getString(int, Charset)}相同,但解码的结果追加到dst中,复用decoder和dst时不会创建新的对象
+     *
+     * @return dst
+     */
+    public StringBuilder getString(int length, StringDecoder decoder, StringBuilder dst) {
+        if (null != data || null != buffer) {
+            if (position + length > limit) {
+                length = limit - position;
+            }
+            if (data != null) {
+                decoder.decode(data, position, length, dst);
+            } else {
+                buffer.limit(position + length).position(position);
+                decoder.decode(buffer, dst);
+                buffer.limit(limit);
+            }
+            position += length;
+        }
+        return dst;
     }
 
     /**
      * 获取当前索引位置
      */
     public int getPos() {
-        return position;
+        return position - offset;
     }
 
     /**
-     * 将索引移动到指定位置
+     * 将索引移动到指定位置,可以移动到末尾
      */
     public boolean setPos(int pos) {
-        if (null != data && pos < data.length) {
-            position = pos;
+        if (pos >= 0 && pos <= limit - offset) {
+            position = offset + pos;
             return true;
         }
         return false;
     }
 
     /**
-     * 将索引向后移动length个位置
+     * 将索引向后移动length个位置,length为负数时向前移动,可以移动到末尾
      *
      * @param length 移动长度
      * @return 是否成功
      */
     public boolean movePos(int length) {
-        if (null != data && position + length < data.length) {
-            position += length;
-            return true;
-        }
-        return false;
+        return setPos(position - offset + length);
+    }
+
+    /**
+     * 重新指定解析的数组和范围,供同一包下需要复用本对象的地方使用
+     */
+    BytesReader reset(byte[] bytes, int offset, int end) {
+        if (bytes != data || buffer != null) words = null;
+        data = bytes;
+        buffer = null;
+        this.offset = offset;
+        position = offset;
+        limit = end;
+        return this;
+    }
+
+    /**
+     * 获取底层数组,供同一包下需要直接在数组上计算长度的地方使用,不会拷贝;底层为没有可访问数组的ByteBuffer时返回null
+     */
+    byte[] array() {
+        return data;
+    }
+
+    /**
+     * 当前索引和结束位置在{@link BytesReader#array()}中的绝对位置
+     */
+    int position() {
+        return position;
+    }
+
+    int limit() {
+        return limit;
+    }
+
+    /**
+     * 不做检查直接将索引向后移动length个位置,调用前需要确认剩余的长度足够
+     */
+    void skip(int length) {
+        position += length;
     }
 
     /**
      * 获取剩余的长度
      */
     public int residue() {
-        int rst = 0;
-        if (null != data) {
-            rst = data.length - position;
-        }
-        return rst;
+        return limit - position;
     }
 
     /**
@@ -310,10 +779,10 @@ public class BytesReader {
      */
     public byte[] getResidue() {
         byte[] rst = null;
-        if (data != null && position < data.length) {
-            rst = new byte[data.length - position];
-            System.arraycopy(data, position, rst, 0, data.length - position);
-            position = data.length;
+        if (position < limit) {
+            rst = new byte[limit - position];
+            copy(position, rst, 0, rst.length);
+            position = limit;
         }
         return rst;
     }
@@ -322,8 +791,8 @@ public class BytesReader {
      * 查看表示长度的1字节的内容 在有符号时是多少,索引不会移动
      */
     public byte spyS8() {
-        if (data != null && position < data.length) {
-            return data[position];
+        if (position + 1 <= limit) {
+            return byteAt(position);
         }
         return 0;
     }
@@ -333,8 +802,8 @@ public class BytesReader {
      * 针对{@link DataType#TYPE_MUABLE0}
      */
     public short spyU8() {
-        if (data != null && position < data.length) {
-            return data[position] < 0 ? (short) (256 + data[position]) : (short) (data[position]);
+        if (position + 1 <= limit) {
+            return (short) (byteAt(position) & 0xff);
         }
         return 0;
     }
@@ -345,10 +814,8 @@ public class BytesReader {
      * @param isLe 这段数据是大端还是小端
      */
     public short spyS16(boolean isLe) {
-        if (data != null && position + 1 < data.length) {
-            byte[] tmp = new byte[2];
-            System.arraycopy(data, position, tmp, 0, 2);
-            return isLe ? EndianUtils.le2Short(tmp) : EndianUtils.be2Short(tmp);
+        if (position + 2 <= limit) {
+            return s16At(position, isLe);
         }
         return 0;
     }
@@ -360,10 +827,8 @@ public class BytesReader {
      * @param isLe 这段数据是大端还是小端
      */
     public int spyU16(boolean isLe) {
-        if (data != null && position + 1 < data.length) {
-            byte[] tmp = new byte[2];
-            System.arraycopy(data, position, tmp, 0, 2);
-            return isLe ? EndianUtils.le2U16(tmp) : EndianUtils.be2U16(tmp);
+        if (position + 2 <= limit) {
+            return s16At(position, isLe) & 0xffff;
         }
         return 0;
     }
@@ -374,10 +839,8 @@ public class BytesReader {
      * @param isLe 这段数据是大端还是小端
      */
     public int spyS32(boolean isLe) {
-        if (data != null && position + 3 < data.length) {
-            byte[] tmp = new byte[4];
-            System.arraycopy(data, position, tmp, 0, 4);
-            return isLe ? EndianUtils.le2Int(tmp) : EndianUtils.be2Int(tmp);
+        if (position + 4 <= limit) {
+            return s32At(position, isLe);
         }
         return 0;
     }
@@ -389,10 +852,8 @@ public class BytesReader {
      * @param isLe 这段数据是大端还是小端
      */
     public long spyU32(boolean isLe) {
-        if (data != null && position + 3 < data.length) {
-            byte[] tmp = new byte[4];
-            System.arraycopy(data, position, tmp, 0, 4);
-            return isLe ? EndianUtils.le2U32(tmp) : EndianUtils.be2U32(tmp);
+        if (position + 4 <= limit) {
+            return s32At(position, isLe) & 0xffffffffL;
         }
         return 0;
     }
@@ -403,34 +864,174 @@ public class BytesReader {
      * @param isLe 这段数据是大端还是小端
      */
     public long spyS64(boolean isLe) {
-        if (data != null && position + 7 < data.length) {
-            byte[] tmp = new byte[8];
-            System.arraycopy(data, position, tmp, 0, 8);
-            return isLe ? EndianUtils.le2Long(tmp) : EndianUtils.be2Long(tmp);
+        if (position + 8 <= limit) {
+            return s64At(position, isLe);
         }
         return 0;
     }
 
-    @Override
-    public String toString() {
-        return toString(data);
+    /**
+     * 按8个字节一组查找[from, end)中value第一次出现的位置,没有找到时返回-1
+     */
+    private int find(byte value, int from, int end) {
+        int i = from;
+        if (end - i >= 8) {
+            ByteBuffer words = words();
+            long pattern = ONES * (value & 0xff);
+            for (int last = end - 8; i <= last; i += 8) {
+                // 与value相同的字节异或后为0,(x - ONES) & ~x & HIGHS中最低的非0字节即为第一个为0的字节
+                long x = words.getLong(i) ^ pattern;
+                long zeros = (x - ONES) & ~x & HIGHS;
+                if (zeros != 0) return i + (Long.numberOfTrailingZeros(zeros) >>> 3);
+            }
+        }
+        for (; i < end; i++) {
+            if (byteAt(i) == value) return i;
+        }
+        return -1;
     }
 
     /**
-     * 提供的静态的可以将byte数组打印为16进制的字符串的工具方法
+     * 按8个字节一组比较index开始与other中从otherOffset开始的length个字节,调用前需要确认长度足够
+     *
+     * @param otherWords 包装other的小端ByteBuffer,length不少于8时不能为null
+     * @return 第一个不同的字节相对于index的偏移,全部相同时返回-1
      */
-    public static String toString(byte[] src) {
-        if (src != null) {
-            StringBuilder rst = new StringBuilder();
-            for (byte aSrc : src) {
-                short val = aSrc < 0 ? (short) (256 + aSrc) : aSrc;
-                rst.append(TABLE.substring(((val >> 4) & 0x0f), (((val >> 4) & 0x0f) + 1)))
-                        .append(TABLE.substring((val & 0x0f), (val & 0x0f) + 1))
-                        .append(" ");
+    private int mismatch(int index, byte[] other, ByteBuffer otherWords, int otherOffset, int length) {
+        int i = 0;
+        if (length >= 8) {
+            ByteBuffer words = words();
+            for (int last = length - 8; i <= last; i += 8) {
+                long x = words.getLong(index + i) ^ otherWords.getLong(otherOffset + i);
+                if (x != 0) return i + (Long.numberOfTrailingZeros(x) >>> 3);
             }
-            return rst.toString();
+        }
+        for (; i < length; i++) {
+            if (byteAt(index + i) != other[otherOffset + i]) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * 获取用于按8个字节一组读取的小端ByteBuffer,在直接内存和较新的虚拟机上getLong为一次读取
+     */
+    private ByteBuffer words() {
+        if (words == null) {
+            words = (buffer != null ? buffer.duplicate() : ByteBuffer.wrap(data)).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return words;
+    }
+
+    /**
+     * 检查dst中从offset开始能放下count个元素,超出时抛出IndexOutOfBoundsException
+     *
+     * @param size 每个元素占用的字节数
+     * @return 剩余的数据是否足够
+     */
+    private boolean checkArray(int dstLength, int offset, int count, int size) {
+        if (offset < 0 || count < 0 || offset > dstLength - count) {
+            throw new IndexOutOfBoundsException("Offset: " + offset + ", Count: " + count + ", Size: " + dstLength);
+        }
+        return (long) count * size <= limit - position;
+    }
+
+    /**
+     * 创建当前索引位置开始的length个字节的ByteBuffer,用于通过asXxxBuffer批量解码,
+     * 底层为直接内存时也能直接批量拷贝并转换字节序
+     */
+    private ByteBuffer view(int length, boolean isLe) {
+        ByteBuffer view;
+        if (buffer == null) {
+            view = ByteBuffer.wrap(data, position, length);
         } else {
-            return "null";
+            buffer.limit(position + length).position(position);
+            view = buffer.slice();
+            buffer.limit(limit);
         }
+        return view.order(isLe ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * 读取最多maxLength个字节的变长整数,失败时返回0且不移动索引
+     */
+    private long varint(int maxLength) {
+        // 大部分的值只占1到2个字节,直接从数组中读取,不进入循环
+        if (buffer == null && position + 2 <= limit) {
+            byte b0 = data[position];
+            if (b0 >= 0) {
+                position++;
+                return b0;
+            }
+            byte b1 = data[position + 1];
+            if (b1 >= 0) {
+                position += 2;
+                return (b0 & 0x7f) | b1 << 7;
+            }
+        }
+        long rst = 0;
+        for (int i = 0; i < maxLength && position + i < limit; i++) {
+            byte b = byteAt(position + i);
+            rst |= (long) (b & 0x7f) << (i * 7);
+            if (b >= 0) {
+                position += i + 1;
+                return rst;
+            }
+        }
+        return 0;
+    }
+
+    private byte byteAt(int index) {
+        return buffer == null ? data[index] : buffer.get(index);
+    }
+
+    private short s16At(int index, boolean isLe) {
+        if (buffer == null) {
+            return isLe ? EndianUtils.le2Short(data, index) : EndianUtils.be2Short(data, index);
+        }
+        return buffer.order(isLe ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN).getShort(index);
+    }
+
+    private int s32At(int index, boolean isLe) {
+        if (buffer == null) {
+            return isLe ? EndianUtils.le2Int(data, index) : EndianUtils.be2Int(data, index);
+        }
+        return buffer.order(isLe ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN).getInt(index);
+    }
+
+    private long s64At(int index, boolean isLe) {
+        if (buffer == null) {
+            return isLe ? EndianUtils.le2Long(data, index) : EndianUtils.be2Long(data, index);
+        }
+        return buffer.order(isLe ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN).getLong(index);
+    }
+
+    private void copy(int index, byte[] dst, int off, int length) {
+        if (buffer == null) {
+            System.arraycopy(data, index, dst, off, length);
+        } else {
+            buffer.position(index);
+            buffer.get(dst, off, length);
+        }
+    }
+
+    @Override
+    public String toString() {
+        if (data != null) {
+            return HexCodec.spaced(data, offset, limit - offset);
+        }
+        if (buffer != null) {
+            byte[] rst = new byte[limit - offset];
+            copy(offset, rst, 0, rst.length);
+            return HexCodec.spaced(rst, 0, rst.length);
+        }
+        return "null";
+    }
+
+    /**
+     * 提供的静态的可以将byte数组打印为16进制的字符串的工具方法,每个字节后面附加一个空格
+     * 其他格式见{@link HexCodec}
+     */
+    public static String toString(byte[] src) {
+        return src != null ? HexCodec.spaced(src, 0, src.length) : "null";
     }
 }
@@ -0,0 +1,111 @@
+package com.github.bytesutils;
+
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+/**
+ * 常用的校验和
+ * <p>
+ * 返回的都是{@link Checksum},可以分多次调用update增量计算;CRC-8/16/32C见{@link Crc}
+ */
+public final class Checksums {
+
+    private Checksums() {
+    }
+
+    /**
+     * CRC-32,使用{@link CRC32},由虚拟机的内建实现计算
+     */
+    public static Checksum crc32() {
+        return new CRC32();
+    }
+
+    /**
+     * 所有字节的异或,结果为8位
+     */
+    public static Checksum xor8() {
+        return new Xor();
+    }
+
+    /**
+     * 所有字节作为无符号数的和,只保留低8位
+     */
+    public static Checksum sum8() {
+        return new Sum(0xffL);
+    }
+
+    /**
+     * 所有字节作为无符号数的和,只保留低16位
+     */
+    public static Checksum sum16() {
+        return new Sum(0xffffL);
+    }
+
+    /**
+     * 所有字节作为无符号数的和,只保留低32位
+     */
+    public static Checksum sum32() {
+        return new Sum(0xffffffffL);
+    }
+
+    private static final class Xor implements Checksum {
+        private int value;
+
+        @Override
+        public void update(int b) {
+            value ^= b;
+        }
+
+        @Override
+        public void update(byte[] b, int off, int len) {
+            int x = value;
+            for (int i = off, end = off + len; i < end; i++) {
+                x ^= b[i];
+            }
+            value = x;
+        }
+
+        @Override
+        public long getValue() {
+            return value & 0xff;
+        }
+
+        @Override
+        public void reset() {
+            value = 0;
+        }
+    }
+
+    private static final class Sum implements Checksum {
+        private final long mask;
+        private long value;
+
+        Sum(long mask) {
+            this.mask = mask;
+        }
+
+        @Override
+        public void update(int b) {
+            value += b & 0xff;
+        }
+
+        @Override
+        public void update(byte[] b, int off, int len) {
+            long s = value;
+            for (int i = off, end = off + len; i < end; i++) {
+                s += b[i] & 0xff;
+            }
+            value = s;
+        }
+
+        @Override
+        public long getValue() {
+            return value & mask;
+        }
+
+        @Override
+        public void reset() {
+            value = 0;
+        }
+    }
+}
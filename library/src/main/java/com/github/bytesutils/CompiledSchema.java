@@ -0,0 +1,137 @@
+package com.github.bytesutils;
+
+/**
+ * 根据节点的描述{@link DataDescribe}预先编译出的布局
+ * <p>
+ * 只需构建一次,之后可以被任意多个{@link Tree}共享.
+ * 构建时会计算出每个字段相对于起始位置的固定偏移,标记出第一个可变长度的字段,
+ * 并将每个字段对应到专门的读写器,解析和构建时只需按顺序调用读写器,不再根据类型进行分支判断
+ * <p>
+ * 编译时会复制描述中的类型、长度和大小端,之后再修改描述不会影响已经编译好的布局
+ */
+public final class CompiledSchema {
+    /**
+     * 编译所用的描述的副本
+     */
+    final DataDescribe[] des;
+    /**
+     * 每个字段对应的读写器
+     */
+    final FieldCodec[] codecs;
+    /**
+     * 每个字段相对于起始位置的固定偏移,位于第一个可变长度字段之后的字段为-1
+     */
+    final int[] fixedOffsets;
+    /**
+     * 第一个可变长度字段的索引,全部为固定长度时为-1
+     */
+    final int firstVariableIndex;
+    /**
+     * 第一个可变长度字段之前的所有字段的总长度,全部为固定长度时即为总长度
+     */
+    final int fixedLength;
+    /**
+     * 所有可变长度字段的索引
+     * 以可变长度字段为边界将字段分为多段,第k段包含第k-1个可变长度字段之后到第k个可变长度字段为止的字段
+     */
+    final int[] variableIndexes;
+    /**
+     * 每个字段所在的段
+     */
+    final int[] segments;
+    /**
+     * 每个字段相对于所在段起始位置的固定偏移
+     */
+    final int[] segmentOffsets;
+    /**
+     * 最后一个可变长度字段之后的所有字段的总长度
+     */
+    final int tailLength;
+
+    public CompiledSchema(DataDescribe[] des) {
+        des = copy(des);
+        this.des = des;
+        codecs = new FieldCodec[des.length];
+        fixedOffsets = new int[des.length];
+        segments = new int[des.length];
+        segmentOffsets = new int[des.length];
+        int variableCount = 0;
+        int offset = 0;
+        for (int index = 0; index < des.length; index++) {
+            FieldCodec codec = FieldCodec.of(des[index]);
+            codecs[index] = codec;
+            fixedOffsets[index] = variableCount == 0 ? offset : -1;
+            segments[index] = variableCount;
+            segmentOffsets[index] = offset;
+            if (codec.fixedLength < 0) {
+                variableCount++;
+                offset = 0;
+            } else {
+                offset += codec.fixedLength;
+            }
+        }
+        variableIndexes = new int[variableCount];
+        for (int index = 0, k = 0; index < des.length; index++) {
+            if (codecs[index].fixedLength < 0) variableIndexes[k++] = index;
+        }
+        firstVariableIndex = variableCount == 0 ? -1 : variableIndexes[0];
+        fixedLength = variableCount == 0 ? offset : segmentOffsets[firstVariableIndex];
+        tailLength = offset;
+    }
+
+    /**
+     * 获取编译所用的描述的副本,不应修改
+     */
+    public DataDescribe[] getDescribes() {
+        return des;
+    }
+
+    private static DataDescribe[] copy(DataDescribe[] des) {
+        if (des == null) return null;
+        DataDescribe[] rst = new DataDescribe[des.length];
+        for (int i = 0; i < des.length; i++) {
+            DataDescribe d = des[i];
+            DataDescribe c = new DataDescribe(d.type, d.length, d.isLe);
+            c.elementType = d.elementType;
+            c.count = d.count;
+            c.elementDes = copy(d.elementDes);
+            rst[i] = c;
+        }
+        return rst;
+    }
+
+    /**
+     * 获取字段的数量
+     */
+    public int size() {
+        return codecs.length;
+    }
+
+    /**
+     * 获取指定字段相对于起始位置的固定偏移,位于第一个可变长度字段之后的字段返回-1
+     */
+    public int getFixedOffset(int index) {
+        return fixedOffsets[index];
+    }
+
+    /**
+     * 获取第一个可变长度字段的索引,全部为固定长度时返回-1
+     */
+    public int getFirstVariableIndex() {
+        return firstVariableIndex;
+    }
+
+    /**
+     * 获取第一个可变长度字段之前的所有字段的总长度,全部为固定长度时即为总长度
+     */
+    public int getFixedLength() {
+        return fixedLength;
+    }
+
+    /**
+     * 是否所有字段都是固定长度
+     */
+    public boolean isFixedSize() {
+        return firstVariableIndex == -1;
+    }
+}
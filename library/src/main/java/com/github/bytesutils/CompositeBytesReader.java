@@ -0,0 +1,537 @@
+package com.github.bytesutils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.zip.Checksum;
+
+/**
+ * 将多段byte数组或ByteBuffer作为一段连续的数据解析的BytesReader,用于解析分成多段收到的帧,不需要先拼接成一个数组
+ * <p>
+ * 每一段都由一个单独的BytesReader解析,读取的数据在当前段中完整时直接从当前段读取;
+ * 只有跨越段边界的数据才会拷贝到内部的缓冲区中拼接后再解码,bulk读取跨越边界时逐个元素读取.
+ * 作为BytesReader传给{@link Tree#parserByteArray(BytesReader)}即可直接解析多段的数据.
+ * <p>
+ * 索引位置、数据不足时的返回值等与{@link BytesReader}相同;添加的数据不会被拷贝,在使用完之前不能修改;非线程安全
+ */
+public class CompositeBytesReader extends BytesReader {
+
+    /**
+     * 没有任何数据时使用的BytesReader
+     */
+    private static final BytesReader EMPTY = new BytesReader(new byte[0]);
+
+    private BytesReader[] segments = new BytesReader[4];
+    /**
+     * 每一段在整体中的起始位置,starts[count]为总长度
+     */
+    private int[] starts = new int[5];
+    private int count;
+    /**
+     * 当前索引位置所在的段
+     */
+    private int segment;
+    /**
+     * 拼接跨越段边界的数据使用的缓冲区
+     */
+    private byte[] scratch = new byte[16];
+    private final BytesReader scratchReader = new BytesReader((byte[]) null);
+
+    public CompositeBytesReader() {
+        super((byte[]) null);
+    }
+
+    public CompositeBytesReader(byte[]... chunks) {
+        this();
+        for (byte[] chunk : chunks) add(chunk);
+    }
+
+    public CompositeBytesReader(ByteBuffer... buffers) {
+        this();
+        for (ByteBuffer buffer : buffers) add(buffer);
+    }
+
+    /**
+     * 在末尾添加一段数据,不会拷贝
+     */
+    public CompositeBytesReader add(byte[] chunk) {
+        return add(chunk, 0, chunk.length);
+    }
+
+    /**
+     * 在末尾添加chunk中从offset开始的length个字节,不会拷贝
+     */
+    public CompositeBytesReader add(byte[] chunk, int offset, int length) {
+        return add(new BytesReader(chunk, offset, length));
+    }
+
+    /**
+     * 在末尾添加buffer中从position到limit的数据,不会拷贝,也不会修改buffer的位置
+     */
+    public CompositeBytesReader add(ByteBuffer buffer) {
+        return add(new BytesReader(buffer));
+    }
+
+    private CompositeBytesReader add(BytesReader reader) {
+        int length = reader.residue();
+        if (length == 0) return this;
+        if (count == segments.length) {
+            segments = Arrays.copyOf(segments, count * 2);
+            starts = Arrays.copyOf(starts, count * 2 + 1);
+        }
+        segments[count] = reader;
+        starts[count + 1] = starts[count] + length;
+        count++;
+        return this;
+    }
+
+    /**
+     * 移除所有的数据,之后可以重新添加
+     */
+    public void clear() {
+        Arrays.fill(segments, 0, count, null);
+        count = 0;
+        segment = 0;
+    }
+
+    /**
+     * 获取段的个数
+     */
+    public int segments() {
+        return count;
+    }
+
+    @Override
+    public BytesReader slice(int length) {
+        if (length < 0 || residue() < length) return null;
+        BytesReader cursor = cursor();
+        if (cursor.residue() >= length) return cursor.slice(length);
+        CompositeBytesReader rst = new CompositeBytesReader();
+        int pos = getPos();
+        for (int i = segment, remaining = length; remaining > 0; i++) {
+            BytesReader reader = segments[i];
+            reader.setPos(Math.max(pos - starts[i], 0));
+            int n = Math.min(remaining, reader.residue());
+            rst.add(reader.slice(n));
+            remaining -= n;
+        }
+        seek(pos + length);
+        return rst;
+    }
+
+    @Override
+    public boolean isRemainingFilledWith(byte value) {
+        int pos = getPos();
+        boolean rst = true;
+        for (int i = segment; rst && i < count; i++) {
+            if (i > segment) segments[i].setPos(0);
+            rst = segments[i].isRemainingFilledWith(value);
+        }
+        seek(pos);
+        return rst;
+    }
+
+    @Override
+    public int indexOf(byte value) {
+        int pos = getPos();
+        int rst = -1;
+        for (int i = segment; i < count; i++) {
+            if (i > segment) segments[i].setPos(0);
+            int index = segments[i].indexOf(value);
+            if (index >= 0) {
+                rst = starts[i] + index;
+                break;
+            }
+        }
+        seek(pos);
+        return rst;
+    }
+
+    /**
+     * 见{@link BytesReader#indexOf(byte[])},跨越段边界的pattern也能找到
+     */
+    @Override
+    public int indexOf(byte[] pattern) {
+        int pos = getPos();
+        if (pattern.length == 0) return pos;
+        int rst = -1;
+        for (int i = segment; i < count && rst < 0; i++) {
+            BytesReader reader = segments[i];
+            if (i > segment) reader.setPos(0);
+            int index = reader.indexOf(pattern);
+            if (index >= 0) {
+                rst = starts[i] + index;
+                break;
+            }
+            // 段内没有时,只可能从段的最后pattern.length - 1个字节中开始跨越到后面的段
+            int end = starts[i + 1];
+            int from = Math.max(starts[i] + reader.getPos(), end - pattern.length + 1);
+            for (int at = from; at < end && rst < 0; at++) {
+                if (matchesAt(at, pattern)) rst = at;
+            }
+        }
+        seek(pos);
+        return rst;
+    }
+
+    @Override
+    public int mismatch(byte[] other, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > other.length - length) {
+            throw new IndexOutOfBoundsException("Offset: " + offset + ", Length: " + length + ", Size: " + other.length);
+        }
+        int pos = getPos();
+        int n = Math.min(length, residue());
+        int rst = -1;
+        for (int i = segment, done = 0; done < n; i++) {
+            BytesReader reader = segments[i];
+            if (i > segment) reader.setPos(0);
+            int step = Math.min(n - done, reader.residue());
+            int index = reader.mismatch(other, offset + done, step);
+            if (index >= 0) {
+                rst = done + index;
+                break;
+            }
+            done += step;
+        }
+        seek(pos);
+        return rst >= 0 || n == length ? rst : n;
+    }
+
+    @Override
+    public boolean updateChecksum(Checksum checksum, int pos, int length) {
+        if (pos < 0 || length < 0 || pos > starts[count] - length) return false;
+        for (int i = segmentOf(pos), end = pos + length; pos < end; i++) {
+            int n = Math.min(end, starts[i + 1]) - pos;
+            segments[i].updateChecksum(checksum, pos - starts[i], n);
+            pos += n;
+        }
+        return true;
+    }
+
+    @Override
+    public byte[] getBytes(int length) {
+        if (length < 0 || residue() < length) return null;
+        byte[] rst = new byte[length];
+        getBytes(rst, 0, length);
+        return rst;
+    }
+
+    @Override
+    public boolean getBytes(byte[] dst, int offset, int length) {
+        if (length < 0 || residue() < length) return false;
+        int pos = getPos();
+        copy(pos, dst, offset, length);
+        seek(pos + length);
+        return true;
+    }
+
+    @Override
+    public byte getS8() {
+        return take(1).getS8();
+    }
+
+    @Override
+    public short getU8() {
+        return take(1).getU8();
+    }
+
+    @Override
+    public short getS16(boolean isLe) {
+        return take(2).getS16(isLe);
+    }
+
+    @Override
+    public int getU16(boolean isLe) {
+        return take(2).getU16(isLe);
+    }
+
+    @Override
+    public int getS32(boolean isLe) {
+        return take(4).getS32(isLe);
+    }
+
+    @Override
+    public long getU32(boolean isLe) {
+        return take(4).getU32(isLe);
+    }
+
+    @Override
+    public long getS64(boolean isLe) {
+        return take(8).getS64(isLe);
+    }
+
+    @Override
+    public float getFloat(boolean isLe) {
+        return take(4).getFloat(isLe);
+    }
+
+    @Override
+    public double getDouble(boolean isLe) {
+        return take(8).getDouble(isLe);
+    }
+
+    @Override
+    public long getVarU32() {
+        BytesReader reader = peek(Math.min(Varint.MAX_LENGTH32, residue()));
+        long rst = reader.getVarU32();
+        if (reader == scratchReader) skip(reader.getPos());
+        return rst;
+    }
+
+    @Override
+    public long getVarU64() {
+        BytesReader reader = peek(Math.min(Varint.MAX_LENGTH64, residue()));
+        long rst = reader.getVarU64();
+        if (reader == scratchReader) skip(reader.getPos());
+        return rst;
+    }
+
+    @Override
+    public boolean getS8Array(byte[] dst, int offset, int count) {
+        if (!straddles(count)) return cursor().getS8Array(dst, offset, count);
+        checkArray(dst.length, offset, count);
+        return getBytes(dst, offset, count);
+    }
+
+    @Override
+    public boolean getU8Array(short[] dst, int offset, int count) {
+        if (!straddles(count)) return cursor().getU8Array(dst, offset, count);
+        checkArray(dst.length, offset, count);
+        for (int i = offset, end = offset + count; i < end; i++) dst[i] = getU8();
+        return true;
+    }
+
+    @Override
+    public boolean getS16Array(short[] dst, int offset, int count, boolean isLe) {
+        if (!straddles(count * 2L)) return cursor().getS16Array(dst, offset, count, isLe);
+        checkArray(dst.length, offset, count);
+        for (int i = offset, end = offset + count; i < end; i++) dst[i] = getS16(isLe);
+        return true;
+    }
+
+    @Override
+    public boolean getU16Array(int[] dst, int offset, int count, boolean isLe) {
+        if (!straddles(count * 2L)) return cursor().getU16Array(dst, offset, count, isLe);
+        checkArray(dst.length, offset, count);
+        for (int i = offset, end = offset + count; i < end; i++) dst[i] = getU16(isLe);
+        return true;
+    }
+
+    @Override
+    public boolean getS32Array(int[] dst, int offset, int count, boolean isLe) {
+        if (!straddles(count * 4L)) return cursor().getS32Array(dst, offset, count, isLe);
+        checkArray(dst.length, offset, count);
+        for (int i = offset, end = offset + count; i < end; i++) dst[i] = getS32(isLe);
+        return true;
+    }
+
+    @Override
+    public boolean getU32Array(long[] dst, int offset, int count, boolean isLe) {
+        if (!straddles(count * 4L)) return cursor().getU32Array(dst, offset, count, isLe);
+        checkArray(dst.length, offset, count);
+        for (int i = offset, end = offset + count; i < end; i++) dst[i] = getU32(isLe);
+        return true;
+    }
+
+    @Override
+    public boolean getS64Array(long[] dst, int offset, int count, boolean isLe) {
+        if (!straddles(count * 8L)) return cursor().getS64Array(dst, offset, count, isLe);
+        checkArray(dst.length, offset, count);
+        for (int i = offset, end = offset + count; i < end; i++) dst[i] = getS64(isLe);
+        return true;
+    }
+
+    @Override
+    public boolean getFloatArray(float[] dst, int offset, int count, boolean isLe) {
+        if (!straddles(count * 4L)) return cursor().getFloatArray(dst, offset, count, isLe);
+        checkArray(dst.length, offset, count);
+        for (int i = offset, end = offset + count; i < end; i++) dst[i] = getFloat(isLe);
+        return true;
+    }
+
+    @Override
+    public boolean getDoubleArray(double[] dst, int offset, int count, boolean isLe) {
+        if (!straddles(count * 8L)) return cursor().getDoubleArray(dst, offset, count, isLe);
+        checkArray(dst.length, offset, count);
+        for (int i = offset, end = offset + count; i < end; i++) dst[i] = getDouble(isLe);
+        return true;
+    }
+
+    @Override
+    public String getString(int length, Charset charset) {
+        return take(Math.min(length, residue())).getString(length, charset);
+    }
+
+    @Override
+    public StringBuilder getString(int length, StringDecoder decoder, StringBuilder dst) {
+        return take(Math.min(length, residue())).getString(length, decoder, dst);
+    }
+
+    @Override
+    public int getPos() {
+        return count == 0 ? 0 : starts[segment] + segments[segment].getPos();
+    }
+
+    @Override
+    public boolean setPos(int pos) {
+        if (pos >= 0 && pos <= starts[count]) {
+            seek(pos);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean movePos(int length) {
+        return setPos(getPos() + length);
+    }
+
+    @Override
+    void skip(int length) {
+        seek(getPos() + length);
+    }
+
+    @Override
+    public int residue() {
+        return starts[count] - getPos();
+    }
+
+    @Override
+    public byte[] getResidue() {
+        return residue() > 0 ? getBytes(residue()) : null;
+    }
+
+    @Override
+    public byte spyS8() {
+        return peek(1).spyS8();
+    }
+
+    @Override
+    public short spyU8() {
+        return peek(1).spyU8();
+    }
+
+    @Override
+    public short spyS16(boolean isLe) {
+        return peek(2).spyS16(isLe);
+    }
+
+    @Override
+    public int spyU16(boolean isLe) {
+        return peek(2).spyU16(isLe);
+    }
+
+    @Override
+    public int spyS32(boolean isLe) {
+        return peek(4).spyS32(isLe);
+    }
+
+    @Override
+    public long spyU32(boolean isLe) {
+        return peek(4).spyU32(isLe);
+    }
+
+    @Override
+    public long spyS64(boolean isLe) {
+        return peek(8).spyS64(isLe);
+    }
+
+    @Override
+    public String toString() {
+        int pos = getPos();
+        byte[] all = new byte[starts[count]];
+        copy(0, all, 0, all.length);
+        seek(pos);
+        return HexCodec.spaced(all, 0, all.length);
+    }
+
+    /**
+     * 获取当前索引位置所在段的BytesReader,当前段已经读完时切换到下一段
+     */
+    private BytesReader cursor() {
+        if (count == 0) return EMPTY;
+        while (segment < count - 1 && segments[segment].residue() == 0) {
+            segments[++segment].setPos(0);
+        }
+        return segments[segment];
+    }
+
+    /**
+     * 获取从当前索引位置开始的length个字节所在的BytesReader,不移动索引
+     * 当前段中的数据足够或者剩余的数据不足时为当前段,否则将跨越边界的数据拼接到缓冲区中
+     */
+    private BytesReader peek(int length) {
+        BytesReader cursor = cursor();
+        if (cursor.residue() >= length || residue() < length) return cursor;
+        if (scratch.length < length) scratch = new byte[Math.max(length, scratch.length * 2)];
+        int pos = getPos();
+        copy(pos, scratch, 0, length);
+        seek(pos);
+        return scratchReader.reset(scratch, 0, length);
+    }
+
+    /**
+     * 与{@link CompositeBytesReader#peek(int)}相同,但拼接跨越边界的数据后索引会向后移动length个位置,
+     * 之后从返回的BytesReader中读取
+     */
+    private BytesReader take(int length) {
+        BytesReader reader = peek(length);
+        if (reader == scratchReader) skip(length);
+        return reader;
+    }
+
+    /**
+     * length个字节是否跨越了当前段的边界,剩余的数据不足时返回false
+     */
+    private boolean straddles(long length) {
+        return cursor().residue() < length && residue() >= length;
+    }
+
+    private int segmentOf(int pos) {
+        int i = 0;
+        while (i < count - 1 && pos >= starts[i + 1]) i++;
+        return i;
+    }
+
+    /**
+     * 将索引移动到pos,位于两段的边界时移动到后一段的开头
+     */
+    private void seek(int pos) {
+        if (count == 0) return;
+        segment = segmentOf(pos);
+        segments[segment].setPos(pos - starts[segment]);
+    }
+
+    /**
+     * 将从pos开始的length个字节拷贝到dst中,会修改经过的段的索引,调用后需要重新seek
+     */
+    private void copy(int pos, byte[] dst, int offset, int length) {
+        for (int i = segmentOf(pos), end = pos + length; pos < end; i++) {
+            BytesReader reader = segments[i];
+            int n = Math.min(end, starts[i + 1]) - pos;
+            reader.setPos(pos - starts[i]);
+            reader.getBytes(dst, offset, n);
+            offset += n;
+            pos += n;
+        }
+    }
+
+    /**
+     * 从pos开始的数据是否与pattern相同
+     */
+    private boolean matchesAt(int pos, byte[] pattern) {
+        if (starts[count] - pos < pattern.length) return false;
+        if (scratch.length < pattern.length) scratch = new byte[pattern.length];
+        copy(pos, scratch, 0, pattern.length);
+        for (int i = 0; i < pattern.length; i++) {
+            if (scratch[i] != pattern[i]) return false;
+        }
+        return true;
+    }
+
+    private static void checkArray(int dstLength, int offset, int count) {
+        if (offset < 0 || count < 0 || offset > dstLength - count) {
+            throw new IndexOutOfBoundsException("Offset: " + offset + ", Count: " + count + ", Size: " + dstLength);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.github.bytesutils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Checksum;
+
+/**
+ * 查表计算的CRC,宽度为8到32位,参数与常见的CRC参数模型相同(输入和输出的位序一致)
+ * <p>
+ * 每次处理8个字节(slicing-by-8),剩余不足8个字节时逐个字节查表;
+ * 参数相同的实例共享同一份表,表只在第一次使用时创建.
+ * 实现了{@link Checksum},可以分多次调用update增量计算,配合{@link BytesReader#updateChecksum(Checksum, int, int)}
+ * 和{@link ByteArrayList#updateChecksum(Checksum, int, int)}直接计算其中一段数据,不需要先拷贝出来;非线程安全
+ */
+public final class Crc implements Checksum {
+
+    private static final ConcurrentHashMap<String, int[][]> TABLES = new ConcurrentHashMap<>();
+
+    private final int width;
+    private final boolean reflected;
+    private final int init;
+    private final long xorOut;
+    private final long mask;
+    /**
+     * tables[k][b]为字节b后面再跟k个0字节时对寄存器的影响,tables[0]即为普通的逐字节查表
+     */
+    private final int[][] tables;
+    /**
+     * 寄存器,reflected时存放在低位,否则靠高位对齐存放在32位中
+     */
+    private int crc;
+
+    /**
+     * @param width     宽度 8到32
+     * @param poly      多项式,不包含最高位,如CRC-16的0x8005
+     * @param init      初始值
+     * @param reflected 输入和输出是否按位反转,即每个字节是否从最低位开始计算
+     * @param xorOut    输出前异或的值
+     */
+    public Crc(int width, long poly, long init, boolean reflected, long xorOut) {
+        if (width < 8 || width > 32) throw new IllegalArgumentException("width: " + width);
+        this.width = width;
+        this.reflected = reflected;
+        mask = -1L >>> (64 - width);
+        this.xorOut = xorOut & mask;
+        int p = (int) (poly & mask);
+        int i = (int) (init & mask);
+        this.init = reflected ? Integer.reverse(i) >>> (32 - width) : i << (32 - width);
+        String key = width + ":" + Integer.toHexString(p) + ":" + reflected;
+        int[][] tables = TABLES.get(key);
+        if (tables == null) {
+            tables = reflected ? reflectedTables(Integer.reverse(p) >>> (32 - width)) : normalTables(p << (32 - width));
+            TABLES.put(key, tables);
+        }
+        this.tables = tables;
+        crc = this.init;
+    }
+
+    /**
+     * CRC-8 多项式0x07 初始值0
+     */
+    public static Crc crc8() {
+        return new Crc(8, 0x07, 0, false, 0);
+    }
+
+    /**
+     * CRC-8/MAXIM 多项式0x31 初始值0 反转,用于1-Wire
+     */
+    public static Crc crc8Maxim() {
+        return new Crc(8, 0x31, 0, true, 0);
+    }
+
+    /**
+     * CRC-16/ARC(IBM) 多项式0x8005 初始值0 反转
+     */
+    public static Crc crc16Ibm() {
+        return new Crc(16, 0x8005, 0, true, 0);
+    }
+
+    /**
+     * CRC-16/MODBUS 多项式0x8005 初始值0xFFFF 反转,结果按小端附加在帧的末尾
+     */
+    public static Crc crc16Modbus() {
+        return new Crc(16, 0x8005, 0xFFFF, true, 0);
+    }
+
+    /**
+     * CRC-16/CCITT-FALSE 多项式0x1021 初始值0xFFFF
+     */
+    public static Crc crc16CcittFalse() {
+        return new Crc(16, 0x1021, 0xFFFF, false, 0);
+    }
+
+    /**
+     * CRC-16/XMODEM 多项式0x1021 初始值0
+     */
+    public static Crc crc16Xmodem() {
+        return new Crc(16, 0x1021, 0, false, 0);
+    }
+
+    /**
+     * CRC-16/KERMIT 多项式0x1021 初始值0 反转
+     */
+    public static Crc crc16Kermit() {
+        return new Crc(16, 0x1021, 0, true, 0);
+    }
+
+    /**
+     * CRC-32C(Castagnoli) 多项式0x1EDC6F41 初始值0xFFFFFFFF 反转 结果异或0xFFFFFFFF
+     * CRC-32使用{@link Checksums#crc32()}
+     */
+    public static Crc crc32c() {
+        return new Crc(32, 0x1EDC6F41, 0xFFFFFFFFL, true, 0xFFFFFFFFL);
+    }
+
+    /**
+     * 获取宽度
+     */
+    public int width() {
+        return width;
+    }
+
+    @Override
+    public void update(int b) {
+        if (reflected) {
+            crc = tables[0][(crc ^ b) & 0xff] ^ crc >>> 8;
+        } else {
+            crc = tables[0][(crc >>> 24 ^ b) & 0xff] ^ crc << 8;
+        }
+    }
+
+    @Override
+    public void update(byte[] b, int off, int len) {
+        if (off < 0 || len < 0 || off > b.length - len) {
+            throw new IndexOutOfBoundsException("Offset: " + off + ", Length: " + len + ", Size: " + b.length);
+        }
+        int[] t0 = tables[0], t1 = tables[1], t2 = tables[2], t3 = tables[3];
+        int[] t4 = tables[4], t5 = tables[5], t6 = tables[6], t7 = tables[7];
+        int c = crc;
+        int end = off + len;
+        if (reflected) {
+            for (int stop = end - 7; off < stop; off += 8) {
+                c ^= b[off] & 0xff | (b[off + 1] & 0xff) << 8 | (b[off + 2] & 0xff) << 16 | b[off + 3] << 24;
+                c = t7[c & 0xff] ^ t6[c >>> 8 & 0xff] ^ t5[c >>> 16 & 0xff] ^ t4[c >>> 24]
+                        ^ t3[b[off + 4] & 0xff] ^ t2[b[off + 5] & 0xff] ^ t1[b[off + 6] & 0xff] ^ t0[b[off + 7] & 0xff];
+            }
+            for (; off < end; off++) {
+                c = t0[(c ^ b[off]) & 0xff] ^ c >>> 8;
+            }
+        } else {
+            for (int stop = end - 7; off < stop; off += 8) {
+                c ^= b[off] << 24 | (b[off + 1] & 0xff) << 16 | (b[off + 2] & 0xff) << 8 | b[off + 3] & 0xff;
+                c = t7[c >>> 24] ^ t6[c >>> 16 & 0xff] ^ t5[c >>> 8 & 0xff] ^ t4[c & 0xff]
+                        ^ t3[b[off + 4] & 0xff] ^ t2[b[off + 5] & 0xff] ^ t1[b[off + 6] & 0xff] ^ t0[b[off + 7] & 0xff];
+            }
+            for (; off < end; off++) {
+                c = t0[(c >>> 24 ^ b[off]) & 0xff] ^ c << 8;
+            }
+        }
+        crc = c;
+    }
+
+    public void update(byte[] b) {
+        update(b, 0, b.length);
+    }
+
+    /**
+     * 获取当前的结果,之后还可以继续update
+     */
+    @Override
+    public long getValue() {
+        long value = reflected ? crc & 0xffffffffL : (crc & 0xffffffffL) >>> (32 - width);
+        return (value ^ xorOut) & mask;
+    }
+
+    @Override
+    public void reset() {
+        crc = init;
+    }
+
+    /**
+     * 寄存器在低位,从最低位开始计算
+     */
+    private static int[][] reflectedTables(int poly) {
+        int[][] tables = new int[8][256];
+        for (int b = 0; b < 256; b++) {
+            int c = b;
+            for (int i = 0; i < 8; i++) {
+                c = (c & 1) != 0 ? c >>> 1 ^ poly : c >>> 1;
+            }
+            tables[0][b] = c;
+        }
+        for (int k = 1; k < 8; k++) {
+            for (int b = 0; b < 256; b++) {
+                int c = tables[k - 1][b];
+                tables[k][b] = c >>> 8 ^ tables[0][c & 0xff];
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * 寄存器靠高位对齐,从最高位开始计算
+     */
+    private static int[][] normalTables(int poly) {
+        int[][] tables = new int[8][256];
+        for (int b = 0; b < 256; b++) {
+            int c = b << 24;
+            for (int i = 0; i < 8; i++) {
+                c = c < 0 ? c << 1 ^ poly : c << 1;
+            }
+            tables[0][b] = c;
+        }
+        for (int k = 1; k < 8; k++) {
+            for (int b = 0; b < 256; b++) {
+                int c = tables[k - 1][b];
+                tables[k][b] = c << 8 ^ tables[0][c >>> 24];
+            }
+        }
+        return tables;
+    }
+}
@@ -15,9 +15,21 @@ public class DataDescribe {
      */
     public int length;
     /**
-     * 是否为小端
+     * 是否为小端 数组类型表示的是元素是否为小端
      */
     public boolean isLe;
+    /**
+     * 数组类型中元素的数据类型 {@link DataType}
+     */
+    public int elementType;
+    /**
+     * 固定个数的数组{@link DataType#TYPE_ARRAY}中元素的个数
+     */
+    public int count;
+    /**
+     * 数组类型中元素为{@link DataType#TYPE_TREE}时元素的描述
+     */
+    public DataDescribe[] elementDes;
 
     /**
      * 大多数数据的长度初始化时其实都是固定的,没必要在构造时手动填入
@@ -53,6 +65,17 @@ public class DataDescribe {
             case DataType.TYPE_MUABLE2:
             case DataType.TYPE_MUABLE1_BE:
             case DataType.TYPE_MUABLE2_BE:
+            case DataType.TYPE_ARRAY:
+            case DataType.TYPE_ARRAY0:
+            case DataType.TYPE_ARRAY1:
+            case DataType.TYPE_ARRAY2:
+            case DataType.TYPE_ARRAY1_BE:
+            case DataType.TYPE_ARRAY2_BE:
+            case DataType.TYPE_VAR_U32:
+            case DataType.TYPE_VAR_S32:
+            case DataType.TYPE_VAR_U64:
+            case DataType.TYPE_VAR_S64:
+            case DataType.TYPE_VAR_MUABLE:
             case DataType.TYPE_TREE:
             case DataType.TYPE_RAW:
                 length = 0;
@@ -84,4 +107,37 @@ public class DataDescribe {
     public DataDescribe(int type, int len) {
         this(type, len, true);
     }
+
+    /**
+     * 元素为数值类型的数组
+     *
+     * @param type        数组类型 {@link DataType#TYPE_ARRAY}等
+     * @param elementType 元素的数据类型
+     * @param count       元素的个数 只有{@link DataType#TYPE_ARRAY}需要
+     * @param le          元素是否是小端
+     */
+    public DataDescribe(int type, int elementType, int count, boolean le) {
+        this(type, le);
+        this.elementType = elementType;
+        this.count = count;
+    }
+
+    /**
+     * 元素为数值类型的数组 默认小端
+     */
+    public DataDescribe(int type, int elementType, int count) {
+        this(type, elementType, count, true);
+    }
+
+    /**
+     * 元素为{@link DataType#TYPE_TREE}的数组
+     *
+     * @param type       数组类型 {@link DataType#TYPE_ARRAY}等
+     * @param elementDes 元素的描述
+     * @param count      元素的个数 只有{@link DataType#TYPE_ARRAY}需要
+     */
+    public DataDescribe(int type, DataDescribe[] elementDes, int count) {
+        this(type, DataType.TYPE_TREE, count, true);
+        this.elementDes = elementDes;
+    }
 }
@@ -64,6 +64,51 @@ public interface DataType {
      * 可变数据类型5 前四字节为大端无符号32位 表示后续的内容长度 长度后续紧跟内容
      */
     int TYPE_MUABLE2_BE = 14;
+    /**
+     * 固定个数的数组 元素的类型和个数由{@link DataDescribe#elementType}和{@link DataDescribe#count}指定
+     * 元素可以是除可变数据类型、变长整数类型和原始数据类型之外的任意类型,元素为{@link DataType#TYPE_TREE}时元素的结构由{@link DataDescribe#elementDes}指定
+     */
+    int TYPE_ARRAY = 15;
+    /**
+     * 可变个数的数组1 第一字节为无符号8位 表示后续的元素个数 个数后续紧跟元素
+     */
+    int TYPE_ARRAY0 = 16;
+    /**
+     * 可变个数的数组2 前两字节为小端无符号16位 表示后续的元素个数 个数后续紧跟元素
+     */
+    int TYPE_ARRAY1 = 17;
+    /**
+     * 可变个数的数组3 前四字节为小端无符号32位 表示后续的元素个数 个数后续紧跟元素
+     */
+    int TYPE_ARRAY2 = 18;
+    /**
+     * 可变个数的数组4 前两字节为大端无符号16位 表示后续的元素个数 个数后续紧跟元素
+     */
+    int TYPE_ARRAY1_BE = 19;
+    /**
+     * 可变个数的数组5 前四字节为大端无符号32位 表示后续的元素个数 个数后续紧跟元素
+     */
+    int TYPE_ARRAY2_BE = 20;
+    /**
+     * 变长整数(LEB128) 无符号32位 占用1到5个字节 java用long接收
+     */
+    int TYPE_VAR_U32 = 21;
+    /**
+     * ZigZag编码的变长整数 有符号32位 占用1到5个字节 int
+     */
+    int TYPE_VAR_S32 = 22;
+    /**
+     * 变长整数(LEB128) 无符号64位 占用1到10个字节 java用long接收,超过63位的值为负数
+     */
+    int TYPE_VAR_U64 = 23;
+    /**
+     * ZigZag编码的变长整数 有符号64位 占用1到10个字节 long
+     */
+    int TYPE_VAR_S64 = 24;
+    /**
+     * 可变数据类型6 开头为无符号32位的变长整数 表示后续的内容长度 长度后续紧跟内容
+     */
+    int TYPE_VAR_MUABLE = 25;
     /**
      * 树结构类型
      */
@@ -0,0 +1,576 @@
+package com.github.bytesutils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Checksum;
+
+/**
+ * 数据存放在直接内存(direct ByteBuffer)中的{@link ByteArrayList},提供相同的add方法
+ * <p>
+ * 通过{@link DirectByteArrayList#writeTo(WritableByteChannel)}写入NIO通道时直接使用该内存,不需要先toArray再由JDK拷贝到直接内存中.
+ * 扩容时会分配新的直接内存并拷贝已有的数据,可以通过maxCapacity限制容量,
+ * 通过{@link DirectByteArrayList#capacity()}、{@link DirectByteArrayList#growCount()}和{@link DirectByteArrayList#allocatedBytes()}观察内存的使用.
+ * 直接内存由虚拟机在回收ByteBuffer时才释放,不再使用时应调用{@link DirectByteArrayList#release()}尽早放开引用,
+ * 没有release的DirectByteArrayList会一直计算在{@link DirectByteArrayList#allocatedBytes()}中.非线程安全
+ */
+public class DirectByteArrayList {
+
+    private static final int SCRATCH_SIZE = 1024;
+    /**
+     * 每次扩容最少增加的字节数,避免从0或很小的容量开始扩容时频繁重新分配
+     */
+    private static final int MIN_GROWTH = 64;
+    private static final ByteBuffer EMPTY = ByteBuffer.allocateDirect(0).order(ByteOrder.LITTLE_ENDIAN);
+    /**
+     * 所有实例分配后还没有release的直接内存的字节数,只在release和扩容时减少
+     */
+    private static final AtomicLong ALLOCATED = new AtomicLong();
+
+    private final int maxCapacity;
+    private int size = 0;
+    /**
+     * 小端序,所有写入都使用绝对位置,大端时先反转字节
+     */
+    private ByteBuffer buffer = EMPTY;
+    /**
+     * buffer的副本,用于批量读写以及写出,不影响buffer的position和limit
+     */
+    private ByteBuffer view = EMPTY.duplicate();
+    private int growCount;
+    /**
+     * 计算校验和以及编码字符串时使用的临时数组
+     */
+    private byte[] scratch;
+    /**
+     * 非阻塞写出时未写完的数据的起始位置,见{@link DirectByteArrayList#writeTo(WritableByteChannel)}
+     */
+    private int writePos;
+    private boolean writePending;
+
+    /**
+     * @param initialCapacity 初始分配的直接内存的大小
+     * @param maxCapacity     最大容量,需要超过时抛出IllegalStateException
+     */
+    public DirectByteArrayList(int initialCapacity, int maxCapacity) {
+        if (initialCapacity < 0 || initialCapacity > maxCapacity) {
+            throw new IllegalArgumentException("Illegal Capacity: " + initialCapacity + ", Max Capacity: " + maxCapacity);
+        }
+        this.maxCapacity = maxCapacity;
+        if (initialCapacity > 0) {
+            allocate(initialCapacity);
+        }
+    }
+
+    public DirectByteArrayList(int initialCapacity) {
+        this(initialCapacity, Integer.MAX_VALUE);
+    }
+
+    public DirectByteArrayList() {
+        this(1024);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 当前分配的直接内存的大小
+     */
+    public int capacity() {
+        return buffer.capacity();
+    }
+
+    public int maxCapacity() {
+        return maxCapacity;
+    }
+
+    /**
+     * 因为容量不足重新分配直接内存的次数
+     */
+    public int growCount() {
+        return growCount;
+    }
+
+    /**
+     * 所有DirectByteArrayList分配后还没有release的直接内存的字节数,不包括已经release或扩容时被替换、等待虚拟机回收的部分.
+     * 只在{@link DirectByteArrayList#release()}和扩容时减少,没有release就不再引用的DirectByteArrayList即使已经被虚拟机回收也会一直计算在内
+     */
+    public static long allocatedBytes() {
+        return ALLOCATED.get();
+    }
+
+    public DirectByteArrayList add(byte element) {
+        ensureCapacityInternal(size + 1);
+        buffer.put(size++, element);
+        return this;
+    }
+
+    public DirectByteArrayList add(byte[] src) {
+        return add(src, 0, src.length);
+    }
+
+    public DirectByteArrayList add(byte[] src, int offset, int length) {
+        ensureCapacityInternal(size + length);
+        view.limit(size + length).position(size);
+        view.put(src, offset, length);
+        size += length;
+        return this;
+    }
+
+    /**
+     * 添加src中剩余的数据,src的position会移动到limit
+     */
+    public DirectByteArrayList add(ByteBuffer src) {
+        int length = src.remaining();
+        ensureCapacityInternal(size + length);
+        view.limit(size + length).position(size);
+        view.put(src);
+        size += length;
+        return this;
+    }
+
+    public DirectByteArrayList add(short s, boolean isLe) {
+        ensureCapacityInternal(size + 2);
+        buffer.putShort(size, isLe ? s : Short.reverseBytes(s));
+        size += 2;
+        return this;
+    }
+
+    public DirectByteArrayList add(short s) {
+        return add(s, true);
+    }
+
+    public DirectByteArrayList add(int i, boolean isLe) {
+        ensureCapacityInternal(size + 4);
+        buffer.putInt(size, isLe ? i : Integer.reverseBytes(i));
+        size += 4;
+        return this;
+    }
+
+    public DirectByteArrayList add(int i) {
+        return add(i, true);
+    }
+
+    public DirectByteArrayList add(long l, boolean isLe) {
+        ensureCapacityInternal(size + 8);
+        buffer.putLong(size, isLe ? l : Long.reverseBytes(l));
+        size += 8;
+        return this;
+    }
+
+    public DirectByteArrayList add(long l) {
+        return add(l, true);
+    }
+
+    public DirectByteArrayList add(float f, boolean isLe) {
+        return add(Float.floatToRawIntBits(f), isLe);
+    }
+
+    public DirectByteArrayList add(float f) {
+        return add(f, true);
+    }
+
+    public DirectByteArrayList add(double d, boolean isLe) {
+        return add(Double.doubleToRawLongBits(d), isLe);
+    }
+
+    public DirectByteArrayList add(double d) {
+        return add(d, true);
+    }
+
+    /**
+     * 同{@link ByteArrayList#addVarU32(long)}
+     */
+    public DirectByteArrayList addVarU32(long l) {
+        return addVarU64(l & 0xffffffffL);
+    }
+
+    /**
+     * 同{@link ByteArrayList#addVarS32(int)}
+     */
+    public DirectByteArrayList addVarS32(int i) {
+        return addVarU64(Varint.zigzag(i) & 0xffffffffL);
+    }
+
+    /**
+     * 同{@link ByteArrayList#addVarU64(long)}
+     */
+    public DirectByteArrayList addVarU64(long l) {
+        ensureCapacityInternal(size + Varint.sizeOf(l));
+        view.limit(view.capacity()).position(size);
+        Varint.write(l, view);
+        size = view.position();
+        return this;
+    }
+
+    /**
+     * 同{@link ByteArrayList#addVarS64(long)}
+     */
+    public DirectByteArrayList addVarS64(long l) {
+        return addVarU64(Varint.zigzag(l));
+    }
+
+    /**
+     * 将s通过{@link StringEncoder}编码到复用的临时数组中再写入直接内存,不会为每个字符串创建新的数组
+     */
+    public DirectByteArrayList add(String s, Charset charSet) {
+        if (s != null && s.length() != 0 && charSet != null) {
+            int length = encode(s, charSet);
+            add(scratch, 0, length);
+        }
+        return this;
+    }
+
+    /**
+     * 字符集通过{@link StringDecoder#forName(String)}查找,不支持时不添加
+     */
+    public DirectByteArrayList add(String s, String charSet) {
+        return add(s, StringDecoder.forName(charSet));
+    }
+
+    public DirectByteArrayList add(String s) {
+        return add(s, StringDecoder.GBK);
+    }
+
+    /**
+     * 同{@link ByteArrayList#add(String, Charset, int)},先编码再写入长度前缀和数据
+     */
+    public DirectByteArrayList add(String s, Charset charSet, int type) {
+        long maxLength;
+        switch (type) {
+            case DataType.TYPE_MUABLE0:
+                maxLength = 0xff;
+                break;
+            case DataType.TYPE_MUABLE1:
+            case DataType.TYPE_MUABLE1_BE:
+                maxLength = 0xffff;
+                break;
+            case DataType.TYPE_MUABLE2:
+            case DataType.TYPE_MUABLE2_BE:
+            case DataType.TYPE_VAR_MUABLE:
+                maxLength = 0xffffffffL;
+                break;
+            default:
+                throw new IllegalMonitorStateException("don't have the type " + type);
+        }
+        int length = 0;
+        if (s != null && s.length() != 0 && charSet != null) {
+            length = encode(s, charSet);
+            if (length > maxLength) length = 0;
+        }
+        switch (type) {
+            case DataType.TYPE_MUABLE0:
+                add((byte) length);
+                break;
+            case DataType.TYPE_MUABLE1:
+                add((short) length, true);
+                break;
+            case DataType.TYPE_MUABLE1_BE:
+                add((short) length, false);
+                break;
+            case DataType.TYPE_MUABLE2:
+                add(length, true);
+                break;
+            case DataType.TYPE_MUABLE2_BE:
+                add(length, false);
+                break;
+            default:
+                addVarU32(length);
+                break;
+        }
+        if (length > 0) {
+            add(scratch, 0, length);
+        }
+        return this;
+    }
+
+    /**
+     * 见{@link DirectByteArrayList#add(String, Charset, int)},字符集通过{@link StringDecoder#forName(String)}查找
+     */
+    public DirectByteArrayList add(String s, String charSet, int type) {
+        return add(s, StringDecoder.forName(charSet), type);
+    }
+
+    /**
+     * 同{@link ByteArrayList#reserve(int)}
+     */
+    public int reserve(int length) {
+        int index = size;
+        addSize(length);
+        return index;
+    }
+
+    /**
+     * 覆盖index位置的1个字节,以下setXxxAt都只能覆盖已有的数据,不会改变size
+     */
+    public DirectByteArrayList setS8At(int index, byte b) {
+        checkRange(index, 1);
+        buffer.put(index, b);
+        return this;
+    }
+
+    public DirectByteArrayList setU8At(int index, short s) {
+        return setS8At(index, (byte) s);
+    }
+
+    public DirectByteArrayList setS16At(int index, short s, boolean isLe) {
+        checkRange(index, 2);
+        buffer.putShort(index, isLe ? s : Short.reverseBytes(s));
+        return this;
+    }
+
+    public DirectByteArrayList setS16At(int index, short s) {
+        return setS16At(index, s, true);
+    }
+
+    public DirectByteArrayList setU16At(int index, int i, boolean isLe) {
+        return setS16At(index, (short) i, isLe);
+    }
+
+    public DirectByteArrayList setU16At(int index, int i) {
+        return setU16At(index, i, true);
+    }
+
+    public DirectByteArrayList setS32At(int index, int i, boolean isLe) {
+        checkRange(index, 4);
+        buffer.putInt(index, isLe ? i : Integer.reverseBytes(i));
+        return this;
+    }
+
+    public DirectByteArrayList setS32At(int index, int i) {
+        return setS32At(index, i, true);
+    }
+
+    public DirectByteArrayList setU32At(int index, long l, boolean isLe) {
+        return setS32At(index, (int) l, isLe);
+    }
+
+    public DirectByteArrayList setU32At(int index, long l) {
+        return setU32At(index, l, true);
+    }
+
+    public DirectByteArrayList setS64At(int index, long l, boolean isLe) {
+        checkRange(index, 8);
+        buffer.putLong(index, isLe ? l : Long.reverseBytes(l));
+        return this;
+    }
+
+    public DirectByteArrayList setS64At(int index, long l) {
+        return setS64At(index, l, true);
+    }
+
+    public DirectByteArrayList setFloatAt(int index, float f, boolean isLe) {
+        return setS32At(index, Float.floatToRawIntBits(f), isLe);
+    }
+
+    public DirectByteArrayList setFloatAt(int index, float f) {
+        return setFloatAt(index, f, true);
+    }
+
+    public DirectByteArrayList setDoubleAt(int index, double d, boolean isLe) {
+        return setS64At(index, Double.doubleToRawLongBits(d), isLe);
+    }
+
+    public DirectByteArrayList setDoubleAt(int index, double d) {
+        return setDoubleAt(index, d, true);
+    }
+
+    /**
+     * 用src中从offset开始的length个字节覆盖index位置的数据
+     */
+    public DirectByteArrayList setBytesAt(int index, byte[] src, int offset, int length) {
+        checkRange(index, length);
+        view.limit(index + length).position(index);
+        view.put(src, offset, length);
+        return this;
+    }
+
+    public byte get(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+
+        return buffer.get(index);
+    }
+
+    /**
+     * 将从index开始的length个字节拷贝到dst中从offset开始的位置
+     */
+    public void get(int index, byte[] dst, int offset, int length) {
+        checkRange(index, length);
+        view.limit(index + length).position(index);
+        view.get(dst, offset, length);
+    }
+
+    public void clear() {
+        fill(0, size);
+        size = 0;
+        writePending = false;
+    }
+
+    /**
+     * 同{@link ByteArrayList#reset()},保留已经分配的直接内存
+     */
+    public DirectByteArrayList reset() {
+        size = 0;
+        writePending = false;
+        return this;
+    }
+
+    /**
+     * 清空数据并放开持有的直接内存,由虚拟机在回收时释放,之后仍然可以继续添加数据,会重新分配
+     */
+    public void release() {
+        ALLOCATED.addAndGet(-buffer.capacity());
+        buffer = EMPTY;
+        view = EMPTY.duplicate();
+        size = 0;
+        writePending = false;
+    }
+
+    /**
+     * 添加空数据
+     */
+    public void addSize(int addSize) {
+        setSize(size + addSize);
+    }
+
+    /**
+     * 设置size的大小,若大于当前会扩充空数据 若小于当前会截取
+     */
+    public void setSize(int newSize) {
+        if (newSize < 0)
+            throw new IllegalArgumentException("Size Error:" + newSize);
+
+        if (newSize > size) {
+            ensureCapacityInternal(newSize);
+            fill(size, newSize);
+        }
+        size = newSize;
+    }
+
+    /**
+     * 将从offset开始的length个字节分块拷贝后加入checksum中计算
+     */
+    public void updateChecksum(Checksum checksum, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > size - length)
+            throw new IndexOutOfBoundsException("Offset: " + offset + ", Length: " + length + ", Size: " + size);
+
+        ensureScratch(SCRATCH_SIZE);
+        view.limit(offset + length).position(offset);
+        while (view.hasRemaining()) {
+            int n = Math.min(view.remaining(), SCRATCH_SIZE);
+            view.get(scratch, 0, n);
+            checksum.update(scratch, 0, n);
+        }
+    }
+
+    /**
+     * 将数据直接从直接内存写入channel
+     * <p>
+     * 阻塞的channel会一直写到全部写完;非阻塞的channel写入0个字节(发送缓冲区已满)时停止,
+     * 此时{@link DirectByteArrayList#isWritePending()}为true,等待channel可写后再次调用会从上次停止的位置继续写出.
+     * 全部写完后再次调用会重新写出所有数据
+     *
+     * @return 本次调用写入的字节数
+     */
+    public int writeTo(WritableByteChannel channel) throws IOException {
+        int from = writePending ? Math.min(writePos, size) : 0;
+        view.limit(size).position(from);
+        while (view.hasRemaining()) {
+            if (channel.write(view) <= 0) break;
+        }
+        writePos = view.position();
+        writePending = view.hasRemaining();
+        return writePos - from;
+    }
+
+    /**
+     * 上一次{@link DirectByteArrayList#writeTo(WritableByteChannel)}是否还有数据没有写出,reset、clear和release后为false
+     */
+    public boolean isWritePending() {
+        return writePending;
+    }
+
+    /**
+     * 返回共享同一块直接内存的ByteBuffer,position为0,limit为size,扩容或release后不再与本对象共享
+     */
+    public ByteBuffer asByteBuffer() {
+        ByteBuffer rst = buffer.duplicate();
+        rst.limit(size).position(0);
+        return rst;
+    }
+
+    public byte[] toArray() {
+        byte[] rst = new byte[size];
+        get(0, rst, 0, size);
+        return rst;
+    }
+
+    /**
+     * 将s编码到scratch中
+     *
+     * @return 编码后的长度
+     */
+    private int encode(String s, Charset charSet) {
+        StringEncoder encoder = StringEncoder.get(charSet);
+        ensureScratch(encoder.maxLength(s));
+        return encoder.encode(s, scratch, 0);
+    }
+
+    private void ensureScratch(int length) {
+        if (scratch == null || scratch.length < length) {
+            scratch = new byte[Math.max(length, SCRATCH_SIZE)];
+        }
+    }
+
+    private void fill(int from, int to) {
+        for (; from + 8 <= to; from += 8) {
+            buffer.putLong(from, 0L);
+        }
+        for (; from < to; from++) {
+            buffer.put(from, (byte) 0);
+        }
+    }
+
+    private void checkRange(int index, int length) {
+        if (index < 0 || length < 0 || index > size - length)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Length: " + length + ", Size: " + size);
+    }
+
+    private void ensureCapacityInternal(int minCapacity) {
+        int oldCapacity = buffer.capacity();
+        if (minCapacity - oldCapacity > 0) {
+            if (minCapacity < 0 || minCapacity > maxCapacity) {
+                throw new IllegalStateException("Capacity Exceeded: " + minCapacity + ", Max Capacity: " + maxCapacity);
+            }
+            int newCapacity = oldCapacity + Math.max(oldCapacity >> 1, MIN_GROWTH);
+            if (newCapacity < minCapacity) {
+                newCapacity = minCapacity;
+            }
+            if (newCapacity - maxCapacity > 0) {
+                newCapacity = maxCapacity;
+            }
+            ByteBuffer old = view;
+            allocate(newCapacity);
+            old.limit(size).position(0);
+            view.put(old);
+            ALLOCATED.addAndGet(-oldCapacity);
+            growCount++;
+        }
+    }
+
+    private void allocate(int capacity) {
+        buffer = ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN);
+        view = buffer.duplicate();
+        ALLOCATED.addAndGet(capacity);
+    }
+
+    @Override
+    public String toString() {
+        return size == 0 ? "" : HexCodec.spaced(toArray(), 0, size);
+    }
+}
@@ -124,6 +124,86 @@ public final class EndianUtils {
         return toBe(Double.doubleToRawLongBits(d));
     }
 
+    /**
+     * short以小端写入byte数组的指定位置
+     */
+    public static void toLe(short n, byte[] b, int off) {
+        b[off] = (byte) n;
+        b[off + 1] = (byte) (n >> 8);
+    }
+
+    /**
+     * short以大端写入byte数组的指定位置
+     */
+    public static void toBe(short n, byte[] b, int off) {
+        b[off] = (byte) (n >> 8);
+        b[off + 1] = (byte) n;
+    }
+
+    /**
+     * int以小端写入byte数组的指定位置
+     */
+    public static void toLe(int n, byte[] b, int off) {
+        b[off] = (byte) n;
+        b[off + 1] = (byte) (n >> 8);
+        b[off + 2] = (byte) (n >> 16);
+        b[off + 3] = (byte) (n >> 24);
+    }
+
+    /**
+     * int以大端写入byte数组的指定位置
+     */
+    public static void toBe(int n, byte[] b, int off) {
+        b[off] = (byte) (n >> 24);
+        b[off + 1] = (byte) (n >> 16);
+        b[off + 2] = (byte) (n >> 8);
+        b[off + 3] = (byte) n;
+    }
+
+    /**
+     * long以小端写入byte数组的指定位置
+     */
+    public static void toLe(long n, byte[] b, int off) {
+        toLe((int) n, b, off);
+        toLe((int) (n >> 32), b, off + 4);
+    }
+
+    /**
+     * long以大端写入byte数组的指定位置
+     */
+    public static void toBe(long n, byte[] b, int off) {
+        toBe((int) (n >> 32), b, off);
+        toBe((int) n, b, off + 4);
+    }
+
+    /**
+     * float以小端写入byte数组的指定位置
+     */
+    public static void toLe(float f, byte[] b, int off) {
+        toLe(Float.floatToRawIntBits(f), b, off);
+    }
+
+    /**
+     * float以大端写入byte数组的指定位置
+     */
+    public static void toBe(float f, byte[] b, int off) {
+        toBe(Float.floatToRawIntBits(f), b, off);
+    }
+
+    /**
+     * double以小端写入byte数组的指定位置
+     */
+    public static void toLe(double d, byte[] b, int off) {
+        toLe(Double.doubleToRawLongBits(d), b, off);
+    }
+
+    /**
+     * double以大端写入byte数组的指定位置
+     */
+    public static void toBe(double d, byte[] b, int off) {
+        toBe(Double.doubleToRawLongBits(d), b, off);
+    }
+
     /**
      * 大端byte数组转化为short
      */
@@ -372,6 +452,104 @@ public final class EndianUtils {
         return s32 < 0 ? 4294967296L + s32 : s32;
     }
 
+    /**
+     * 大端byte数组从指定位置开始的2个字节转化为short
+     */
+    public static short be2Short(byte[] b, int off) {
+        return (short) ((b[off] & 0xff) << 8 | (b[off + 1] & 0xff));
+    }
+
+    /**
+     * 小端byte数组从指定位置开始的2个字节转化为short
+     */
+    public static short le2Short(byte[] b, int off) {
+        return (short) ((b[off + 1] & 0xff) << 8 | (b[off] & 0xff));
+    }
+
+    /**
+     * 大端byte数组从指定位置开始的2个字节转化为无符号16位(java使用int进行接收)
+     */
+    public static int be2U16(byte[] b, int off) {
+        return (b[off] & 0xff) << 8 | (b[off + 1] & 0xff);
+    }
+
+    /**
+     * 小端byte数组从指定位置开始的2个字节转化为无符号16位(java使用int进行接收)
+     */
+    public static int le2U16(byte[] b, int off) {
+        return (b[off + 1] & 0xff) << 8 | (b[off] & 0xff);
+    }
+
+    /**
+     * 大端byte数组从指定位置开始的4个字节转化为int
+     */
+    public static int be2Int(byte[] b, int off) {
+        return (b[off] & 0xff) << 24 | (b[off + 1] & 0xff) << 16 | (b[off + 2] & 0xff) << 8 | (b[off + 3] & 0xff);
+    }
+
+    /**
+     * 小端byte数组从指定位置开始的4个字节转化为int
+     */
+    public static int le2Int(byte[] b, int off) {
+        return (b[off + 3] & 0xff) << 24 | (b[off + 2] & 0xff) << 16 | (b[off + 1] & 0xff) << 8 | (b[off] & 0xff);
+    }
+
+    /**
+     * 大端byte数组从指定位置开始的4个字节转化为无符号32位(java使用long进行接收)
+     */
+    public static long be2U32(byte[] b, int off) {
+        return be2Int(b, off) & 0xffffffffL;
+    }
+
+    /**
+     * 小端byte数组从指定位置开始的4个字节转化为无符号32位(java使用long进行接收)
+     */
+    public static long le2U32(byte[] b, int off) {
+        return le2Int(b, off) & 0xffffffffL;
+    }
+
+    /**
+     * 大端byte数组从指定位置开始的8个字节转化为long
+     */
+    public static long be2Long(byte[] b, int off) {
+        return (be2Int(b, off) & 0xffffffffL) << 32 | (be2Int(b, off + 4) & 0xffffffffL);
+    }
+
+    /**
+     * 小端byte数组从指定位置开始的8个字节转化为long
+     */
+    public static long le2Long(byte[] b, int off) {
+        return (le2Int(b, off + 4) & 0xffffffffL) << 32 | (le2Int(b, off) & 0xffffffffL);
+    }
+
+    /**
+     * 大端byte数组从指定位置开始的4个字节转化为float
+     */
+    public static float be2Float(byte[] b, int off) {
+        return Float.intBitsToFloat(be2Int(b, off));
+    }
+
+    /**
+     * 小端byte数组从指定位置开始的4个字节转化为float
+     */
+    public static float le2Float(byte[] b, int off) {
+        return Float.intBitsToFloat(le2Int(b, off));
+    }
+
+    /**
+     * 大端byte数组从指定位置开始的8个字节转化为double
+     */
+    public static double be2Double(byte[] b, int off) {
+        return Double.longBitsToDouble(be2Long(b, off));
+    }
+
+    /**
+     * 小端byte数组从指定位置开始的8个字节转化为double
+     */
+    public static double le2Double(byte[] b, int off) {
+        return Double.longBitsToDouble(le2Long(b, off));
+    }
+
     /**
      * 将byte数组中的元素倒序排列
      */
@@ -0,0 +1,1582 @@
+package com.github.bytesutils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * 单个字段的读写器,由{@link CompiledSchema}在编译时根据字段的描述选出
+ * <p>
+ * 每种数据类型对应一个实现,解析和构建时直接调用,不再需要根据类型进行分支判断.
+ * 数值类型读写{@link Tree#numbers}中对应的位置,其他类型读写{@link Tree#refs}中对应的位置
+ */
+abstract class FieldCodec {
+
+    /**
+     * 字段固定的编码长度,可变长度时为-1
+     */
+    final int fixedLength;
+    /**
+     * 字段未设置时写入的默认数据的长度
+     */
+    final int emptyLength;
+
+    FieldCodec(int fixedLength, int emptyLength) {
+        this.fixedLength = fixedLength;
+        this.emptyLength = emptyLength;
+    }
+
+    /**
+     * 从reader中解析出该字段,放入tree的指定位置
+     */
+    abstract void parse(Tree tree, int index, BytesReader reader);
+
+    /**
+     * 计算tree中指定位置的数据编码后的长度
+     */
+    abstract int size(Tree tree, int index);
+
+    /**
+     * 将tree中指定位置的数据写入dst的off位置,未设置时写入默认值
+     *
+     * @return 写入后的位置
+     */
+    abstract int write(Tree tree, int index, byte[] dst, int off);
+
+    /**
+     * 将tree中指定位置的数据写入buffer的当前位置,未设置时写入默认值
+     * 写入时会修改buffer的字节序,由调用者负责恢复
+     */
+    abstract void write(Tree tree, int index, ByteBuffer buffer);
+
+    /**
+     * 不拷贝数据,只计算该字段在src中从off开始占用的长度,数据不足时返回-1
+     * 不会修改tree中的任何数据,子节点也只会计算长度而不会被解析
+     *
+     * @param end src中可用数据的结束位置
+     */
+    abstract int measure(Tree tree, int index, byte[] src, int off, int end);
+
+    /**
+     * 将tree引用的原始数据中该字段的内容解码到tree的指定位置
+     */
+    abstract void detach(Tree tree, int index);
+
+    /**
+     * 只根据src中已有的数据得出该字段的总长度,不要求数据完整,例如带有长度前缀的类型只需要长度前缀完整
+     * 已有的数据不足以得出长度时返回-1,流式解析时用来判断还需要读取多少数据
+     * 子节点和未指定长度的原始数据类型的长度无法这样得出,由调用者单独处理
+     */
+    long requiredLength(byte[] src, int off, int end) {
+        return fixedLength;
+    }
+
+    /**
+     * 清空tree中指定位置的数据,已分配的存储会保留下来供下次解析时复用
+     * 数值类型由{@link Tree#reset()}统一清空,这里什么都不需要做
+     */
+    void reset(Tree tree, int index) {
+    }
+
+    /**
+     * 根据字段的描述选出对应的读写器
+     */
+    static FieldCodec of(DataDescribe describe) {
+        switch (describe.type) {
+            case DataType.TYPE_U8:
+                return new Int8(true);
+            case DataType.TYPE_S8:
+                return new Int8(false);
+            case DataType.TYPE_U16:
+                return new Int16(true, describe.isLe);
+            case DataType.TYPE_S16:
+                return new Int16(false, describe.isLe);
+            case DataType.TYPE_U32:
+                return new Int32(true, describe.isLe);
+            case DataType.TYPE_S32:
+            case DataType.TYPE_FLOAT:
+                return new Int32(false, describe.isLe);
+            case DataType.TYPE_S64:
+            case DataType.TYPE_DOUBLE:
+                return new Int64(describe.isLe);
+            case DataType.TYPE_MUABLE0:
+                return new Muable(1, true);
+            case DataType.TYPE_MUABLE1:
+                return new Muable(2, true);
+            case DataType.TYPE_MUABLE2:
+                return new Muable(4, true);
+            case DataType.TYPE_MUABLE1_BE:
+                return new Muable(2, false);
+            case DataType.TYPE_MUABLE2_BE:
+                return new Muable(4, false);
+            case DataType.TYPE_VAR_U32:
+                return new VarInt(false, false);
+            case DataType.TYPE_VAR_S32:
+                return new VarInt(true, false);
+            case DataType.TYPE_VAR_U64:
+                return new VarInt(false, true);
+            case DataType.TYPE_VAR_S64:
+                return new VarInt(true, true);
+            case DataType.TYPE_VAR_MUABLE:
+                return new VarMuable();
+            case DataType.TYPE_ARRAY:
+                return array(describe, Math.max(describe.count, 0), 0, true);
+            case DataType.TYPE_ARRAY0:
+                return array(describe, -1, 1, true);
+            case DataType.TYPE_ARRAY1:
+                return array(describe, -1, 2, true);
+            case DataType.TYPE_ARRAY2:
+                return array(describe, -1, 4, true);
+            case DataType.TYPE_ARRAY1_BE:
+                return array(describe, -1, 2, false);
+            case DataType.TYPE_ARRAY2_BE:
+                return array(describe, -1, 4, false);
+            case DataType.TYPE_TREE:
+                return new Child();
+            case DataType.TYPE_RAW:
+                return new Raw(describe.length);
+            default:
+                return new Unsupported(describe.type);
+        }
+    }
+
+    /**
+     * 根据数组中元素的类型选出对应的读写器
+     */
+    private static FieldCodec array(DataDescribe describe, int count, int prefixLength, boolean prefixLe) {
+        if (describe.elementType == DataType.TYPE_TREE) {
+            if (describe.elementDes == null) return new Unsupported(describe.type);
+            return new TreeArray(new CompiledSchema(describe.elementDes), count, prefixLength, prefixLe);
+        }
+        PrimitiveArray codec = PrimitiveArray.of(describe.elementType, describe.isLe, count, prefixLength, prefixLe);
+        return codec != null ? codec : new Unsupported(describe.type);
+    }
+
+    /**
+     * 8位数值类型
+     */
+    static final class Int8 extends FieldCodec {
+        final boolean unsigned;
+
+        Int8(boolean unsigned) {
+            super(1, 1);
+            this.unsigned = unsigned;
+        }
+
+        @Override
+        void parse(Tree tree, int index, BytesReader reader) {
+            tree.numbers[index] = unsigned ? reader.getU8() : reader.getS8();
+        }
+
+        @Override
+        int size(Tree tree, int index) {
+            return 1;
+        }
+
+        @Override
+        int write(Tree tree, int index, byte[] dst, int off) {
+            dst[off] = (byte) tree.numbers[index];
+            return off + 1;
+        }
+
+        @Override
+        void write(Tree tree, int index, ByteBuffer buffer) {
+            buffer.put((byte) tree.numbers[index]);
+        }
+
+        @Override
+        int measure(Tree tree, int index, byte[] src, int off, int end) {
+            return end - off >= 1 ? 1 : -1;
+        }
+
+        @Override
+        void detach(Tree tree, int index) {
+            int offset = tree.offsetOf(index);
+            if (offset < 0) {
+                tree.numbers[index] = 0;
+            } else {
+                tree.numbers[index] = unsigned ? tree.source[offset] & 0xff : tree.source[offset];
+            }
+        }
+    }
+
+    /**
+     * 16位数值类型
+     */
+    static final class Int16 extends FieldCodec {
+        final boolean unsigned;
+        final boolean isLe;
+
+        Int16(boolean unsigned, boolean isLe) {
+            super(2, 2);
+            this.unsigned = unsigned;
+            this.isLe = isLe;
+        }
+
+        @Override
+        void parse(Tree tree, int index, BytesReader reader) {
+            tree.numbers[index] = unsigned ? reader.getU16(isLe) : reader.getS16(isLe);
+        }
+
+        @Override
+        int size(Tree tree, int index) {
+            return 2;
+        }
+
+        @Override
+        int write(Tree tree, int index, byte[] dst, int off) {
+            if (isLe) {
+                EndianUtils.toLe((short) tree.numbers[index], dst, off);
+            } else {
+                EndianUtils.toBe((short) tree.numbers[index], dst, off);
+            }
+            return off + 2;
+        }
+
+        @Override
+        void write(Tree tree, int index, ByteBuffer buffer) {
+            buffer.order(isLe ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN).putShort((short) tree.numbers[index]);
+        }
+
+        @Override
+        int measure(Tree tree, int index, byte[] src, int off, int end) {
+            return end - off >= 2 ? 2 : -1;
+        }
+
+        @Override
+        void detach(Tree tree, int index) {
+            int offset = tree.offsetOf(index);
+            if (offset < 0) {
+                tree.numbers[index] = 0;
+            } else if (unsigned) {
+                tree.numbers[index] = isLe ? EndianUtils.le2U16(tree.source, offset) : EndianUtils.be2U16(tree.source, offset);
+            } else {
+                tree.numbers[index] = isLe ? EndianUtils.le2Short(tree.source, offset) : EndianUtils.be2Short(tree.source, offset);
+            }
+        }
+    }
+
+    /**
+     * 32位数值类型,float存放的是其原始的位
+     */
+    static final class Int32 extends FieldCodec {
+        final boolean unsigned;
+        final boolean isLe;
+
+        Int32(boolean unsigned, boolean isLe) {
+            super(4, 4);
+            this.unsigned = unsigned;
+            this.isLe = isLe;
+        }
+
+        @Override
+        void parse(Tree tree, int index, BytesReader reader) {
+            tree.numbers[index] = unsigned ? reader.getU32(isLe) : reader.getS32(isLe);
+        }
+
+        @Override
+        int size(Tree tree, int index) {
+            return 4;
+        }
+
+        @Override
+        int write(Tree tree, int index, byte[] dst, int off) {
+            if (isLe) {
+                EndianUtils.toLe((int) tree.numbers[index], dst, off);
+            } else {
+                EndianUtils.toBe((int) tree.numbers[index], dst, off);
+            }
+            return off + 4;
+        }
+
+        @Override
+        void write(Tree tree, int index, ByteBuffer buffer) {
+            buffer.order(isLe ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN).putInt((int) tree.numbers[index]);
+        }
+
+        @Override
+        int measure(Tree tree, int index, byte[] src, int off, int end) {
+            return end - off >= 4 ? 4 : -1;
+        }
+
+        @Override
+        void detach(Tree tree, int index) {
+            int offset = tree.offsetOf(index);
+            if (offset < 0) {
+                tree.numbers[index] = 0;
+            } else if (unsigned) {
+                tree.numbers[index] = isLe ? EndianUtils.le2U32(tree.source, offset) : EndianUtils.be2U32(tree.source, offset);
+            } else {
+                tree.numbers[index] = isLe ? EndianUtils.le2Int(tree.source, offset) : EndianUtils.be2Int(tree.source, offset);
+            }
+        }
+    }
+
+    /**
+     * 64位数值类型,double存放的是其原始的位
+     */
+    static final class Int64 extends FieldCodec {
+        final boolean isLe;
+
+        Int64(boolean isLe) {
+            super(8, 8);
+            this.isLe = isLe;
+        }
+
+        @Override
+        void parse(Tree tree, int index, BytesReader reader) {
+            tree.numbers[index] = reader.getS64(isLe);
+        }
+
+        @Override
+        int size(Tree tree, int index) {
+            return 8;
+        }
+
+        @Override
+        int write(Tree tree, int index, byte[] dst, int off) {
+            if (isLe) {
+                EndianUtils.toLe(tree.numbers[index], dst, off);
+            } else {
+                EndianUtils.toBe(tree.numbers[index], dst, off);
+            }
+            return off + 8;
+        }
+
+        @Override
+        void write(Tree tree, int index, ByteBuffer buffer) {
+            buffer.order(isLe ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN).putLong(tree.numbers[index]);
+        }
+
+        @Override
+        int measure(Tree tree, int index, byte[] src, int off, int end) {
+            return end - off >= 8 ? 8 : -1;
+        }
+
+        @Override
+        void detach(Tree tree, int index) {
+            int offset = tree.offsetOf(index);
+            if (offset < 0) {
+                tree.numbers[index] = 0;
+            } else {
+                tree.numbers[index] = isLe ? EndianUtils.le2Long(tree.source, offset) : EndianUtils.be2Long(tree.source, offset);
+            }
+        }
+    }
+
+    /**
+     * 变长整数类型,有符号数使用ZigZag编码,存放的是解码后的值
+     */
+    static final class VarInt extends FieldCodec {
+        final boolean zigzag;
+        final boolean wide;
+        /**
+         * 最多占用的字节数
+         */
+        final int maxLength;
+
+        VarInt(boolean zigzag, boolean wide) {
+            super(-1, 1);
+            this.zigzag = zigzag;
+            this.wide = wide;
+            maxLength = wide ? Varint.MAX_LENGTH64 : Varint.MAX_LENGTH32;
+        }
+
+        @Override
+        void parse(Tree tree, int index, BytesReader reader) {
+            if (wide) {
+                tree.numbers[index] = zigzag ? reader.getVarS64() : reader.getVarU64();
+            } else {
+                tree.numbers[index] = zigzag ? reader.getVarS32() : reader.getVarU32();
+            }
+        }
+
+        @Override
+        int size(Tree tree, int index) {
+            return Varint.sizeOf(encoded(tree.numbers[index]));
+        }
+
+        @Override
+        int write(Tree tree, int index, byte[] dst, int off) {
+            return Varint.write(encoded(tree.numbers[index]), dst, off);
+        }
+
+        @Override
+        void write(Tree tree, int index, ByteBuffer buffer) {
+            Varint.write(encoded(tree.numbers[index]), buffer);
+        }
+
+        @Override
+        int measure(Tree tree, int index, byte[] src, int off, int end) {
+            int length = Varint.lengthAt(src, off, end, maxLength);
+            return length < 0 ? -1 : length;
+        }
+
+        @Override
+        long requiredLength(byte[] src, int off, int end) {
+            int length = Varint.lengthAt(src, off, end, maxLength);
+            // 超过最多的字节数还没有结束的数据无法解析,直接跳过这些字节
+            return length == -2 ? maxLength : length;
+        }
+
+        @Override
+        void detach(Tree tree, int index) {
+            int offset = tree.offsetOf(index);
+            tree.numbers[index] = offset < 0 ? 0 : decode(Varint.readAt(tree.source, offset));
+        }
+
+        /**
+         * 将存放的值转为编码前的无符号数
+         */
+        long encoded(long value) {
+            long rst = zigzag ? Varint.zigzag(value) : value;
+            return wide ? rst : rst & 0xffffffffL;
+        }
+
+        /**
+         * 将读取到的无符号数转为存放的值
+         */
+        long decode(long value) {
+            if (!wide) value &= 0xffffffffL;
+            if (!zigzag) return value;
+            return wide ? Varint.unzigzag(value) : (int) Varint.unzigzag(value);
+        }
+    }
+
+    /**
+     * 带有长度前缀的可变数据类型,存放的是不包含长度前缀的内容
+     */
+    abstract static class Prefixed extends FieldCodec {
+
+        Prefixed(int emptyLength) {
+            super(-1, emptyLength);
+        }
+
+        /**
+         * 获取src中从off开始的该字段的长度前缀占用的字节数,调用前需要确认该字段的数据完整
+         */
+        abstract int prefixLengthAt(byte[] src, int off);
+
+        @Override
+        void reset(Tree tree, int index) {
+            tree.recycle(index);
+        }
+
+        @Override
+        void detach(Tree tree, int index) {
+            int offset = tree.offsetOf(index);
+            if (offset < 0) {
+                tree.refs[index] = null;
+            } else {
+                int prefixLength = prefixLengthAt(tree.source, offset);
+                byte[] data = Arrays.copyOfRange(tree.source, offset + prefixLength, offset + tree.lengthOf(index));
+                tree.storeBytes(index, data, data.length);
+            }
+        }
+    }
+
+    /**
+     * 长度前缀为固定字节数的可变数据类型
+     */
+    static final class Muable extends Prefixed {
+        /**
+         * 长度前缀占用的字节数
+         */
+        final int prefixLength;
+        final boolean isLe;
+
+        Muable(int prefixLength, boolean isLe) {
+            super(prefixLength);
+            this.prefixLength = prefixLength;
+            this.isLe = isLe;
+        }
+
+        @Override
+        int prefixLengthAt(byte[] src, int off) {
+            return prefixLength;
+        }
+
+        @Override
+        void parse(Tree tree, int index, BytesReader reader) {
+            long length;
+            if (prefixLength == 1) {
+                length = reader.spyU8();
+            } else if (prefixLength == 2) {
+                length = reader.spyU16(isLe);
+            } else {
+                length = reader.spyU32(isLe);
+            }
+            if (reader.residue() < prefixLength + length) {
+                tree.refs[index] = null;
+                return;
+            }
+            if (prefixLength == 1) {
+                reader.getU8();
+            } else if (prefixLength == 2) {
+                reader.getU16(isLe);
+            } else {
+                reader.getU32(isLe);
+            }
+            byte[] data = tree.obtainBytes(index, (int) length);
+            reader.getBytes(data, 0, (int) length);
+            tree.storeBytes(index, data, (int) length);
+        }
+
+        @Override
+        int size(Tree tree, int index) {
+            return prefixLength + tree.bytesLength(index);
+        }
+
+        @Override
+        int write(Tree tree, int index, byte[] dst, int off) {
+            byte[] data = (byte[]) tree.refs[index];
+            int length = tree.bytesLength(index);
+            if (prefixLength == 1) {
+                dst[off] = (byte) length;
+            } else if (prefixLength == 2) {
+                if (isLe) {
+                    EndianUtils.toLe((short) length, dst, off);
+                } else {
+                    EndianUtils.toBe((short) length, dst, off);
+                }
+            } else {
+                if (isLe) {
+                    EndianUtils.toLe(length, dst, off);
+                } else {
+                    EndianUtils.toBe(length, dst, off);
+                }
+            }
+            off += prefixLength;
+            if (data != null) {
+                System.arraycopy(data, 0, dst, off, length);
+                off += length;
+            }
+            return off;
+        }
+
+        @Override
+        void write(Tree tree, int index, ByteBuffer buffer) {
+            byte[] data = (byte[]) tree.refs[index];
+            int length = tree.bytesLength(index);
+            buffer.order(isLe ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+            if (prefixLength == 1) {
+                buffer.put((byte) length);
+            } else if (prefixLength == 2) {
+                buffer.putShort((short) length);
+            } else {
+                buffer.putInt(length);
+            }
+            if (data != null) buffer.put(data, 0, length);
+        }
+
+        @Override
+        int measure(Tree tree, int index, byte[] src, int off, int end) {
+            if (end - off < prefixLength) return -1;
+            long length;
+            if (prefixLength == 1) {
+                length = src[off] & 0xff;
+            } else if (prefixLength == 2) {
+                length = isLe ? EndianUtils.le2U16(src, off) : EndianUtils.be2U16(src, off);
+            } else {
+                length = isLe ? EndianUtils.le2U32(src, off) : EndianUtils.be2U32(src, off);
+            }
+            return prefixLength + length <= end - off ? (int) (prefixLength + length) : -1;
+        }
+
+        @Override
+        long requiredLength(byte[] src, int off, int end) {
+            if (end - off < prefixLength) return -1;
+            if (prefixLength == 1) return 1 + (src[off] & 0xff);
+            if (prefixLength == 2) return 2 + (isLe ? EndianUtils.le2U16(src, off) : EndianUtils.be2U16(src, off));
+            return 4 + (isLe ? EndianUtils.le2U32(src, off) : EndianUtils.be2U32(src, off));
+        }
+    }
+
+    /**
+     * 长度前缀为无符号32位变长整数的可变数据类型
+     */
+    static final class VarMuable extends Prefixed {
+
+        VarMuable() {
+            super(1);
+        }
+
+        @Override
+        int prefixLengthAt(byte[] src, int off) {
+            return Varint.lengthAt(src, off, src.length, Varint.MAX_LENGTH32);
+        }
+
+        @Override
+        void parse(Tree tree, int index, BytesReader reader) {
+            int start = reader.getPos();
+            long length = reader.getVarU32();
+            if (reader.getPos() == start || reader.residue() < length) {
+                reader.setPos(start);
+                tree.refs[index] = null;
+                return;
+            }
+            byte[] data = tree.obtainBytes(index, (int) length);
+            reader.getBytes(data, 0, (int) length);
+            tree.storeBytes(index, data, (int) length);
+        }
+
+        @Override
+        int size(Tree tree, int index) {
+            int length = tree.bytesLength(index);
+            return Varint.sizeOf(length) + length;
+        }
+
+        @Override
+        int write(Tree tree, int index, byte[] dst, int off) {
+            byte[] data = (byte[]) tree.refs[index];
+            if (data == null) {
+                dst[off] = 0;
+                return off + 1;
+            }
+            int length = tree.bytesLength(index);
+            off = Varint.write(length, dst, off);
+            System.arraycopy(data, 0, dst, off, length);
+            return off + length;
+        }
+
+        @Override
+        void write(Tree tree, int index, ByteBuffer buffer) {
+            byte[] data = (byte[]) tree.refs[index];
+            int length = tree.bytesLength(index);
+            Varint.write(length, buffer);
+            if (data != null) buffer.put(data, 0, length);
+        }
+
+        @Override
+        int measure(Tree tree, int index, byte[] src, int off, int end) {
+            int prefixLength = Varint.lengthAt(src, off, end, Varint.MAX_LENGTH32);
+            if (prefixLength < 0) return -1;
+            long length = prefixLength + (Varint.readAt(src, off) & 0xffffffffL);
+            return length <= end - off ? (int) length : -1;
+        }
+
+        @Override
+        long requiredLength(byte[] src, int off, int end) {
+            int prefixLength = Varint.lengthAt(src, off, end, Varint.MAX_LENGTH32);
+            // 超过5个字节还没有结束的长度前缀无法解析,直接跳过这些字节
+            if (prefixLength == -2) return Varint.MAX_LENGTH32;
+            if (prefixLength < 0) return -1;
+            return prefixLength + (Varint.readAt(src, off) & 0xffffffffL);
+        }
+    }
+
+    /**
+     * 子节点,子节点的结构只能从设置的子节点中得知,所以总是当作可变长度
+     */
+    static final class Child extends FieldCodec {
+
+        Child() {
+            super(-1, 0);
+        }
+
+        @Override
+        void parse(Tree tree, int index, BytesReader reader) {
+            Tree field = (Tree) tree.refs[index];
+            if (field != null) field.parserByteArray(reader);
+        }
+
+        @Override
+        int size(Tree tree, int index) {
+            Tree field = (Tree) tree.refs[index];
+            return field != null ? field.encodedSize() : 0;
+        }
+
+        @Override
+        int write(Tree tree, int index, byte[] dst, int off) {
+            Tree field = (Tree) tree.refs[index];
+            return field != null ? field.write(dst, off) : off;
+        }
+
+        @Override
+        void write(Tree tree, int index, ByteBuffer buffer) {
+            Tree field = (Tree) tree.refs[index];
+            if (field != null) field.write(buffer);
+        }
+
+        @Override
+        int measure(Tree tree, int index, byte[] src, int off, int end) {
+            Tree field = (Tree) tree.refs[index];
+            return field != null ? field.measure(src, off, end) : 0;
+        }
+
+        @Override
+        void reset(Tree tree, int index) {
+            Tree field = (Tree) tree.refs[index];
+            if (field != null) field.reset();
+        }
+
+        @Override
+        void detach(Tree tree, int index) {
+            // 延迟解析时未包含在投影中的子节点没有被解析过,此时再解析一次使其与原始数据保持一致
+            Tree field = (Tree) tree.refs[index];
+            if (field != null && !tree.isChildParsed(index)) {
+                int offset = tree.offsetOf(index);
+                if (offset >= 0) field.view(tree.source, offset, offset + tree.lengthOf(index));
+            }
+        }
+    }
+
+    /**
+     * 原始数据类型,未指定长度时会获取剩余的所有数据
+     */
+    static final class Raw extends FieldCodec {
+        final int length;
+
+        Raw(int length) {
+            super(length > 0 ? length : -1, length);
+            this.length = length;
+        }
+
+        @Override
+        void parse(Tree tree, int index, BytesReader reader) {
+            int count = length > 0 ? length : reader.residue();
+            if (count > 0 && reader.residue() >= count) {
+                byte[] data = tree.obtainBytes(index, count);
+                reader.getBytes(data, 0, count);
+                tree.storeBytes(index, data, count);
+            } else {
+                tree.refs[index] = null;
+            }
+        }
+
+        @Override
+        void reset(Tree tree, int index) {
+            tree.recycle(index);
+        }
+
+        @Override
+        int size(Tree tree, int index) {
+            return length != 0 ? length : tree.bytesLength(index);
+        }
+
+        @Override
+        int write(Tree tree, int index, byte[] dst, int off) {
+            byte[] data = (byte[]) tree.refs[index];
+            if (data == null) {
+                Arrays.fill(dst, off, off + length, (byte) 0);
+                return off + length;
+            }
+            int dataLength = tree.bytesLength(index);
+            if (length == 0) {
+                System.arraycopy(data, 0, dst, off, dataLength);
+                return off + dataLength;
+            }
+            // 指定了长度时,数据过长会被截断,不足时补0
+            int copy = Math.min(length, dataLength);
+            System.arraycopy(data, 0, dst, off, copy);
+            Arrays.fill(dst, off + copy, off + length, (byte) 0);
+            return off + length;
+        }
+
+        @Override
+        void write(Tree tree, int index, ByteBuffer buffer) {
+            byte[] data = (byte[]) tree.refs[index];
+            if (data == null) {
+                for (int i = 0; i < length; i++) buffer.put((byte) 0);
+            } else if (length == 0) {
+                buffer.put(data, 0, tree.bytesLength(index));
+            } else {
+                int copy = Math.min(length, tree.bytesLength(index));
+                buffer.put(data, 0, copy);
+                for (int i = copy; i < length; i++) buffer.put((byte) 0);
+            }
+        }
+
+        @Override
+        int measure(Tree tree, int index, byte[] src, int off, int end) {
+            if (length > 0) {
+                return end - off >= length ? length : -1;
+            }
+            return off < end ? end - off : -1;
+        }
+
+        @Override
+        void detach(Tree tree, int index) {
+            int offset = tree.offsetOf(index);
+            if (offset < 0) {
+                tree.refs[index] = null;
+            } else {
+                byte[] data = Arrays.copyOfRange(tree.source, offset, offset + tree.lengthOf(index));
+                tree.storeBytes(index, data, data.length);
+            }
+        }
+    }
+
+    /**
+     * 数组类型,元素的个数固定或者由个数前缀给出
+     */
+    abstract static class Array extends FieldCodec {
+        /**
+         * 固定的元素个数,带有个数前缀时为-1
+         */
+        final int count;
+        /**
+         * 个数前缀占用的字节数,固定个数时为0
+         */
+        final int prefixLength;
+        final boolean prefixLe;
+
+        Array(int fixedLength, int emptyLength, int count, int prefixLength, boolean prefixLe) {
+            super(fixedLength, emptyLength);
+            this.count = count;
+            this.prefixLength = prefixLength;
+            this.prefixLe = prefixLe;
+        }
+
+        /**
+         * 获取该字段存放的数组的元素个数
+         */
+        abstract int countOf(Object values);
+
+        /**
+         * 个数前缀所能表示的最大个数,固定个数时不限制,超出的元素在构建时会被截断
+         */
+        final int maxCount() {
+            if (prefixLength == 1) return 0xff;
+            if (prefixLength == 2) return 0xffff;
+            return Integer.MAX_VALUE;
+        }
+
+        /**
+         * 不移动索引,获取reader当前位置的数组的元素个数
+         */
+        final long spyCount(BytesReader reader) {
+            if (count >= 0) return count;
+            if (prefixLength == 1) return reader.spyU8();
+            if (prefixLength == 2) return reader.spyU16(prefixLe);
+            return reader.spyU32(prefixLe);
+        }
+
+        /**
+         * 获取src中off位置的数组的元素个数,调用前需要确认个数前缀完整
+         */
+        final long countAt(byte[] src, int off) {
+            if (count >= 0) return count;
+            if (prefixLength == 1) return src[off] & 0xff;
+            if (prefixLength == 2) return prefixLe ? EndianUtils.le2U16(src, off) : EndianUtils.be2U16(src, off);
+            return prefixLe ? EndianUtils.le2U32(src, off) : EndianUtils.be2U32(src, off);
+        }
+
+        /**
+         * 写入个数前缀,固定个数时什么都不写
+         *
+         * @return 写入后的位置
+         */
+        final int writeCount(int n, byte[] dst, int off) {
+            if (prefixLength == 1) {
+                dst[off] = (byte) n;
+            } else if (prefixLength == 2) {
+                if (prefixLe) {
+                    EndianUtils.toLe((short) n, dst, off);
+                } else {
+                    EndianUtils.toBe((short) n, dst, off);
+                }
+            } else if (prefixLength == 4) {
+                if (prefixLe) {
+                    EndianUtils.toLe(n, dst, off);
+                } else {
+                    EndianUtils.toBe(n, dst, off);
+                }
+            }
+            return off + prefixLength;
+        }
+
+        /**
+         * 写入个数前缀,固定个数时什么都不写
+         */
+        final void writeCount(int n, ByteBuffer buffer) {
+            buffer.order(prefixLe ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+            if (prefixLength == 1) {
+                buffer.put((byte) n);
+            } else if (prefixLength == 2) {
+                buffer.putShort((short) n);
+            } else if (prefixLength == 4) {
+                buffer.putInt(n);
+            }
+        }
+
+        /**
+         * 从tree引用的原始数据的offset位置解码出整个数组,每次调用都会创建新的数组
+         */
+        abstract Object valueAt(Tree tree, int index, int offset);
+
+        @Override
+        void detach(Tree tree, int index) {
+            int offset = tree.offsetOf(index);
+            tree.refs[index] = offset < 0 ? null : valueAt(tree, index, offset);
+        }
+    }
+
+    /**
+     * 元素为数值类型的数组,解析时在一个循环中直接从源数组批量解码到对应的基本类型数组中
+     * <p>
+     * 元素类型与数组类型的对应关系:
+     * U8:short[] S8:byte[] U16:int[] S16:short[] U32:long[] S32:int[] S64:long[] FLOAT:float[] DOUBLE:double[]
+     */
+    abstract static class PrimitiveArray extends Array {
+        final int elementSize;
+        final boolean isLe;
+
+        PrimitiveArray(int elementSize, boolean isLe, int count, int prefixLength, boolean prefixLe) {
+            super(count >= 0 ? count * elementSize : -1, count >= 0 ? count * elementSize : prefixLength,
+                    count, prefixLength, prefixLe);
+            this.elementSize = elementSize;
+            this.isLe = isLe;
+        }
+
+        /**
+         * 创建元素为指定类型的数组的读写器,不支持的类型返回null
+         */
+        static PrimitiveArray of(int elementType, boolean isLe, int count, int prefixLength, boolean prefixLe) {
+            switch (elementType) {
+                case DataType.TYPE_U8:
+                    return new U8Array(count, prefixLength, prefixLe);
+                case DataType.TYPE_S8:
+                    return new S8Array(count, prefixLength, prefixLe);
+                case DataType.TYPE_U16:
+                    return new U16Array(isLe, count, prefixLength, prefixLe);
+                case DataType.TYPE_S16:
+                    return new S16Array(isLe, count, prefixLength, prefixLe);
+                case DataType.TYPE_U32:
+                    return new U32Array(isLe, count, prefixLength, prefixLe);
+                case DataType.TYPE_S32:
+                    return new S32Array(isLe, count, prefixLength, prefixLe);
+                case DataType.TYPE_S64:
+                    return new S64Array(isLe, count, prefixLength, prefixLe);
+                case DataType.TYPE_FLOAT:
+                    return new FloatArray(isLe, count, prefixLength, prefixLe);
+                case DataType.TYPE_DOUBLE:
+                    return new DoubleArray(isLe, count, prefixLength, prefixLe);
+                default:
+                    return null;
+            }
+        }
+
+        @Override
+        void parse(Tree tree, int index, BytesReader reader) {
+            long n = spyCount(reader);
+            if (reader.residue() < prefixLength + n * elementSize) {
+                tree.refs[index] = null;
+                return;
+            }
+            reader.skip(prefixLength);
+            tree.refs[index] = decode(reader, (int) n, tree.obtainSpare(index));
+        }
+
+        @Override
+        void reset(Tree tree, int index) {
+            tree.recycle(index);
+        }
+
+        @Override
+        int size(Tree tree, int index) {
+            if (count >= 0) return fixedLength;
+            Object values = tree.refs[index];
+            return values == null ? prefixLength : prefixLength + countOf(values) * elementSize;
+        }
+
+        @Override
+        int write(Tree tree, int index, byte[] dst, int off) {
+            Object values = tree.refs[index];
+            int length = values == null ? 0 : countOf(values);
+            int n = count >= 0 ? count : length;
+            off = writeCount(n, dst, off);
+            // 固定个数时,元素过多会被截断,不足时补0
+            int copy = Math.min(n, length);
+            if (copy > 0) encode(values, copy, dst, off);
+            Arrays.fill(dst, off + copy * elementSize, off + n * elementSize, (byte) 0);
+            return off + n * elementSize;
+        }
+
+        @Override
+        void write(Tree tree, int index, ByteBuffer buffer) {
+            Object values = tree.refs[index];
+            int length = values == null ? 0 : countOf(values);
+            int n = count >= 0 ? count : length;
+            writeCount(n, buffer);
+            int copy = Math.min(n, length);
+            buffer.order(isLe ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+            if (copy > 0) encode(values, copy, buffer);
+            for (int i = copy * elementSize; i < n * elementSize; i++) buffer.put((byte) 0);
+        }
+
+        @Override
+        int measure(Tree tree, int index, byte[] src, int off, int end) {
+            if (end - off < prefixLength) return -1;
+            long length = prefixLength + countAt(src, off) * elementSize;
+            return length <= end - off ? (int) length : -1;
+        }
+
+        @Override
+        long requiredLength(byte[] src, int off, int end) {
+            return end - off < prefixLength ? -1 : prefixLength + countAt(src, off) * elementSize;
+        }
+
+        @Override
+        Object valueAt(Tree tree, int index, int offset) {
+            int n = (int) countAt(tree.source, offset);
+            return decode(new BytesReader(tree.source, offset + prefixLength, n * elementSize), n, null);
+        }
+
+        /**
+         * 从reader的当前位置解码n个元素到数组中,reuse的类型和长度都相同时直接复用,调用前需要确认剩余的长度足够
+         */
+        abstract Object decode(BytesReader reader, int n, Object reuse);
+
+        /**
+         * 将values中的前n个元素编码到dst的off位置
+         */
+        abstract void encode(Object values, int n, byte[] dst, int off);
+
+        /**
+         * 将values中的前n个元素写入buffer,buffer的字节序已经设置为元素的字节序
+         */
+        abstract void encode(Object values, int n, ByteBuffer buffer);
+    }
+
+    /**
+     * 元素为无符号8位的数组,存放为short[]
+     */
+    static final class U8Array extends PrimitiveArray {
+
+        U8Array(int count, int prefixLength, boolean prefixLe) {
+            super(1, true, count, prefixLength, prefixLe);
+        }
+
+        @Override
+        int countOf(Object values) {
+            return ((short[]) values).length;
+        }
+
+        @Override
+        Object decode(BytesReader reader, int n, Object reuse) {
+            short[] dst = reuse instanceof short[] && ((short[]) reuse).length == n ? (short[]) reuse : new short[n];
+            reader.getU8Array(dst, 0, n);
+            return dst;
+        }
+
+        @Override
+        void encode(Object values, int n, byte[] dst, int off) {
+            short[] src = (short[]) values;
+            for (int i = 0; i < n; i++) dst[off + i] = (byte) src[i];
+        }
+
+        @Override
+        void encode(Object values, int n, ByteBuffer buffer) {
+            short[] src = (short[]) values;
+            for (int i = 0; i < n; i++) buffer.put((byte) src[i]);
+        }
+    }
+
+    /**
+     * 元素为有符号8位的数组,存放为byte[]
+     */
+    static final class S8Array extends PrimitiveArray {
+
+        S8Array(int count, int prefixLength, boolean prefixLe) {
+            super(1, true, count, prefixLength, prefixLe);
+        }
+
+        @Override
+        int countOf(Object values) {
+            return ((byte[]) values).length;
+        }
+
+        @Override
+        Object decode(BytesReader reader, int n, Object reuse) {
+            byte[] dst = reuse instanceof byte[] && ((byte[]) reuse).length == n ? (byte[]) reuse : new byte[n];
+            reader.getS8Array(dst, 0, n);
+            return dst;
+        }
+
+        @Override
+        void encode(Object values, int n, byte[] dst, int off) {
+            System.arraycopy(values, 0, dst, off, n);
+        }
+
+        @Override
+        void encode(Object values, int n, ByteBuffer buffer) {
+            buffer.put((byte[]) values, 0, n);
+        }
+    }
+
+    /**
+     * 元素为无符号16位的数组,存放为int[]
+     */
+    static final class U16Array extends PrimitiveArray {
+
+        U16Array(boolean isLe, int count, int prefixLength, boolean prefixLe) {
+            super(2, isLe, count, prefixLength, prefixLe);
+        }
+
+        @Override
+        int countOf(Object values) {
+            return ((int[]) values).length;
+        }
+
+        @Override
+        Object decode(BytesReader reader, int n, Object reuse) {
+            int[] dst = reuse instanceof int[] && ((int[]) reuse).length == n ? (int[]) reuse : new int[n];
+            reader.getU16Array(dst, 0, n, isLe);
+            return dst;
+        }
+
+        @Override
+        void encode(Object values, int n, byte[] dst, int off) {
+            int[] src = (int[]) values;
+            if (isLe) {
+                for (int i = 0; i < n; i++, off += 2) EndianUtils.toLe((short) src[i], dst, off);
+            } else {
+                for (int i = 0; i < n; i++, off += 2) EndianUtils.toBe((short) src[i], dst, off);
+            }
+        }
+
+        @Override
+        void encode(Object values, int n, ByteBuffer buffer) {
+            int[] src = (int[]) values;
+            for (int i = 0; i < n; i++) buffer.putShort((short) src[i]);
+        }
+    }
+
+    /**
+     * 元素为有符号16位的数组,存放为short[]
+     */
+    static final class S16Array extends PrimitiveArray {
+
+        S16Array(boolean isLe, int count, int prefixLength, boolean prefixLe) {
+            super(2, isLe, count, prefixLength, prefixLe);
+        }
+
+        @Override
+        int countOf(Object values) {
+            return ((short[]) values).length;
+        }
+
+        @Override
+        Object decode(BytesReader reader, int n, Object reuse) {
+            short[] dst = reuse instanceof short[] && ((short[]) reuse).length == n ? (short[]) reuse : new short[n];
+            reader.getS16Array(dst, 0, n, isLe);
+            return dst;
+        }
+
+        @Override
+        void encode(Object values, int n, byte[] dst, int off) {
+            short[] src = (short[]) values;
+            if (isLe) {
+                for (int i = 0; i < n; i++, off += 2) EndianUtils.toLe(src[i], dst, off);
+            } else {
+                for (int i = 0; i < n; i++, off += 2) EndianUtils.toBe(src[i], dst, off);
+            }
+        }
+
+        @Override
+        void encode(Object values, int n, ByteBuffer buffer) {
+            short[] src = (short[]) values;
+            for (int i = 0; i < n; i++) buffer.putShort(src[i]);
+        }
+    }
+
+    /**
+     * 元素为无符号32位的数组,存放为long[]
+     */
+    static final class U32Array extends PrimitiveArray {
+
+        U32Array(boolean isLe, int count, int prefixLength, boolean prefixLe) {
+            super(4, isLe, count, prefixLength, prefixLe);
+        }
+
+        @Override
+        int countOf(Object values) {
+            return ((long[]) values).length;
+        }
+
+        @Override
+        Object decode(BytesReader reader, int n, Object reuse) {
+            long[] dst = reuse instanceof long[] && ((long[]) reuse).length == n ? (long[]) reuse : new long[n];
+            reader.getU32Array(dst, 0, n, isLe);
+            return dst;
+        }
+
+        @Override
+        void encode(Object values, int n, byte[] dst, int off) {
+            long[] src = (long[]) values;
+            if (isLe) {
+                for (int i = 0; i < n; i++, off += 4) EndianUtils.toLe((int) src[i], dst, off);
+            } else {
+                for (int i = 0; i < n; i++, off += 4) EndianUtils.toBe((int) src[i], dst, off);
+            }
+        }
+
+        @Override
+        void encode(Object values, int n, ByteBuffer buffer) {
+            long[] src = (long[]) values;
+            for (int i = 0; i < n; i++) buffer.putInt((int) src[i]);
+        }
+    }
+
+    /**
+     * 元素为有符号32位的数组,存放为int[]
+     */
+    static final class S32Array extends PrimitiveArray {
+
+        S32Array(boolean isLe, int count, int prefixLength, boolean prefixLe) {
+            super(4, isLe, count, prefixLength, prefixLe);
+        }
+
+        @Override
+        int countOf(Object values) {
+            return ((int[]) values).length;
+        }
+
+        @Override
+        Object decode(BytesReader reader, int n, Object reuse) {
+            int[] dst = reuse instanceof int[] && ((int[]) reuse).length == n ? (int[]) reuse : new int[n];
+            reader.getS32Array(dst, 0, n, isLe);
+            return dst;
+        }
+
+        @Override
+        void encode(Object values, int n, byte[] dst, int off) {
+            int[] src = (int[]) values;
+            if (isLe) {
+                for (int i = 0; i < n; i++, off += 4) EndianUtils.toLe(src[i], dst, off);
+            } else {
+                for (int i = 0; i < n; i++, off += 4) EndianUtils.toBe(src[i], dst, off);
+            }
+        }
+
+        @Override
+        void encode(Object values, int n, ByteBuffer buffer) {
+            int[] src = (int[]) values;
+            for (int i = 0; i < n; i++) buffer.putInt(src[i]);
+        }
+    }
+
+    /**
+     * 元素为有符号64位的数组,存放为long[]
+     */
+    static final class S64Array extends PrimitiveArray {
+
+        S64Array(boolean isLe, int count, int prefixLength, boolean prefixLe) {
+            super(8, isLe, count, prefixLength, prefixLe);
+        }
+
+        @Override
+        int countOf(Object values) {
+            return ((long[]) values).length;
+        }
+
+        @Override
+        Object decode(BytesReader reader, int n, Object reuse) {
+            long[] dst = reuse instanceof long[] && ((long[]) reuse).length == n ? (long[]) reuse : new long[n];
+            reader.getS64Array(dst, 0, n, isLe);
+            return dst;
+        }
+
+        @Override
+        void encode(Object values, int n, byte[] dst, int off) {
+            long[] src = (long[]) values;
+            if (isLe) {
+                for (int i = 0; i < n; i++, off += 8) EndianUtils.toLe(src[i], dst, off);
+            } else {
+                for (int i = 0; i < n; i++, off += 8) EndianUtils.toBe(src[i], dst, off);
+            }
+        }
+
+        @Override
+        void encode(Object values, int n, ByteBuffer buffer) {
+            long[] src = (long[]) values;
+            for (int i = 0; i < n; i++) buffer.putLong(src[i]);
+        }
+    }
+
+    /**
+     * 元素为float的数组
+     */
+    static final class FloatArray extends PrimitiveArray {
+
+        FloatArray(boolean isLe, int count, int prefixLength, boolean prefixLe) {
+            super(4, isLe, count, prefixLength, prefixLe);
+        }
+
+        @Override
+        int countOf(Object values) {
+            return ((float[]) values).length;
+        }
+
+        @Override
+        Object decode(BytesReader reader, int n, Object reuse) {
+            float[] dst = reuse instanceof float[] && ((float[]) reuse).length == n ? (float[]) reuse : new float[n];
+            reader.getFloatArray(dst, 0, n, isLe);
+            return dst;
+        }
+
+        @Override
+        void encode(Object values, int n, byte[] dst, int off) {
+            float[] src = (float[]) values;
+            if (isLe) {
+                for (int i = 0; i < n; i++, off += 4) EndianUtils.toLe(src[i], dst, off);
+            } else {
+                for (int i = 0; i < n; i++, off += 4) EndianUtils.toBe(src[i], dst, off);
+            }
+        }
+
+        @Override
+        void encode(Object values, int n, ByteBuffer buffer) {
+            float[] src = (float[]) values;
+            for (int i = 0; i < n; i++) buffer.putFloat(src[i]);
+        }
+    }
+
+    /**
+     * 元素为double的数组
+     */
+    static final class DoubleArray extends PrimitiveArray {
+
+        DoubleArray(boolean isLe, int count, int prefixLength, boolean prefixLe) {
+            super(8, isLe, count, prefixLength, prefixLe);
+        }
+
+        @Override
+        int countOf(Object values) {
+            return ((double[]) values).length;
+        }
+
+        @Override
+        Object decode(BytesReader reader, int n, Object reuse) {
+            double[] dst = reuse instanceof double[] && ((double[]) reuse).length == n ? (double[]) reuse : new double[n];
+            reader.getDoubleArray(dst, 0, n, isLe);
+            return dst;
+        }
+
+        @Override
+        void encode(Object values, int n, byte[] dst, int off) {
+            double[] src = (double[]) values;
+            if (isLe) {
+                for (int i = 0; i < n; i++, off += 8) EndianUtils.toLe(src[i], dst, off);
+            } else {
+                for (int i = 0; i < n; i++, off += 8) EndianUtils.toBe(src[i], dst, off);
+            }
+        }
+
+        @Override
+        void encode(Object values, int n, ByteBuffer buffer) {
+            double[] src = (double[]) values;
+            for (int i = 0; i < n; i++) buffer.putDouble(src[i]);
+        }
+    }
+
+    /**
+     * 元素为子节点的数组,所有元素共享同一个编译好的布局
+     * <p>
+     * 元素的布局中如果还有{@link DataType#TYPE_TREE}类型的字段,由于没有设置子节点,解析时会被跳过
+     */
+    static final class TreeArray extends Array {
+        final CompiledSchema elementSchema;
+        /**
+         * 只用来计算元素的长度,不会保存任何数据
+         */
+        final Tree prototype;
+        /**
+         * 未设置数据的元素编码后的长度
+         */
+        final int emptySize;
+        /**
+         * 元素至少占用的长度,用来在解析前排除明显错误的元素个数,长度可以为0的元素也按1计算
+         */
+        final int minSize;
+
+        TreeArray(CompiledSchema elementSchema, int count, int prefixLength, boolean prefixLe) {
+            this(elementSchema, new Tree(elementSchema), count, prefixLength, prefixLe);
+        }
+
+        private TreeArray(CompiledSchema elementSchema, Tree prototype, int count, int prefixLength, boolean prefixLe) {
+            super(count >= 0 && elementSchema.isFixedSize() ? count * elementSchema.fixedLength : -1,
+                    count >= 0 ? count * prototype.encodedSize() : prefixLength, count, prefixLength, prefixLe);
+            this.elementSchema = elementSchema;
+            this.prototype = prototype;
+            emptySize = prototype.encodedSize();
+            minSize = Math.max(emptySize, 1);
+        }
+
+        @Override
+        void parse(Tree tree, int index, BytesReader reader) {
+            // 先按照与视图解析相同的规则检查所有元素都完整,有元素不完整时整个字段为null,索引不移动
+            if (!fits(reader)) {
+                tree.refs[index] = null;
+                return;
+            }
+            long n = spyCount(reader);
+            reader.skip(prefixLength);
+            Tree[] elements = obtainElements(tree, index, (int) n);
+            for (Tree element : elements) {
+                element.parserByteArray(reader);
+            }
+            tree.refs[index] = elements;
+        }
+
+        @Override
+        int countOf(Object values) {
+            return ((Tree[]) values).length;
+        }
+
+        /**
+         * reader中剩余的数据是否包含完整的本字段,与{@link TreeArray#measure(Tree, int, byte[], int, int)}的结果一致
+         */
+        private boolean fits(BytesReader reader) {
+            byte[] src = reader.array();
+            if (src != null) {
+                return measure(null, -1, src, reader.position(), reader.limit()) >= 0;
+            }
+            // 底层为直接内存时先拷贝出剩余的数据
+            int start = reader.getPos();
+            src = reader.getResidue();
+            reader.setPos(start);
+            if (src == null) src = new byte[0];
+            return measure(null, -1, src, 0, src.length) >= 0;
+        }
+
+        /**
+         * 获取存放n个元素的数组,reset时保留下来的元素会被复用
+         */
+        Tree[] obtainElements(Tree tree, int index, int n) {
+            Object spare = tree.obtainSpare(index);
+            Tree[] old = spare instanceof Tree[] ? (Tree[]) spare : new Tree[0];
+            if (old.length == n) return old;
+            Tree[] elements = new Tree[n];
+            int reuse = Math.min(n, old.length);
+            System.arraycopy(old, 0, elements, 0, reuse);
+            for (int i = reuse; i < n; i++) {
+                elements[i] = new Tree(elementSchema);
+            }
+            return elements;
+        }
+
+        @Override
+        void reset(Tree tree, int index) {
+            Tree[] elements = (Tree[]) tree.refs[index];
+            if (tree.recycle(index)) {
+                for (Tree element : elements) {
+                    element.reset();
+                }
+            }
+        }
+
+        @Override
+        int size(Tree tree, int index) {
+            Tree[] elements = (Tree[]) tree.refs[index];
+            int length = elements == null ? 0 : elements.length;
+            int n = count >= 0 ? count : length;
+            int size = prefixLength + (n - Math.min(n, length)) * emptySize;
+            for (int i = 0; i < n && i < length; i++) {
+                size += elements[i] == null ? emptySize : elements[i].encodedSize();
+            }
+            return size;
+        }
+
+        @Override
+        int write(Tree tree, int index, byte[] dst, int off) {
+            Tree[] elements = (Tree[]) tree.refs[index];
+            int length = elements == null ? 0 : elements.length;
+            int n = count >= 0 ? count : length;
+            off = writeCount(n, dst, off);
+            // 固定个数时,元素过多会被截断,不足或者为null的元素写入默认值
+            for (int i = 0; i < n; i++) {
+                if (i < length && elements[i] != null) {
+                    off = elements[i].write(dst, off);
+                } else {
+                    Arrays.fill(dst, off, off + emptySize, (byte) 0);
+                    off += emptySize;
+                }
+            }
+            return off;
+        }
+
+        @Override
+        void write(Tree tree, int index, ByteBuffer buffer) {
+            Tree[] elements = (Tree[]) tree.refs[index];
+            int length = elements == null ? 0 : elements.length;
+            int n = count >= 0 ? count : length;
+            writeCount(n, buffer);
+            for (int i = 0; i < n; i++) {
+                if (i < length && elements[i] != null) {
+                    elements[i].write(buffer);
+                } else {
+                    for (int j = 0; j < emptySize; j++) buffer.put((byte) 0);
+                }
+            }
+        }
+
+        @Override
+        int measure(Tree tree, int index, byte[] src, int off, int end) {
+            if (end - off < prefixLength) return -1;
+            long n = countAt(src, off);
+            if (prefixLength + n * minSize > end - off) return -1;
+            int pos = off + prefixLength;
+            for (long i = 0; i < n; i++) {
+                int length = prototype.measure(src, pos, end);
+                if (length < 0) return -1;
+                pos += length;
+            }
+            return pos - off;
+        }
+
+        @Override
+        Object valueAt(Tree tree, int index, int offset) {
+            int end = offset + tree.lengthOf(index);
+            Tree[] elements = new Tree[(int) countAt(tree.source, offset)];
+            int pos = offset + prefixLength;
+            for (int i = 0; i < elements.length; i++) {
+                elements[i] = new Tree(elementSchema);
+                pos = elements[i].view(tree.source, pos, end);
+            }
+            return elements;
+        }
+    }
+
+    /**
+     * 不支持的类型,在解析和构建时抛出异常
+     */
+    static final class Unsupported extends FieldCodec {
+        final int type;
+
+        Unsupported(int type) {
+            super(-1, 0);
+            this.type = type;
+        }
+
+        @Override
+        void parse(Tree tree, int index, BytesReader reader) {
+            throw new IllegalMonitorStateException("don't have the type " + type);
+        }
+
+        @Override
+        int size(Tree tree, int index) {
+            throw new IllegalMonitorStateException("don't have the type " + type);
+        }
+
+        @Override
+        int write(Tree tree, int index, byte[] dst, int off) {
+            throw new IllegalMonitorStateException("don't have the type " + type);
+        }
+
+        @Override
+        void write(Tree tree, int index, ByteBuffer buffer) {
+            throw new IllegalMonitorStateException("don't have the type " + type);
+        }
+
+        @Override
+        int measure(Tree tree, int index, byte[] src, int off, int end) {
+            throw new IllegalMonitorStateException("don't have the type " + type);
+        }
+
+        @Override
+        void detach(Tree tree, int index) {
+        }
+    }
+}
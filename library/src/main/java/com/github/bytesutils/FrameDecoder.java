@@ -0,0 +1,289 @@
+package com.github.bytesutils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 将任意分段收到的数据重新拼接为带有长度前缀的帧
+ * <p>
+ * 帧的格式为: [帧头][长度前缀][内容],帧头可选,长度前缀与{@link DataType#TYPE_MUABLE0}等可变数据类型的长度前缀相同,
+ * 表示的是其后内容的长度.
+ * 设置了帧头时,数据中帧头不匹配的部分会被丢弃,直到找到下一个帧头为止
+ * <p>
+ * 使用方式:
+ * decoder.feed(chunk, 0, n);
+ * while (decoder.next()) { tree.parserByteArrayView(decoder.array(), decoder.frameOffset(), decoder.frameLength()); }
+ * <p>
+ * 取出的帧不会拷贝数据,只是指向内部缓冲区或者传入的数组中的位置,下一次调用feed之前有效.
+ * 内部没有未处理的数据时,传入的数组不会被拷贝,帧直接指向传入的数组,只有不完整的帧会在{@link FrameDecoder#next()}返回false时拷贝到内部缓冲区,
+ * 所以在next()返回false之前不能修改传入的数组.
+ * 内部缓冲区空间不足时会先将未处理的数据移动到开头,仍然不足时才会扩容;非线程安全
+ */
+public class FrameDecoder {
+
+    private final int prefixLength;
+    private final boolean isLe;
+    private final byte[] magic;
+    private int maxFrameLength = 16 * 1024 * 1024;
+
+    private byte[] buffer;
+    /**
+     * 当前处理的数据,为内部缓冲区或者传入的数组
+     */
+    private byte[] data;
+    private int readPos;
+    private int writePos;
+    private boolean external;
+
+    private int frameOffset;
+    private int frameLength;
+    private long discarded;
+    private BytesReader reader;
+
+    /**
+     * @param lengthType 长度前缀的类型 {@link DataType#TYPE_MUABLE0}等
+     */
+    public FrameDecoder(int lengthType) {
+        this(lengthType, null, 4096);
+    }
+
+    /**
+     * @param lengthType 长度前缀的类型 {@link DataType#TYPE_MUABLE0}等
+     * @param magic      帧头,为null时没有帧头
+     */
+    public FrameDecoder(int lengthType, byte[] magic) {
+        this(lengthType, magic, 4096);
+    }
+
+    /**
+     * @param lengthType 长度前缀的类型 {@link DataType#TYPE_MUABLE0}等
+     * @param magic      帧头,为null时没有帧头
+     * @param capacity   内部缓冲区的初始大小
+     */
+    public FrameDecoder(int lengthType, byte[] magic, int capacity) {
+        switch (lengthType) {
+            case DataType.TYPE_MUABLE0:
+                prefixLength = 1;
+                isLe = true;
+                break;
+            case DataType.TYPE_MUABLE1:
+                prefixLength = 2;
+                isLe = true;
+                break;
+            case DataType.TYPE_MUABLE2:
+                prefixLength = 4;
+                isLe = true;
+                break;
+            case DataType.TYPE_MUABLE1_BE:
+                prefixLength = 2;
+                isLe = false;
+                break;
+            case DataType.TYPE_MUABLE2_BE:
+                prefixLength = 4;
+                isLe = false;
+                break;
+            default:
+                throw new IllegalMonitorStateException("don't have the type " + lengthType);
+        }
+        this.magic = magic == null ? new byte[0] : magic.clone();
+        buffer = new byte[Math.max(capacity, 16)];
+        data = buffer;
+    }
+
+    /**
+     * 设置帧的内容允许的最大长度,默认为16M
+     * 超出时,设置了帧头的会丢弃该帧头继续查找下一个帧头,没有设置帧头的会抛出IllegalStateException
+     */
+    public FrameDecoder setMaxFrameLength(int maxFrameLength) {
+        this.maxFrameLength = maxFrameLength;
+        return this;
+    }
+
+    /**
+     * 添加收到的数据
+     */
+    public FrameDecoder feed(byte[] src) {
+        return feed(src, 0, src.length);
+    }
+
+    /**
+     * 添加收到的数据,内部没有未处理的数据时不会拷贝,在{@link FrameDecoder#next()}返回false之前不能修改src
+     */
+    public FrameDecoder feed(byte[] src, int offset, int length) {
+        if (length <= 0) return this;
+        if (external) internalize();
+        if (readPos == writePos) {
+            data = src;
+            readPos = offset;
+            writePos = offset + length;
+            external = true;
+        } else {
+            ensureSpace(length);
+            System.arraycopy(src, offset, buffer, writePos, length);
+            writePos += length;
+        }
+        return this;
+    }
+
+    /**
+     * 添加收到的数据,会将src中剩余的数据全部拷贝到内部缓冲区中
+     */
+    public FrameDecoder feed(ByteBuffer src) {
+        int length = src.remaining();
+        if (length <= 0) return this;
+        if (external) internalize();
+        if (readPos == writePos) {
+            readPos = writePos = 0;
+        }
+        ensureSpace(length);
+        src.get(buffer, writePos, length);
+        writePos += length;
+        return this;
+    }
+
+    /**
+     * 取出下一个完整的帧,之后可以通过{@link FrameDecoder#array()}、{@link FrameDecoder#frameOffset()}和
+     * {@link FrameDecoder#frameLength()}获取帧的内容
+     *
+     * @return 是否有完整的帧
+     */
+    public boolean next() {
+        int headerLength = magic.length + prefixLength;
+        while (writePos - readPos >= headerLength) {
+            if (magic.length > 0 && !matchMagic()) continue;
+            int at = readPos + magic.length;
+            long length;
+            if (prefixLength == 1) {
+                length = data[at] & 0xff;
+            } else if (prefixLength == 2) {
+                length = isLe ? EndianUtils.le2U16(data, at) : EndianUtils.be2U16(data, at);
+            } else {
+                length = isLe ? EndianUtils.le2U32(data, at) : EndianUtils.be2U32(data, at);
+            }
+            if (length > maxFrameLength) {
+                if (magic.length == 0) {
+                    throw new IllegalStateException("frame length " + length + " exceeds " + maxFrameLength);
+                }
+                readPos++;
+                discarded++;
+                continue;
+            }
+            if (writePos - readPos - headerLength < length) break;
+            frameOffset = readPos + headerLength;
+            frameLength = (int) length;
+            readPos = frameOffset + frameLength;
+            return true;
+        }
+        if (external) internalize();
+        return false;
+    }
+
+    /**
+     * 获取当前帧所在的数组
+     */
+    public byte[] array() {
+        return data;
+    }
+
+    /**
+     * 获取当前帧的内容在{@link FrameDecoder#array()}中的位置,不包含帧头和长度前缀
+     */
+    public int frameOffset() {
+        return frameOffset;
+    }
+
+    /**
+     * 获取当前帧的内容的长度
+     */
+    public int frameLength() {
+        return frameLength;
+    }
+
+    /**
+     * 获取解析当前帧的内容的BytesReader,每次调用都返回同一个对象,不会拷贝数据
+     */
+    public BytesReader reader() {
+        if (reader == null) reader = new BytesReader((byte[]) null);
+        return reader.reset(data, frameOffset, frameOffset + frameLength);
+    }
+
+    /**
+     * 不拷贝数据,将当前帧的内容解析到tree中,见{@link Tree#parserByteArrayView(byte[], int, int)}
+     */
+    public Tree parse(Tree tree) {
+        return tree.parserByteArrayView(data, frameOffset, frameLength);
+    }
+
+    /**
+     * 获取还未组成完整帧的数据的长度
+     */
+    public int buffered() {
+        return writePos - readPos;
+    }
+
+    /**
+     * 获取因帧头不匹配或长度超出限制而丢弃的字节数
+     */
+    public long getDiscarded() {
+        return discarded;
+    }
+
+    /**
+     * 丢弃所有未处理的数据
+     */
+    public void clear() {
+        data = buffer;
+        readPos = writePos = 0;
+        external = false;
+    }
+
+    /**
+     * 检查readPos处是否为帧头,不是时跳过到下一个可能的帧头
+     *
+     * @return readPos处是否为帧头
+     */
+    private boolean matchMagic() {
+        int last = writePos - magic.length;
+        for (int i = readPos; i <= last; i++) {
+            int j = 0;
+            while (j < magic.length && data[i + j] == magic[j]) j++;
+            if (j == magic.length) {
+                discarded += i - readPos;
+                boolean match = i == readPos;
+                readPos = i;
+                return match;
+            }
+        }
+        // 末尾的数据可能是下一个帧头的开头,保留下来
+        int keep = Math.max(readPos, last + 1);
+        discarded += keep - readPos;
+        readPos = keep;
+        return false;
+    }
+
+    /**
+     * 将传入的数组中未处理的数据拷贝到内部缓冲区
+     */
+    private void internalize() {
+        int length = writePos - readPos;
+        if (length > buffer.length) buffer = new byte[Math.max(length, buffer.length * 2)];
+        System.arraycopy(data, readPos, buffer, 0, length);
+        data = buffer;
+        readPos = 0;
+        writePos = length;
+        external = false;
+    }
+
+    /**
+     * 保证内部缓冲区的末尾有length个字节的空间,不足时先移动未处理的数据,仍然不足时扩容
+     */
+    private void ensureSpace(int length) {
+        if (buffer.length - writePos >= length) return;
+        int remaining = writePos - readPos;
+        byte[] dst = buffer.length - remaining < length ? new byte[Math.max(buffer.length * 2, remaining + length)] : buffer;
+        System.arraycopy(buffer, readPos, dst, 0, remaining);
+        buffer = dst;
+        data = buffer;
+        readPos = 0;
+        writePos = remaining;
+    }
+}
@@ -0,0 +1,240 @@
+package com.github.bytesutils;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+
+/**
+ * 16进制字符串的工具类
+ * <p>
+ * 编码通过查表完成,每个字节直接写入两个字符,不会为每个字节创建String;
+ * 写入{@link Appendable}的方法按固定大小的块输出,任意大小的数据都不需要先拼接成一个完整的String
+ */
+public final class HexCodec {
+
+    private static final char[] DIGITS = "0123456789ABCDEF".toCharArray();
+    /**
+     * 每个字节对应的两个16进制字符,高4位在前
+     */
+    private static final char[] PAIRS = new char[512];
+    /**
+     * 写入Appendable时每块的字符数
+     */
+    private static final int CHUNK = 1024;
+    /**
+     * 16进制dump每行的字节数
+     */
+    private static final int DUMP_WIDTH = 16;
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            PAIRS[i << 1] = DIGITS[i >> 4];
+            PAIRS[(i << 1) + 1] = DIGITS[i & 0x0f];
+        }
+    }
+
+    /**
+     * 将byte数组编码为连续的大写16进制字符串,如 "C802FF"
+     */
+    public static String encode(byte[] src) {
+        return encode(src, 0, src.length);
+    }
+
+    /**
+     * 将src中从offset开始的length个字节编码为连续的大写16进制字符串
+     */
+    public static String encode(byte[] src, int offset, int length) {
+        char[] rst = new char[length * 2];
+        encode(src, offset, length, rst, 0);
+        return new String(rst);
+    }
+
+    /**
+     * 将src中从offset开始的length个字节编码到dst中从dstOffset开始的位置,需要length * 2个字符的空间
+     *
+     * @return 写入结束的位置
+     */
+    public static int encode(byte[] src, int offset, int length, char[] dst, int dstOffset) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            int pair = (src[i] & 0xff) << 1;
+            dst[dstOffset++] = PAIRS[pair];
+            dst[dstOffset++] = PAIRS[pair + 1];
+        }
+        return dstOffset;
+    }
+
+    /**
+     * 将src中从offset开始的length个字节编码为ASCII字符写入到dst中从dstOffset开始的位置,需要length * 2个字节的空间
+     *
+     * @return 写入结束的位置
+     */
+    public static int encode(byte[] src, int offset, int length, byte[] dst, int dstOffset) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            int pair = (src[i] & 0xff) << 1;
+            dst[dstOffset++] = (byte) PAIRS[pair];
+            dst[dstOffset++] = (byte) PAIRS[pair + 1];
+        }
+        return dstOffset;
+    }
+
+    /**
+     * 将src中从offset开始的length个字节编码后分块写入out,不会创建与数据等长的String
+     *
+     * @param separator 每个字节后面附加的分隔符,为0时不附加
+     */
+    public static void encode(byte[] src, int offset, int length, char separator, Appendable out) throws IOException {
+        int step = separator == 0 ? 2 : 3;
+        char[] chunk = new char[Math.min(length, CHUNK) * step];
+        Sink sink = new Sink(out, chunk);
+        for (int i = offset, end = offset + length; i < end; ) {
+            int n = 0;
+            for (int stop = Math.min(end, i + CHUNK); i < stop; i++) {
+                int pair = (src[i] & 0xff) << 1;
+                chunk[n++] = PAIRS[pair];
+                chunk[n++] = PAIRS[pair + 1];
+                if (step == 3) chunk[n++] = separator;
+            }
+            sink.write(n);
+        }
+    }
+
+    /**
+     * 与{@link BytesReader#toString(byte[])}的格式相同,每个字节后面附加一个空格,如 "C8 02 FF "
+     */
+    static String spaced(byte[] src, int offset, int length) {
+        char[] rst = new char[length * 3];
+        for (int i = offset, end = offset + length, n = 0; i < end; i++) {
+            int pair = (src[i] & 0xff) << 1;
+            rst[n++] = PAIRS[pair];
+            rst[n++] = PAIRS[pair + 1];
+            rst[n++] = ' ';
+        }
+        return new String(rst);
+    }
+
+    /**
+     * 将16进制字符串解析为byte数组,不区分大小写,字节之间可以有空白字符,如 "C8 02 ff" 或 "C802FF"
+     *
+     * @throws IllegalArgumentException 包含其他字符或者16进制字符的个数为奇数时
+     */
+    public static byte[] decode(CharSequence hex) {
+        int digits = 0;
+        for (int i = 0, length = hex.length(); i < length; i++) {
+            if (!Character.isWhitespace(hex.charAt(i))) digits++;
+        }
+        if ((digits & 1) != 0) {
+            throw new IllegalArgumentException("odd number of hex digits: " + digits);
+        }
+        byte[] rst = new byte[digits >> 1];
+        decode(hex, rst, 0);
+        return rst;
+    }
+
+    /**
+     * 将16进制字符串解析后写入到dst中从dstOffset开始的位置,格式见{@link HexCodec#decode(CharSequence)}
+     *
+     * @return 写入结束的位置
+     * @throws IllegalArgumentException 包含其他字符或者16进制字符的个数为奇数时
+     */
+    public static int decode(CharSequence hex, byte[] dst, int dstOffset) {
+        int high = -1;
+        for (int i = 0, length = hex.length(); i < length; i++) {
+            char c = hex.charAt(i);
+            if (Character.isWhitespace(c)) {
+                if (high >= 0) throw new IllegalArgumentException("whitespace inside a byte at index " + i);
+                continue;
+            }
+            int digit = Character.digit(c, 16);
+            if (digit < 0) throw new IllegalArgumentException("illegal hex character '" + c + "' at index " + i);
+            if (high < 0) {
+                high = digit;
+            } else {
+                dst[dstOffset++] = (byte) (high << 4 | digit);
+                high = -1;
+            }
+        }
+        if (high >= 0) throw new IllegalArgumentException("odd number of hex digits");
+        return dstOffset;
+    }
+
+    /**
+     * 将src中从offset开始的length个字节按行写入out,每行16个字节,包含偏移量、16进制和ASCII三列,如
+     * <pre>
+     * 00000000  48 65 6C 6C 6F 20 77 6F  72 6C 64 0A 00 01 02 03  |Hello world.....|
+     * </pre>
+     * 偏移量相对于offset,不可打印的字符显示为'.';每行单独写入,不会创建与数据等长的String
+     */
+    public static void dump(byte[] src, int offset, int length, Appendable out) throws IOException {
+        // 每行最多79个字符: 偏移量8, 16进制列50, ASCII列20, 换行1
+        char[] line = new char[79];
+        Sink sink = new Sink(out, line);
+        for (int row = 0; row < length; row += DUMP_WIDTH) {
+            int n = 0;
+            for (int shift = 28; shift >= 0; shift -= 4) {
+                line[n++] = DIGITS[row >>> shift & 0x0f];
+            }
+            line[n++] = ' ';
+            int count = Math.min(DUMP_WIDTH, length - row);
+            for (int i = 0; i < DUMP_WIDTH; i++) {
+                if (i == DUMP_WIDTH / 2) line[n++] = ' ';
+                line[n++] = ' ';
+                if (i < count) {
+                    int pair = (src[offset + row + i] & 0xff) << 1;
+                    line[n++] = PAIRS[pair];
+                    line[n++] = PAIRS[pair + 1];
+                } else {
+                    line[n++] = ' ';
+                    line[n++] = ' ';
+                }
+            }
+            line[n++] = ' ';
+            line[n++] = ' ';
+            line[n++] = '|';
+            for (int i = 0; i < count; i++) {
+                int b = src[offset + row + i] & 0xff;
+                line[n++] = b >= 0x20 && b < 0x7f ? (char) b : '.';
+            }
+            line[n++] = '|';
+            line[n++] = '\n';
+            sink.write(n);
+        }
+    }
+
+    /**
+     * 将src中从offset开始的length个字节按{@link HexCodec#dump(byte[], int, int, Appendable)}的格式转为字符串
+     */
+    public static String dump(byte[] src, int offset, int length) {
+        StringBuilder rst = new StringBuilder((length + DUMP_WIDTH - 1) / DUMP_WIDTH * 79);
+        try {
+            dump(src, offset, length, rst);
+        } catch (IOException ignored) {
+            // StringBuilder不会抛出IOException
+        }
+        return rst.toString();
+    }
+
+    /**
+     * 将字符数组中的内容写入Appendable,Writer和StringBuilder直接写入数组,其他的通过复用的CharBuffer写入
+     */
+    private static final class Sink {
+        private final Appendable out;
+        private final char[] chars;
+        private CharBuffer wrapper;
+
+        Sink(Appendable out, char[] chars) {
+            this.out = out;
+            this.chars = chars;
+        }
+
+        void write(int length) throws IOException {
+            if (out instanceof StringBuilder) {
+                ((StringBuilder) out).append(chars, 0, length);
+            } else if (out instanceof Writer) {
+                ((Writer) out).write(chars, 0, length);
+            } else {
+                if (wrapper == null) wrapper = CharBuffer.wrap(chars);
+                out.append(wrapper, 0, length);
+            }
+        }
+    }
+}
@@ -0,0 +1,542 @@
+package com.github.bytesutils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.zip.Checksum;
+
+/**
+ * 通过{@link FileChannel#map}解析文件的BytesReader,用于解析无法整个读入byte数组的大文件
+ * <p>
+ * 索引位置为long,每次只映射文件中的一个窗口,读取超出当前窗口时会从当前索引位置重新映射,
+ * 所以跨越窗口边界的数据也能正常读取,文件超过2G时同样可以使用.
+ * 提供与{@link BytesReader}相同的getXxx、getXxxArray、spyXxx、getString等方法,数据不足时的返回值也相同
+ * <p>
+ * 解析Tree:
+ * 长度已知时通过{@link MappedBytesReader#slice(int)}得到只包含该记录的BytesReader,传给{@link Tree#parserByteArray(BytesReader)};
+ * 长度未知时使用{@link MappedBytesReader#parse(Tree)},解析后索引移动到记录的结尾.
+ * 两者都直接从映射的内存中读取,不需要先拷贝到byte数组中
+ * <p>
+ * 映射的内存在被gc回收时才会释放;重新映射时出现的IOException会被包装为IllegalStateException抛出;非线程安全
+ */
+public class MappedBytesReader implements Closeable {
+
+    private static final int PAGE_SIZE = 4096;
+
+    private final FileChannel channel;
+    private final long length;
+    private final int windowSize;
+    private int maxRecordLength = 1024 * 1024;
+
+    /**
+     * 当前窗口在文件中的起始位置
+     */
+    private long windowStart;
+    /**
+     * 解析当前窗口的BytesReader,其索引位置加上windowStart即为在文件中的索引位置
+     */
+    private BytesReader reader;
+
+    /**
+     * 使用64M的窗口
+     */
+    public MappedBytesReader(File file) throws IOException {
+        this(file, 64 * 1024 * 1024);
+    }
+
+    /**
+     * @param windowSize 每次映射的窗口的大小
+     */
+    public MappedBytesReader(File file, int windowSize) throws IOException {
+        this(new RandomAccessFile(file, "r").getChannel(), windowSize);
+    }
+
+    /**
+     * 解析channel对应的文件从开头到当前大小的数据,调用{@link MappedBytesReader#close()}时会关闭channel
+     *
+     * @param windowSize 每次映射的窗口的大小
+     */
+    public MappedBytesReader(FileChannel channel, int windowSize) throws IOException {
+        this.channel = channel;
+        this.windowSize = Math.max(windowSize, PAGE_SIZE);
+        length = channel.size();
+        map(0, 0);
+    }
+
+    /**
+     * 设置{@link MappedBytesReader#parse(Tree)}解析的单条记录的最大长度,默认为1M,不能超过窗口的大小
+     */
+    public MappedBytesReader setMaxRecordLength(int maxRecordLength) {
+        this.maxRecordLength = Math.min(maxRecordLength, windowSize);
+        return this;
+    }
+
+    /**
+     * 获取文件的长度
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * 获取当前索引位置
+     */
+    public long getPos() {
+        return windowStart + reader.getPos();
+    }
+
+    /**
+     * 将索引移动到指定位置,可以移动到末尾
+     */
+    public boolean setPos(long pos) {
+        if (pos < 0 || pos > length) return false;
+        long relative = pos - windowStart;
+        if (relative < 0 || !reader.setPos((int) Math.min(relative, Integer.MAX_VALUE))) {
+            map(pos, 0);
+        }
+        return true;
+    }
+
+    /**
+     * 将索引向后移动length个位置,length为负数时向前移动,可以移动到末尾
+     *
+     * @param length 移动长度
+     * @return 是否成功
+     */
+    public boolean movePos(long length) {
+        return setPos(getPos() + length);
+    }
+
+    /**
+     * 获取剩余的长度
+     */
+    public long residue() {
+        return length - getPos();
+    }
+
+    /**
+     * 返回只包含当前的索引位置开始的length个字节的BytesReader,直接读取映射的内存不会拷贝,之后本对象的索引会向后移动length个位置
+     * 剩余的数据不足时返回null,索引也不会移动
+     */
+    public BytesReader slice(int length) {
+        if (length < 0 || length > residue()) return null;
+        ensure(length);
+        return reader.slice(length);
+    }
+
+    /**
+     * 从当前的索引位置开始解析一条记录到tree中,之后索引移动到记录的结尾
+     * 记录的长度不能超过{@link MappedBytesReader#setMaxRecordLength(int)},
+     * 描述中包含未指定长度的{@link DataType#TYPE_RAW}时会读取到当前窗口的结尾,这种情况需要使用{@link MappedBytesReader#slice(int)}
+     */
+    public Tree parse(Tree tree) {
+        ensure((int) Math.min(maxRecordLength, residue()));
+        return tree.parserByteArray(reader);
+    }
+
+    /**
+     * 将文件中从pos开始的length个字节加入checksum中计算,按窗口分段直接从映射的内存中计算,之后索引回到原来的位置
+     *
+     * @return 范围超出文件时不会计算,返回false
+     */
+    public boolean updateChecksum(Checksum checksum, long pos, long length) {
+        if (pos < 0 || length < 0 || pos > this.length - length) return false;
+        long saved = getPos();
+        while (length > 0) {
+            setPos(pos);
+            int n = (int) Math.min(length, windowSize);
+            ensure(n);
+            reader.updateChecksum(checksum, reader.getPos(), n);
+            pos += n;
+            length -= n;
+        }
+        setPos(saved);
+        return true;
+    }
+
+    public boolean isLeftoverAllFF() {
+        return isRemainingFilledWith((byte) 0xFF);
+    }
+
+    public boolean isNotLeftoverAllFF() {
+        return !isLeftoverAllFF();
+    }
+
+    /**
+     * 剩余的数据是否全部为value,没有剩余的数据时返回true,索引不会移动
+     */
+    public boolean isRemainingFilledWith(byte value) {
+        long pos = getPos();
+        boolean rst = reader.isRemainingFilledWith(value);
+        while (rst && nextWindow(0)) {
+            rst = reader.isRemainingFilledWith(value);
+        }
+        setPos(pos);
+        return rst;
+    }
+
+    /**
+     * 从当前的索引位置开始查找value第一次出现的位置,索引不会移动
+     *
+     * @return 在文件中的位置,没有找到时返回-1
+     */
+    public long indexOf(byte value) {
+        long pos = getPos();
+        long rst = -1;
+        do {
+            int index = reader.indexOf(value);
+            if (index >= 0) {
+                rst = windowStart + index;
+                break;
+            }
+        } while (nextWindow(0));
+        setPos(pos);
+        return rst;
+    }
+
+    /**
+     * 从当前的索引位置开始查找pattern第一次出现的位置,跨越窗口边界的pattern也能找到,索引不会移动
+     *
+     * @return 在文件中的位置,没有找到时返回-1,pattern为空时返回当前的索引位置
+     */
+    public long indexOf(byte[] pattern) {
+        long pos = getPos();
+        long rst = -1;
+        do {
+            int index = reader.indexOf(pattern);
+            if (index >= 0) {
+                rst = windowStart + index;
+                break;
+            }
+        } while (nextWindow(pattern.length - 1));
+        setPos(pos);
+        return rst;
+    }
+
+    /**
+     * 从当前的索引位置开始与other中从offset开始的length个字节比较,索引不会移动
+     *
+     * @return 第一个不同的字节相对于当前索引位置的偏移,全部相同时返回-1;
+     * 剩余的数据不足length个字节并且都相同时返回剩余的长度
+     */
+    public int mismatch(byte[] other, int offset, int length) {
+        ensure((int) Math.min(length, residue()));
+        return reader.mismatch(other, offset, length);
+    }
+
+    /**
+     * 返回 当前的索引位置到索引加上指定长度位置的byte数据, 之后索引会向后移动指定长度个位置
+     *
+     * @param length 获取的长度
+     */
+    public byte[] getBytes(int length) {
+        ensure(length);
+        return reader.getBytes(length);
+    }
+
+    /**
+     * 将当前的索引位置开始的length个字节拷贝到dst的offset位置, 之后索引会向后移动length个位置
+     * 剩余的数据不足时不会拷贝,索引也不会移动
+     *
+     * @return 是否拷贝成功
+     */
+    public boolean getBytes(byte[] dst, int offset, int length) {
+        ensure(length);
+        return reader.getBytes(dst, offset, length);
+    }
+
+    public byte getS8() {
+        ensure(1);
+        return reader.getS8();
+    }
+
+    public short getU8() {
+        ensure(1);
+        return reader.getU8();
+    }
+
+    public short getS16(boolean isLe) {
+        ensure(2);
+        return reader.getS16(isLe);
+    }
+
+    public short getS16() {
+        return getS16(true);
+    }
+
+    public int getU16(boolean isLe) {
+        ensure(2);
+        return reader.getU16(isLe);
+    }
+
+    public int getU16() {
+        return getU16(true);
+    }
+
+    public int getS32(boolean isLe) {
+        ensure(4);
+        return reader.getS32(isLe);
+    }
+
+    public int getS32() {
+        return getS32(true);
+    }
+
+    public long getU32(boolean isLe) {
+        ensure(4);
+        return reader.getU32(isLe);
+    }
+
+    public long getU32() {
+        return getU32(true);
+    }
+
+    public long getS64(boolean isLe) {
+        ensure(8);
+        return reader.getS64(isLe);
+    }
+
+    public long getS64() {
+        return getS64(true);
+    }
+
+    public float getFloat(boolean isLe) {
+        ensure(4);
+        return reader.getFloat(isLe);
+    }
+
+    public float getFloat() {
+        return getFloat(true);
+    }
+
+    public double getDouble(boolean isLe) {
+        ensure(8);
+        return reader.getDouble(isLe);
+    }
+
+    public double getDouble() {
+        return getDouble(true);
+    }
+
+    public long getVarU32() {
+        ensure((int) Math.min(Varint.MAX_LENGTH32, residue()));
+        return reader.getVarU32();
+    }
+
+    public int getVarS32() {
+        ensure((int) Math.min(Varint.MAX_LENGTH32, residue()));
+        return reader.getVarS32();
+    }
+
+    public long getVarU64() {
+        ensure((int) Math.min(Varint.MAX_LENGTH64, residue()));
+        return reader.getVarU64();
+    }
+
+    public long getVarS64() {
+        ensure((int) Math.min(Varint.MAX_LENGTH64, residue()));
+        return reader.getVarS64();
+    }
+
+    public boolean getS8Array(byte[] dst, int offset, int count) {
+        ensureArray(count, 1);
+        return reader.getS8Array(dst, offset, count);
+    }
+
+    public boolean getU8Array(short[] dst, int offset, int count) {
+        ensureArray(count, 1);
+        return reader.getU8Array(dst, offset, count);
+    }
+
+    public boolean getS16Array(short[] dst, int offset, int count, boolean isLe) {
+        ensureArray(count, 2);
+        return reader.getS16Array(dst, offset, count, isLe);
+    }
+
+    public boolean getS16Array(short[] dst, int offset, int count) {
+        return getS16Array(dst, offset, count, true);
+    }
+
+    public boolean getU16Array(int[] dst, int offset, int count, boolean isLe) {
+        ensureArray(count, 2);
+        return reader.getU16Array(dst, offset, count, isLe);
+    }
+
+    public boolean getU16Array(int[] dst, int offset, int count) {
+        return getU16Array(dst, offset, count, true);
+    }
+
+    public boolean getS32Array(int[] dst, int offset, int count, boolean isLe) {
+        ensureArray(count, 4);
+        return reader.getS32Array(dst, offset, count, isLe);
+    }
+
+    public boolean getS32Array(int[] dst, int offset, int count) {
+        return getS32Array(dst, offset, count, true);
+    }
+
+    public boolean getU32Array(long[] dst, int offset, int count, boolean isLe) {
+        ensureArray(count, 4);
+        return reader.getU32Array(dst, offset, count, isLe);
+    }
+
+    public boolean getU32Array(long[] dst, int offset, int count) {
+        return getU32Array(dst, offset, count, true);
+    }
+
+    public boolean getS64Array(long[] dst, int offset, int count, boolean isLe) {
+        ensureArray(count, 8);
+        return reader.getS64Array(dst, offset, count, isLe);
+    }
+
+    public boolean getS64Array(long[] dst, int offset, int count) {
+        return getS64Array(dst, offset, count, true);
+    }
+
+    public boolean getFloatArray(float[] dst, int offset, int count, boolean isLe) {
+        ensureArray(count, 4);
+        return reader.getFloatArray(dst, offset, count, isLe);
+    }
+
+    public boolean getFloatArray(float[] dst, int offset, int count) {
+        return getFloatArray(dst, offset, count, true);
+    }
+
+    public boolean getDoubleArray(double[] dst, int offset, int count, boolean isLe) {
+        ensureArray(count, 8);
+        return reader.getDoubleArray(dst, offset, count, isLe);
+    }
+
+    public boolean getDoubleArray(double[] dst, int offset, int count) {
+        return getDoubleArray(dst, offset, count, true);
+    }
+
+    /**
+     * 从当前的索引位置到索引加上指定长度位置的byte数据转化为String字符串,之后索引移动指定的长度
+     * 如果传入的长度过长,会将剩下的所有数据转化为字符串,之后索引移动到末尾
+     */
+    public String getString(int length, String charSet) {
+        length = (int) Math.min(length, residue());
+        ensure(length);
+        return reader.getString(length, charSet);
+    }
+
+    public String getString(int length, Charset charset) {
+        length = (int) Math.min(length, residue());
+        ensure(length);
+        return reader.getString(length, charset);
+    }
+
+    /**
+     * 默认使用GBK编码
+     */
+    public String getString(int length) {
+        return getString(length, StringDecoder.GBK);
+    }
+
+    public StringBuilder getString(int length, StringDecoder decoder, StringBuilder dst) {
+        length = (int) Math.min(length, residue());
+        ensure(length);
+        return reader.getString(length, decoder, dst);
+    }
+
+    public byte spyS8() {
+        ensure(1);
+        return reader.spyS8();
+    }
+
+    public short spyU8() {
+        ensure(1);
+        return reader.spyU8();
+    }
+
+    public short spyS16(boolean isLe) {
+        ensure(2);
+        return reader.spyS16(isLe);
+    }
+
+    public int spyU16(boolean isLe) {
+        ensure(2);
+        return reader.spyU16(isLe);
+    }
+
+    public int spyS32(boolean isLe) {
+        ensure(4);
+        return reader.spyS32(isLe);
+    }
+
+    public long spyU32(boolean isLe) {
+        ensure(4);
+        return reader.spyU32(isLe);
+    }
+
+    public long spyS64(boolean isLe) {
+        ensure(8);
+        return reader.spyS64(isLe);
+    }
+
+    /**
+     * 关闭文件,之后不能再读取
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * 保证当前窗口中从索引位置开始有length个字节,不足且文件中还有数据时从索引位置重新映射
+     */
+    private void ensure(int length) {
+        if (length > 0 && reader.residue() < length && getPos() < this.length) {
+            map(getPos(), length);
+        }
+    }
+
+    /**
+     * 扫描时映射当前窗口之后的数据,新窗口从当前窗口结尾之前overlap个字节的位置开始,用于查找跨越窗口边界的数据
+     *
+     * @return 文件中是否还有数据
+     */
+    private boolean nextWindow(int overlap) {
+        long windowEnd = windowStart + reader.getPos() + reader.residue();
+        if (windowEnd >= length) return false;
+        map(Math.max(windowEnd - overlap, getPos() + 1), 0);
+        return true;
+    }
+
+    /**
+     * 保证当前窗口中有count个size字节的元素,超出窗口能映射的大小时不做处理,由BytesReader返回数据不足
+     */
+    private void ensureArray(int count, int size) {
+        long length = (long) count * size;
+        if (length <= Integer.MAX_VALUE) ensure((int) length);
+    }
+
+    /**
+     * 映射包含pos开始的至少length个字节的窗口,并将索引移动到pos
+     */
+    private void map(long pos, int length) {
+        // 从pos所在的页开始映射,pos之后至少有一个窗口大小的数据
+        int after = Math.max(windowSize, length);
+        long start = pos - pos % PAGE_SIZE;
+        if (pos - start + after > Integer.MAX_VALUE) start = pos;
+        long size = Math.min(this.length - start, pos - start + after);
+        ByteBuffer window;
+        if (size <= 0) {
+            window = ByteBuffer.allocate(0);
+        } else {
+            try {
+                window = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+            } catch (IOException e) {
+                throw new IllegalStateException("map " + start + "+" + size + " failed", e);
+            }
+        }
+        windowStart = start;
+        reader = new BytesReader(window);
+        reader.setPos((int) (pos - start));
+    }
+}
@@ -0,0 +1,631 @@
+package com.github.bytesutils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.zip.Checksum;
+
+/**
+ * 分段存储的{@link ByteArrayList},数据依次写入固定大小的块中,扩充时只添加新的块,已有的数据不会被拷贝
+ * <p>
+ * 适用于固件、批量日志等数M以上的数据:不会因为扩容反复拷贝整个数组,也不会在扩容时同时存在新旧两个大数组.
+ * 写出时通过{@link SegmentedByteArrayList#writeTo(OutputStream)}或{@link SegmentedByteArrayList#writeTo(GatheringByteChannel)}
+ * 逐块写出,不需要先通过toArray合并
+ */
+public class SegmentedByteArrayList {
+
+    private final int shift;
+    private final int mask;
+    private byte[][] chunks = new byte[4][];
+    /**
+     * 已经分配的块的数量,reset后会保留
+     */
+    private int chunkCount;
+    private int size;
+    /**
+     * 用于跨块写入的数值
+     */
+    private final byte[] scratch = new byte[Varint.MAX_LENGTH64];
+    /**
+     * 不能直接编码到当前块中的字符串先编码到这里再拷贝
+     */
+    private byte[] encoded;
+    private ByteBuffer[] buffers;
+    /**
+     * 非阻塞写出时未写完的数据的起始位置,见{@link SegmentedByteArrayList#writeTo(GatheringByteChannel)}
+     */
+    private int writePos;
+    private boolean writePending;
+
+    /**
+     * @param chunkSize 每一块的大小,向上取为2的幂
+     */
+    public SegmentedByteArrayList(int chunkSize) {
+        if (chunkSize <= 0 || chunkSize > 1 << 30) {
+            throw new IllegalArgumentException("Illegal Chunk Size: " + chunkSize);
+        }
+        shift = chunkSize == 1 ? 0 : 32 - Integer.numberOfLeadingZeros(chunkSize - 1);
+        mask = (1 << shift) - 1;
+    }
+
+    public SegmentedByteArrayList() {
+        this(8192);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public SegmentedByteArrayList add(byte element) {
+        int offset = size & mask;
+        if (offset == 0) {
+            ensureCapacityInternal(size + 1);
+        }
+        chunks[size >>> shift][offset] = element;
+        size++;
+        return this;
+    }
+
+    public SegmentedByteArrayList add(byte[] src) {
+        return add(src, 0, src.length);
+    }
+
+    public SegmentedByteArrayList add(byte[] src, int offset, int length) {
+        ensureCapacityInternal(size + length);
+        copyIn(size, src, offset, length);
+        size += length;
+        return this;
+    }
+
+    public SegmentedByteArrayList add(short s, boolean isLe) {
+        int index = append(2);
+        if (index >= 0) {
+            if (isLe) {
+                EndianUtils.toLe(s, chunks[index >>> shift], index & mask);
+            } else {
+                EndianUtils.toBe(s, chunks[index >>> shift], index & mask);
+            }
+        } else {
+            setS16At(size - 2, s, isLe);
+        }
+        return this;
+    }
+
+    public SegmentedByteArrayList add(short s) {
+        return add(s, true);
+    }
+
+    public SegmentedByteArrayList add(int i, boolean isLe) {
+        int index = append(4);
+        if (index >= 0) {
+            if (isLe) {
+                EndianUtils.toLe(i, chunks[index >>> shift], index & mask);
+            } else {
+                EndianUtils.toBe(i, chunks[index >>> shift], index & mask);
+            }
+        } else {
+            setS32At(size - 4, i, isLe);
+        }
+        return this;
+    }
+
+    public SegmentedByteArrayList add(int i) {
+        return add(i, true);
+    }
+
+    public SegmentedByteArrayList add(long l, boolean isLe) {
+        int index = append(8);
+        if (index >= 0) {
+            if (isLe) {
+                EndianUtils.toLe(l, chunks[index >>> shift], index & mask);
+            } else {
+                EndianUtils.toBe(l, chunks[index >>> shift], index & mask);
+            }
+        } else {
+            setS64At(size - 8, l, isLe);
+        }
+        return this;
+    }
+
+    public SegmentedByteArrayList add(long l) {
+        return add(l, true);
+    }
+
+    public SegmentedByteArrayList add(float f, boolean isLe) {
+        return add(Float.floatToRawIntBits(f), isLe);
+    }
+
+    public SegmentedByteArrayList add(float f) {
+        return add(f, true);
+    }
+
+    public SegmentedByteArrayList add(double d, boolean isLe) {
+        return add(Double.doubleToRawLongBits(d), isLe);
+    }
+
+    public SegmentedByteArrayList add(double d) {
+        return add(d, true);
+    }
+
+    /**
+     * 同{@link ByteArrayList#addVarU32(long)}
+     */
+    public SegmentedByteArrayList addVarU32(long l) {
+        return addVarU64(l & 0xffffffffL);
+    }
+
+    /**
+     * 同{@link ByteArrayList#addVarS32(int)}
+     */
+    public SegmentedByteArrayList addVarS32(int i) {
+        return addVarU64(Varint.zigzag(i) & 0xffffffffL);
+    }
+
+    /**
+     * 同{@link ByteArrayList#addVarU64(long)}
+     */
+    public SegmentedByteArrayList addVarU64(long l) {
+        return add(scratch, 0, Varint.write(l, scratch, 0));
+    }
+
+    /**
+     * 同{@link ByteArrayList#addVarS64(long)}
+     */
+    public SegmentedByteArrayList addVarS64(long l) {
+        return addVarU64(Varint.zigzag(l));
+    }
+
+    /**
+     * 将s通过{@link StringEncoder}编码,当前块放得下时直接编码到块中,否则先编码到复用的临时数组中再拷贝,不会为每个字符串创建新的数组
+     */
+    public SegmentedByteArrayList add(String s, Charset charSet) {
+        if (s != null && s.length() != 0 && charSet != null) {
+            StringEncoder encoder = StringEncoder.get(charSet);
+            int max = encoder.maxLength(s);
+            if (contains(size, max)) {
+                ensureCapacityInternal(size + max);
+                int offset = size & mask;
+                size += encoder.encode(s, chunks[size >>> shift], offset) - offset;
+            } else {
+                int length = encode(encoder, s, max);
+                add(encoded, 0, length);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * 字符集通过{@link StringDecoder#forName(String)}查找,不支持时不添加
+     */
+    public SegmentedByteArrayList add(String s, String charSet) {
+        return add(s, StringDecoder.forName(charSet));
+    }
+
+    public SegmentedByteArrayList add(String s) {
+        return add(s, StringDecoder.GBK);
+    }
+
+    /**
+     * 同{@link ByteArrayList#add(String, Charset, int)},先编码再写入长度前缀和数据
+     */
+    public SegmentedByteArrayList add(String s, Charset charSet, int type) {
+        long maxLength;
+        switch (type) {
+            case DataType.TYPE_MUABLE0:
+                maxLength = 0xff;
+                break;
+            case DataType.TYPE_MUABLE1:
+            case DataType.TYPE_MUABLE1_BE:
+                maxLength = 0xffff;
+                break;
+            case DataType.TYPE_MUABLE2:
+            case DataType.TYPE_MUABLE2_BE:
+            case DataType.TYPE_VAR_MUABLE:
+                maxLength = 0xffffffffL;
+                break;
+            default:
+                throw new IllegalMonitorStateException("don't have the type " + type);
+        }
+        int length = 0;
+        if (s != null && s.length() != 0 && charSet != null) {
+            StringEncoder encoder = StringEncoder.get(charSet);
+            length = encode(encoder, s, encoder.maxLength(s));
+            if (length > maxLength) length = 0;
+        }
+        switch (type) {
+            case DataType.TYPE_MUABLE0:
+                add((byte) length);
+                break;
+            case DataType.TYPE_MUABLE1:
+                add((short) length, true);
+                break;
+            case DataType.TYPE_MUABLE1_BE:
+                add((short) length, false);
+                break;
+            case DataType.TYPE_MUABLE2:
+                add(length, true);
+                break;
+            case DataType.TYPE_MUABLE2_BE:
+                add(length, false);
+                break;
+            default:
+                addVarU32(length);
+                break;
+        }
+        if (length > 0) {
+            add(encoded, 0, length);
+        }
+        return this;
+    }
+
+    /**
+     * 见{@link SegmentedByteArrayList#add(String, Charset, int)},字符集通过{@link StringDecoder#forName(String)}查找
+     */
+    public SegmentedByteArrayList add(String s, String charSet, int type) {
+        return add(s, StringDecoder.forName(charSet), type);
+    }
+
+    /**
+     * 同{@link ByteArrayList#reserve(int)}
+     */
+    public int reserve(int length) {
+        int index = size;
+        addSize(length);
+        return index;
+    }
+
+    /**
+     * 覆盖index位置的1个字节,以下setXxxAt都只能覆盖已有的数据,不会改变size
+     */
+    public SegmentedByteArrayList setS8At(int index, byte b) {
+        checkRange(index, 1);
+        chunks[index >>> shift][index & mask] = b;
+        return this;
+    }
+
+    public SegmentedByteArrayList setU8At(int index, short s) {
+        return setS8At(index, (byte) s);
+    }
+
+    public SegmentedByteArrayList setS16At(int index, short s, boolean isLe) {
+        checkRange(index, 2);
+        if (contains(index, 2)) {
+            if (isLe) {
+                EndianUtils.toLe(s, chunks[index >>> shift], index & mask);
+            } else {
+                EndianUtils.toBe(s, chunks[index >>> shift], index & mask);
+            }
+        } else {
+            if (isLe) {
+                EndianUtils.toLe(s, scratch, 0);
+            } else {
+                EndianUtils.toBe(s, scratch, 0);
+            }
+            copyIn(index, scratch, 0, 2);
+        }
+        return this;
+    }
+
+    public SegmentedByteArrayList setS16At(int index, short s) {
+        return setS16At(index, s, true);
+    }
+
+    public SegmentedByteArrayList setU16At(int index, int i, boolean isLe) {
+        return setS16At(index, (short) i, isLe);
+    }
+
+    public SegmentedByteArrayList setU16At(int index, int i) {
+        return setU16At(index, i, true);
+    }
+
+    public SegmentedByteArrayList setS32At(int index, int i, boolean isLe) {
+        checkRange(index, 4);
+        if (contains(index, 4)) {
+            if (isLe) {
+                EndianUtils.toLe(i, chunks[index >>> shift], index & mask);
+            } else {
+                EndianUtils.toBe(i, chunks[index >>> shift], index & mask);
+            }
+        } else {
+            if (isLe) {
+                EndianUtils.toLe(i, scratch, 0);
+            } else {
+                EndianUtils.toBe(i, scratch, 0);
+            }
+            copyIn(index, scratch, 0, 4);
+        }
+        return this;
+    }
+
+    public SegmentedByteArrayList setS32At(int index, int i) {
+        return setS32At(index, i, true);
+    }
+
+    public SegmentedByteArrayList setU32At(int index, long l, boolean isLe) {
+        return setS32At(index, (int) l, isLe);
+    }
+
+    public SegmentedByteArrayList setU32At(int index, long l) {
+        return setU32At(index, l, true);
+    }
+
+    public SegmentedByteArrayList setS64At(int index, long l, boolean isLe) {
+        checkRange(index, 8);
+        if (contains(index, 8)) {
+            if (isLe) {
+                EndianUtils.toLe(l, chunks[index >>> shift], index & mask);
+            } else {
+                EndianUtils.toBe(l, chunks[index >>> shift], index & mask);
+            }
+        } else {
+            if (isLe) {
+                EndianUtils.toLe(l, scratch, 0);
+            } else {
+                EndianUtils.toBe(l, scratch, 0);
+            }
+            copyIn(index, scratch, 0, 8);
+        }
+        return this;
+    }
+
+    public SegmentedByteArrayList setS64At(int index, long l) {
+        return setS64At(index, l, true);
+    }
+
+    public SegmentedByteArrayList setFloatAt(int index, float f, boolean isLe) {
+        return setS32At(index, Float.floatToRawIntBits(f), isLe);
+    }
+
+    public SegmentedByteArrayList setFloatAt(int index, float f) {
+        return setFloatAt(index, f, true);
+    }
+
+    public SegmentedByteArrayList setDoubleAt(int index, double d, boolean isLe) {
+        return setS64At(index, Double.doubleToRawLongBits(d), isLe);
+    }
+
+    public SegmentedByteArrayList setDoubleAt(int index, double d) {
+        return setDoubleAt(index, d, true);
+    }
+
+    /**
+     * 用src中从offset开始的length个字节覆盖index位置的数据
+     */
+    public SegmentedByteArrayList setBytesAt(int index, byte[] src, int offset, int length) {
+        checkRange(index, length);
+        copyIn(index, src, offset, length);
+        return this;
+    }
+
+    public byte get(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+
+        return chunks[index >>> shift][index & mask];
+    }
+
+    /**
+     * 将从index开始的length个字节拷贝到dst中从offset开始的位置
+     */
+    public void get(int index, byte[] dst, int offset, int length) {
+        checkRange(index, length);
+        while (length > 0) {
+            int inChunk = index & mask;
+            int n = Math.min(length, mask + 1 - inChunk);
+            System.arraycopy(chunks[index >>> shift], inChunk, dst, offset, n);
+            index += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    public void clear() {
+        for (int i = 0, count = chunkOf(size); i < count; i++) {
+            Arrays.fill(chunks[i], (byte) 0);
+        }
+        size = 0;
+        writePending = false;
+    }
+
+    /**
+     * 同{@link ByteArrayList#reset()},保留已经分配的块
+     */
+    public SegmentedByteArrayList reset() {
+        size = 0;
+        writePending = false;
+        return this;
+    }
+
+    /**
+     * 添加空数据
+     */
+    public void addSize(int addSize) {
+        setSize(size + addSize);
+    }
+
+    /**
+     * 设置size的大小,若大于当前会扩充空数据 若小于当前会截取,截取时不会释放已经分配的块
+     */
+    public void setSize(int newSize) {
+        if (newSize < 0)
+            throw new IllegalArgumentException("Size Error:" + newSize);
+
+        if (newSize > size) {
+            ensureCapacityInternal(newSize);
+            for (int index = size; index < newSize; ) {
+                int inChunk = index & mask;
+                int n = Math.min(newSize - index, mask + 1 - inChunk);
+                Arrays.fill(chunks[index >>> shift], inChunk, inChunk + n, (byte) 0);
+                index += n;
+            }
+        }
+        size = newSize;
+    }
+
+    /**
+     * 将从offset开始的length个字节逐块加入checksum中计算,不会拷贝数据
+     */
+    public void updateChecksum(Checksum checksum, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > size - length)
+            throw new IndexOutOfBoundsException("Offset: " + offset + ", Length: " + length + ", Size: " + size);
+
+        while (length > 0) {
+            int inChunk = offset & mask;
+            int n = Math.min(length, mask + 1 - inChunk);
+            checksum.update(chunks[offset >>> shift], inChunk, n);
+            offset += n;
+            length -= n;
+        }
+    }
+
+    /**
+     * 逐块写入out,不会合并数据
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        int chunkSize = mask + 1;
+        for (int index = 0; index < size; index += chunkSize) {
+            out.write(chunks[index >>> shift], 0, Math.min(chunkSize, size - index));
+        }
+    }
+
+    /**
+     * 通过一次或多次gather写入将所有的块写入channel
+     * <p>
+     * 阻塞的channel会一直写到全部写完;非阻塞的channel写入0个字节(发送缓冲区已满)时停止,
+     * 此时{@link SegmentedByteArrayList#isWritePending()}为true,等待channel可写后再次调用会从上次停止的位置继续写出.
+     * 全部写完后再次调用会重新写出所有数据.每一块的ByteBuffer只在第一次写出时创建,之后复用
+     *
+     * @return 本次调用写入的字节数
+     */
+    public long writeTo(GatheringByteChannel channel) throws IOException {
+        int from = writePending ? Math.min(writePos, size) : 0;
+        int count = chunkOf(size);
+        if (buffers == null || buffers.length < count) {
+            ByteBuffer[] old = buffers;
+            buffers = new ByteBuffer[chunks.length];
+            if (old != null) {
+                System.arraycopy(old, 0, buffers, 0, old.length);
+            }
+        }
+        int chunkSize = mask + 1;
+        for (int i = 0; i < count; i++) {
+            ByteBuffer buffer = buffers[i];
+            if (buffer == null) {
+                buffers[i] = buffer = ByteBuffer.wrap(chunks[i]);
+            }
+            buffer.clear();
+            buffer.limit(Math.min(chunkSize, size - (i << shift)));
+        }
+        int first = from >>> shift;
+        if (first < count) {
+            buffers[first].position(from & mask);
+        }
+        long written = 0;
+        while (from + written < size) {
+            long n = channel.write(buffers, first, count - first);
+            if (n <= 0) break;
+            written += n;
+            while (first < count && !buffers[first].hasRemaining()) {
+                first++;
+            }
+        }
+        writePos = (int) (from + written);
+        writePending = writePos < size;
+        return written;
+    }
+
+    /**
+     * 上一次{@link SegmentedByteArrayList#writeTo(GatheringByteChannel)}是否还有数据没有写出,reset和clear后为false
+     */
+    public boolean isWritePending() {
+        return writePending;
+    }
+
+    public byte[] toArray() {
+        byte[] rst = new byte[size];
+        get(0, rst, 0, size);
+        return rst;
+    }
+
+    /**
+     * 将size增加length并返回增加前的size,这length个字节跨块时返回-1,由调用者通过setXxxAt写入
+     */
+    private int append(int length) {
+        int index = size;
+        ensureCapacityInternal(index + length);
+        size += length;
+        return contains(index, length) ? index : -1;
+    }
+
+    /**
+     * 将s编码到encoded中
+     *
+     * @return 编码后的长度
+     */
+    private int encode(StringEncoder encoder, String s, int maxLength) {
+        if (encoded == null || encoded.length < maxLength) {
+            encoded = new byte[Math.max(maxLength, 256)];
+        }
+        return encoder.encode(s, encoded, 0);
+    }
+
+    private boolean contains(int index, int length) {
+        return (index & mask) + length <= mask + 1;
+    }
+
+    private void copyIn(int index, byte[] src, int offset, int length) {
+        while (length > 0) {
+            int inChunk = index & mask;
+            int n = Math.min(length, mask + 1 - inChunk);
+            System.arraycopy(src, offset, chunks[index >>> shift], inChunk, n);
+            index += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    /**
+     * 容纳length个字节需要的块的数量
+     */
+    private int chunkOf(int length) {
+        return (int) (((long) length + mask) >>> shift);
+    }
+
+    private void checkRange(int index, int length) {
+        if (index < 0 || length < 0 || index > size - length)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Length: " + length + ", Size: " + size);
+    }
+
+    private void ensureCapacityInternal(int minCapacity) {
+        if (minCapacity < 0)
+            throw new OutOfMemoryError();
+
+        int count = chunkOf(minCapacity);
+        if (count > chunkCount) {
+            if (count > chunks.length) {
+                chunks = Arrays.copyOf(chunks, Math.max(count, chunks.length << 1));
+            }
+            int chunkSize = mask + 1;
+            for (int i = chunkCount; i < count; i++) {
+                chunks[i] = new byte[chunkSize];
+            }
+            chunkCount = count;
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(size * 3);
+        int chunkSize = mask + 1;
+        try {
+            for (int index = 0; index < size; index += chunkSize) {
+                HexCodec.encode(chunks[index >>> shift], 0, Math.min(chunkSize, size - index), ' ', sb);
+            }
+        } catch (IOException ignored) {
+        }
+        return sb.toString();
+    }
+}
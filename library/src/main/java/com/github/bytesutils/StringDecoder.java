@@ -0,0 +1,171 @@
+package com.github.bytesutils;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 将byte数组中的一段直接解码为字符串
+ * <p>
+ * 静态方法{@link StringDecoder#decode(byte[], int, int, Charset)}对ISO-8859-1以及内容全部为ASCII的US-ASCII和UTF-8
+ * 不经过CharsetDecoder直接创建String,其他情况使用{@link String#String(byte[], int, int, Charset)};
+ * 通过{@link StringDecoder#forName(String)}查找的Charset会被缓存,不需要每次都按名字查找.
+ * <p>
+ * 对象方法{@link StringDecoder#decode(byte[], int, int, StringBuilder)}将解码的结果追加到传入的StringBuilder中,
+ * 复用CharsetDecoder和字符缓冲区,稳定运行后解码不会创建新的对象;非线程安全
+ */
+public class StringDecoder {
+
+    private static final ConcurrentHashMap<String, Charset> CHARSETS = new ConcurrentHashMap<>();
+    static final Charset US_ASCII = Charset.forName("US-ASCII");
+    static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+    /**
+     * 默认使用的GBK字符集
+     */
+    static final Charset GBK = forName("GBK");
+
+    /**
+     * 字符集的种类,{@link StringEncoder}同样使用
+     */
+    static final int OTHER = 0;
+    static final int ASCII = 1;
+    static final int LATIN1 = 2;
+    static final int UTF8 = 3;
+
+    private final Charset charset;
+    private final int kind;
+    private CharsetDecoder decoder;
+    private CharBuffer chars;
+    /**
+     * 最近一次解码的数组以及包装它的ByteBuffer,解码同一个数组时复用
+     */
+    private byte[] wrapped;
+    private ByteBuffer bytes;
+
+    public StringDecoder(Charset charset) {
+        this.charset = charset;
+        kind = kindOf(charset);
+    }
+
+    /**
+     * @throws UnsupportedCharsetException 不支持该字符集时
+     */
+    public StringDecoder(String charsetName) {
+        this(Charset.forName(charsetName));
+    }
+
+    public Charset charset() {
+        return charset;
+    }
+
+    /**
+     * 将src中从offset开始的length个字节解码后追加到dst中,无法解码的字节替换为默认的替换字符
+     *
+     * @return dst
+     */
+    public StringBuilder decode(byte[] src, int offset, int length, StringBuilder dst) {
+        int end = offset + length;
+        if (kind == LATIN1) {
+            dst.ensureCapacity(dst.length() + length);
+            for (int i = offset; i < end; i++) dst.append((char) (src[i] & 0xff));
+            return dst;
+        }
+        int i = offset;
+        if (kind != OTHER) {
+            dst.ensureCapacity(dst.length() + length);
+            while (i < end && src[i] >= 0) dst.append((char) src[i++]);
+            if (i == end) return dst;
+        }
+        if (src != wrapped) {
+            wrapped = src;
+            bytes = ByteBuffer.wrap(src);
+        }
+        bytes.limit(end);
+        bytes.position(i);
+        return decode(bytes, dst);
+    }
+
+    /**
+     * 将in中剩余的数据解码后追加到dst中,之后in的position移动到limit
+     *
+     * @return dst
+     */
+    public StringBuilder decode(ByteBuffer in, StringBuilder dst) {
+        if (decoder == null) {
+            decoder = charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            chars = CharBuffer.allocate(256);
+        }
+        decoder.reset();
+        CoderResult result;
+        do {
+            result = decoder.decode(in, chars, true);
+            drain(dst);
+        } while (result.isOverflow());
+        do {
+            result = decoder.flush(chars);
+            drain(dst);
+        } while (result.isOverflow());
+        return dst;
+    }
+
+    private void drain(StringBuilder dst) {
+        chars.flip();
+        dst.append(chars.array(), chars.arrayOffset(), chars.remaining());
+        chars.clear();
+    }
+
+    /**
+     * 将src中从offset开始的length个字节使用charset解码为字符串
+     */
+    @SuppressWarnings("deprecation")
+    public static String decode(byte[] src, int offset, int length, Charset charset) {
+        int kind = kindOf(charset);
+        if (kind == LATIN1 || kind != OTHER && isAscii(src, offset, length)) {
+            return new String(src, 0, offset, length);
+        }
+        return new String(src, offset, length, charset);
+    }
+
+    /**
+     * 带缓存的{@link Charset#forName(String)},字符集名字不合法或者不支持时返回null
+     */
+    public static Charset forName(String charsetName) {
+        if (charsetName == null || charsetName.length() == 0) return null;
+        Charset charset = CHARSETS.get(charsetName);
+        if (charset == null) {
+            try {
+                charset = Charset.forName(charsetName);
+            } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+                return null;
+            }
+            CHARSETS.put(charsetName, charset);
+        }
+        return charset;
+    }
+
+    private static boolean isAscii(byte[] src, int offset, int length) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            if (src[i] < 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * US-ASCII、ISO-8859-1以及UTF-8可以逐个字节直接处理,其他字符集返回OTHER
+     */
+    static int kindOf(Charset charset) {
+        if (UTF_8.equals(charset)) return UTF8;
+        if (ISO_8859_1.equals(charset)) return LATIN1;
+        if (US_ASCII.equals(charset)) return ASCII;
+        return OTHER;
+    }
+}
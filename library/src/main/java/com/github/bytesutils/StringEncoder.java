@@ -0,0 +1,208 @@
+package com.github.bytesutils;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * 将字符串直接编码到byte数组中,与{@link StringDecoder}对应
+ * <p>
+ * 对US-ASCII、ISO-8859-1以及UTF-8不经过CharsetEncoder逐个字符直接写入,其他字符集复用同一个CharsetEncoder和字符缓冲区,
+ * 稳定运行后编码不会创建新的数组;无法编码的字符与{@link String#getBytes(Charset)}一样替换为'?'.非线程安全,
+ * {@link ByteArrayList}、{@link DirectByteArrayList}和{@link SegmentedByteArrayList}通过{@link StringEncoder#get(Charset)}使用每个线程共享的编码器
+ */
+public class StringEncoder {
+
+    /**
+     * US-ASCII、ISO-8859-1以及UTF-8的编码器,不保存状态,所有线程共享
+     */
+    private static final StringEncoder[] DIRECT = {
+            null,
+            new StringEncoder(StringDecoder.US_ASCII),
+            new StringEncoder(StringDecoder.ISO_8859_1),
+            new StringEncoder(StringDecoder.UTF_8)
+    };
+    /**
+     * 每个线程最多缓存的其他字符集的编码器的数量
+     */
+    private static final int CACHE_SIZE = 4;
+    private static final ThreadLocal<StringEncoder[]> CACHE = new ThreadLocal<StringEncoder[]>() {
+        @Override
+        protected StringEncoder[] initialValue() {
+            return new StringEncoder[CACHE_SIZE];
+        }
+    };
+
+    private final Charset charset;
+    private final int kind;
+    private CharsetEncoder encoder;
+    private CharBuffer chars;
+    /**
+     * 每个字符最多的字节数以及替换字节的长度,CharsetEncoder#replacement()每次都会拷贝数组
+     */
+    private float maxBytesPerChar;
+    private int replacementLength;
+    /**
+     * 编码结果先写入这里再拷贝到目标数组,不持有调用方的数组,线程缓存的编码器不会让已经不用的数组无法回收
+     */
+    private ByteBuffer bytes;
+
+    public StringEncoder(Charset charset) {
+        this.charset = charset;
+        kind = StringDecoder.kindOf(charset);
+    }
+
+    /**
+     * @throws java.nio.charset.UnsupportedCharsetException 不支持该字符集时
+     */
+    public StringEncoder(String charsetName) {
+        this(Charset.forName(charsetName));
+    }
+
+    public Charset charset() {
+        return charset;
+    }
+
+    /**
+     * 获取当前线程共享的该字符集的StringEncoder,只能在当前线程中使用.
+     * US-ASCII、ISO-8859-1以及UTF-8直接返回共享的编码器,其他字符集每个线程按字符集缓存最近使用的{@value #CACHE_SIZE}个
+     */
+    static StringEncoder get(Charset charset) {
+        int kind = StringDecoder.kindOf(charset);
+        if (kind != StringDecoder.OTHER) {
+            return DIRECT[kind];
+        }
+        StringEncoder[] cache = CACHE.get();
+        int i = 0;
+        for (; i < cache.length - 1; i++) {
+            StringEncoder encoder = cache[i];
+            if (encoder == null || encoder.charset.equals(charset)) break;
+        }
+        StringEncoder encoder = cache[i];
+        if (encoder == null || !encoder.charset.equals(charset)) {
+            encoder = new StringEncoder(charset);
+        }
+        // 最近使用的放在最前面,缓存满时丢弃最后一个
+        System.arraycopy(cache, 0, cache, 1, i);
+        cache[0] = encoder;
+        return encoder;
+    }
+
+    /**
+     * 编码s最多需要的字节数,{@link StringEncoder#encode(String, byte[], int)}之前dst中至少要有这么多的空间
+     */
+    public int maxLength(String s) {
+        int length = s.length();
+        switch (kind) {
+            case StringDecoder.ASCII:
+            case StringDecoder.LATIN1:
+                return length;
+            case StringDecoder.UTF8:
+                return length * 3;
+            default:
+                if (encoder == null) newEncoder();
+                return (int) Math.ceil(length * (double) maxBytesPerChar) + replacementLength;
+        }
+    }
+
+    /**
+     * 将s编码后写入dst中从offset开始的位置
+     *
+     * @return 写入后的位置
+     */
+    public int encode(String s, byte[] dst, int offset) {
+        switch (kind) {
+            case StringDecoder.ASCII:
+                return encodeSingle(s, dst, offset, 0x7f);
+            case StringDecoder.LATIN1:
+                return encodeSingle(s, dst, offset, 0xff);
+            case StringDecoder.UTF8:
+                return encodeUtf8(s, dst, offset);
+            default:
+                return encodeOther(s, dst, offset);
+        }
+    }
+
+    private static int encodeSingle(String s, byte[] dst, int offset, int max) {
+        for (int i = 0, length = s.length(); i < length; i++) {
+            char c = s.charAt(i);
+            if (c <= max) {
+                dst[offset++] = (byte) c;
+            } else {
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    i++;
+                }
+                dst[offset++] = '?';
+            }
+        }
+        return offset;
+    }
+
+    private static int encodeUtf8(String s, byte[] dst, int offset) {
+        int i = 0;
+        int length = s.length();
+        for (char c; i < length && (c = s.charAt(i)) < 0x80; i++) {
+            dst[offset++] = (byte) c;
+        }
+        for (; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                dst[offset++] = (byte) c;
+            } else if (c < 0x800) {
+                dst[offset++] = (byte) (0xc0 | c >> 6);
+                dst[offset++] = (byte) (0x80 | c & 0x3f);
+            } else if (Character.isSurrogate(c)) {
+                char low;
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(low = s.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, low);
+                    dst[offset++] = (byte) (0xf0 | cp >> 18);
+                    dst[offset++] = (byte) (0x80 | cp >> 12 & 0x3f);
+                    dst[offset++] = (byte) (0x80 | cp >> 6 & 0x3f);
+                    dst[offset++] = (byte) (0x80 | cp & 0x3f);
+                    i++;
+                } else {
+                    dst[offset++] = '?';
+                }
+            } else {
+                dst[offset++] = (byte) (0xe0 | c >> 12);
+                dst[offset++] = (byte) (0x80 | c >> 6 & 0x3f);
+                dst[offset++] = (byte) (0x80 | c & 0x3f);
+            }
+        }
+        return offset;
+    }
+
+    private int encodeOther(String s, byte[] dst, int offset) {
+        if (encoder == null) newEncoder();
+        int length = s.length();
+        if (chars.capacity() < length) {
+            chars = CharBuffer.allocate(Math.max(length, chars.capacity() << 1));
+        }
+        chars.clear();
+        s.getChars(0, length, chars.array(), 0);
+        chars.limit(length);
+        int max = maxLength(s);
+        if (bytes.capacity() < max) {
+            bytes = ByteBuffer.allocate(Math.max(max, bytes.capacity() << 1));
+        }
+        bytes.clear();
+        encoder.reset();
+        encoder.encode(chars, bytes, true);
+        encoder.flush(bytes);
+        int written = bytes.position();
+        System.arraycopy(bytes.array(), 0, dst, offset, written);
+        return offset + written;
+    }
+
+    private void newEncoder() {
+        encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        maxBytesPerChar = encoder.maxBytesPerChar();
+        replacementLength = encoder.replacement().length;
+        chars = CharBuffer.allocate(256);
+        bytes = ByteBuffer.allocate(256);
+    }
+}
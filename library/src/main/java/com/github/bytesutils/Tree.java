@@ -1,8 +1,10 @@
 package com.github.bytesutils;
 
-import java.io.UnsupportedEncodingException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
 import java.util.Arrays;
-import java.util.HashMap;
 
 /**
  * 可以有无限分支的树,提供了方便的向树中设置各种数据 或者 从树中获取各种数据 的方法
@@ -17,128 +19,123 @@ import java.util.HashMap;
  * 所以当设置指定的位置的数据与描述中的位置不匹配时不会进行设置,对应的位置会为null
  * 所以当获取指定的位置的数据与描述中的位置不匹配时会默认返回0
  * 也不再需要关心大小端
+ * <p>
+ * 每个字段按照描述中的索引直接存放在数组中:数值类型存放在{@link Tree#numbers}中,
+ * 字符串、原始数据和子节点存放在{@link Tree#refs}中,设置和获取时只需要一次数组访问
  */
 public class Tree {
     /**
-     * 节点 根据des中的顺序存储着对应的数据
+     * 数值类型字段的值,根据des中的顺序存储,float和double存放的是其原始的位
+     * 字符串和原始数据字段存放的是{@link Tree#refs}中byte数组的有效长度,复用的数组可能比有效长度长
+     */
+    long[] numbers;
+    /**
+     * 字符串(不包含长度前缀的编码后的内容)、原始数据、数组和子节点字段的值,根据des中的顺序存储
+     */
+    Object[] refs;
+    /**
+     * 调用{@link Tree#reset()}后保留下来的字符串、原始数据和数组的存储,
+     * 下次解析时字符串和原始数据容量足够即可复用,数组需要类型和长度都相同
+     */
+    private Object[] spares;
+    /**
+     * 通过{@link Tree#setBytes(int, byte[])}等方法传入的数组由调用者持有,reset时不会被保留复用
      */
-    private HashMap<Integer, Tree> node = new HashMap<>();
+    private boolean[] foreign;
     /**
-     * 节点的描述 表示节点{@link Tree#node}下存储的是哪些些数据
+     * 节点的描述 表示节点下存储的是哪些些数据
      */
     private DataDescribe[] des;
     /**
-     * 代表当前节点下的所有内容的数据
+     * 根据节点的描述编译出的布局 解析和构建时按照其中的读写器依次处理每个字段
+     */
+    CompiledSchema schema;
+    /**
+     * {@link Tree#parserByteArray(byte[])}复用的reader
+     */
+    private BytesReader reader;
+    /**
+     * 是否已经归还到{@link TreePool}中,用于防止重复归还
+     */
+    boolean recycled;
+    /**
+     * 使用{@link Tree#parserByteArrayView(byte[], int, int)}解析时引用的原始数据,不为null时各字段直接从中读取
+     */
+    byte[] source;
+    /**
+     * 各字段在{@link Tree#source}中的位置,数据不足时为-1
+     */
+    int[] offsets;
+    /**
+     * 各字段在{@link Tree#source}中占用的长度,可变数据类型包含长度前缀
+     * 延迟解析时只记录可变长度字段的长度
+     */
+    int[] lengths;
+    /**
+     * 是否是使用{@link Tree#parserByteArrayLazy(byte[], int, int, TreeProjection)}延迟解析的
+     */
+    boolean lazy;
+    /**
+     * 延迟解析时{@link Tree#source}中可用数据的结束位置
      */
-    private byte[] data;
+    int sourceEnd;
+    /**
+     * 延迟解析时每一段的起始位置,段的划分见{@link CompiledSchema#variableIndexes},数据不足时为-1
+     */
+    int[] segmentStarts;
+    /**
+     * 延迟解析时需要获取的字段,为null时获取所有字段
+     */
+    TreeProjection projection;
 
     /**
      * 根据节点的描述初始化本类的描述
      */
     public Tree(DataDescribe[] des) {
-        this.des = des;
+        this(new CompiledSchema(des));
+    }
+
+    /**
+     * 使用已经编译好的布局初始化,同一描述的多个Tree可以共享同一个布局
+     */
+    public Tree(CompiledSchema schema) {
+        this.schema = schema;
+        this.des = schema.des;
+        numbers = new long[des.length];
+        refs = new Object[des.length];
     }
 
     /**
      * 会将传入的多个子Tree依次放入 des描述的指定位置
      */
     public Tree(DataDescribe[] des, Tree... child) {
-        this.des = des;
+        this(new CompiledSchema(des), child);
+    }
+
+    /**
+     * 会将传入的多个子Tree依次放入 布局描述的指定位置
+     */
+    public Tree(CompiledSchema schema, Tree... child) {
+        this(schema);
         int index = -1;
         for (Tree tree : child) {
             for (int i = index + 1; i < des.length; i++) {
                 if (des[i].type == DataType.TYPE_TREE) {
                     index = i;
-                    node.put(index, tree);
+                    refs[index] = tree;
                     break;
                 }
             }
         }
     }
 
-    private Tree(byte b) {
-        data = new byte[]{b};
-    }
-
-    private Tree(byte[] src) {
-        data = src;
-    }
-
-    private Tree(short val, boolean isU8, boolean le) {
-        if (isU8) {
-            data = new byte[]{(byte) (val & 0xff)};
-        } else {
-            data = le ? EndianUtils.toLe(val) : EndianUtils.toBe(val);
-        }
-    }
-
-    private Tree(int val, boolean isU16, boolean le) {
-        if (isU16) {
-            data = le ? EndianUtils.u16ToLe(val) : EndianUtils.u16ToBe(val);
-        } else {
-            data = le ? EndianUtils.toLe(val) : EndianUtils.toBe(val);
-        }
-    }
-
-    private Tree(long val, boolean isU32, boolean le) {
-        if (isU32) {
-            data = le ? EndianUtils.u32ToLe(val) : EndianUtils.u32ToBe(val);
-        } else {
-            data = le ? EndianUtils.toLe(val) : EndianUtils.toBe(val);
-        }
-    }
-
-    private Tree(float val, boolean le) {
-        data = le ? EndianUtils.toLe(val) : EndianUtils.toBe(val);
-    }
-
-    private Tree(double val, boolean le) {
-        data = le ? EndianUtils.toLe(val) : EndianUtils.toBe(val);
-    }
-
-    private Tree(int type, String val, String charSet) {
-        try {
-            byte[] src = val.getBytes(charSet);
-            ByteArrayList list = new ByteArrayList();
-            switch (type) {
-                case DataType.TYPE_MUABLE0:
-                    if (src.length <= 255) {
-                        list.add((byte) src.length);
-                        list.add(src);
-                    }
-                    break;
-                case DataType.TYPE_MUABLE1:
-                    if (src.length <= 65535) {
-                        list.add((short) src.length, true);
-                        list.add(src);
-                    }
-                    break;
-                case DataType.TYPE_MUABLE2:
-                    list.add(src.length, true);
-                    list.add(src);
-                    break;
-                case DataType.TYPE_MUABLE1_BE:
-                    if (src.length <= 65535) {
-                        list.add((short) src.length, false);
-                        list.add(src);
-                    }
-                    break;
-                case DataType.TYPE_MUABLE2_BE:
-                    list.add(src.length, false);
-                    list.add(src);
-                    break;
-            }
-            data = list.toArray();
-        } catch (UnsupportedEncodingException ignored) {
-        }
-    }
-
     /**
      * 设置有符号8位到本节点的指定位置
      */
     public Tree setS8(int index, byte val) {
         if (index < des.length && des[index].type == DataType.TYPE_S8) {
-            node.put(index, new Tree(val));
+            detach();
+            numbers[index] = val;
         }
         return this;
     }
@@ -148,7 +145,8 @@ public class Tree {
      */
     public Tree setU8(int index, short val) {
         if (index < des.length && des[index].type == DataType.TYPE_U8) {
-            node.put(index, new Tree(val, true, des[index].isLe));
+            detach();
+            numbers[index] = val & 0xff;
         }
         return this;
     }
@@ -158,7 +156,8 @@ public class Tree {
      */
     public Tree setS16(int index, short val) {
         if (index < des.length && des[index].type == DataType.TYPE_S16) {
-            node.put(index, new Tree(val, false, des[index].isLe));
+            detach();
+            numbers[index] = val;
         }
         return this;
     }
@@ -168,7 +167,8 @@ public class Tree {
      */
     public Tree setU16(int index, int val) {
         if (index < des.length && des[index].type == DataType.TYPE_U16) {
-            node.put(index, new Tree(val, true, des[index].isLe));
+            detach();
+            numbers[index] = val & 0xffff;
         }
         return this;
     }
@@ -178,7 +178,8 @@ public class Tree {
      */
     public Tree setS32(int index, int val) {
         if (index < des.length && des[index].type == DataType.TYPE_S32) {
-            node.put(index, new Tree(val, false, des[index].isLe));
+            detach();
+            numbers[index] = val;
         }
         return this;
     }
@@ -188,7 +189,8 @@ public class Tree {
      */
     public Tree setU32(int index, long val) {
         if (index < des.length && des[index].type == DataType.TYPE_U32) {
-            node.put(index, new Tree(val, true, des[index].isLe));
+            detach();
+            numbers[index] = val & 0xffffffffL;
         }
         return this;
     }
@@ -198,7 +200,8 @@ public class Tree {
      */
     public Tree setS64(int index, long val) {
         if (index < des.length && des[index].type == DataType.TYPE_S64) {
-            node.put(index, new Tree(val, false, des[index].isLe));
+            detach();
+            numbers[index] = val;
         }
         return this;
     }
@@ -208,7 +211,8 @@ public class Tree {
      */
     public Tree setFloat(int index, float val) {
         if (index < des.length && des[index].type == DataType.TYPE_FLOAT) {
-            node.put(index, new Tree(val, des[index].isLe));
+            detach();
+            numbers[index] = Float.floatToRawIntBits(val);
         }
         return this;
     }
@@ -218,40 +222,98 @@ public class Tree {
      */
     public Tree setDouble(int index, double val) {
         if (index < des.length && des[index].type == DataType.TYPE_DOUBLE) {
-            node.put(index, new Tree(val, des[index].isLe));
+            detach();
+            numbers[index] = Double.doubleToRawLongBits(val);
+        }
+        return this;
+    }
+
+    /**
+     * 设置无符号32位的变长整数到本节点的指定位置
+     */
+    public Tree setVarU32(int index, long val) {
+        if (index < des.length && des[index].type == DataType.TYPE_VAR_U32) {
+            detach();
+            numbers[index] = val & 0xffffffffL;
+        }
+        return this;
+    }
+
+    /**
+     * 设置有符号32位的ZigZag变长整数到本节点的指定位置
+     */
+    public Tree setVarS32(int index, int val) {
+        if (index < des.length && des[index].type == DataType.TYPE_VAR_S32) {
+            detach();
+            numbers[index] = val;
+        }
+        return this;
+    }
+
+    /**
+     * 设置无符号64位的变长整数到本节点的指定位置,超过63位的值使用负数表示
+     */
+    public Tree setVarU64(int index, long val) {
+        if (index < des.length && des[index].type == DataType.TYPE_VAR_U64) {
+            detach();
+            numbers[index] = val;
+        }
+        return this;
+    }
+
+    /**
+     * 设置有符号64位的ZigZag变长整数到本节点的指定位置
+     */
+    public Tree setVarS64(int index, long val) {
+        if (index < des.length && des[index].type == DataType.TYPE_VAR_S64) {
+            detach();
+            numbers[index] = val;
         }
         return this;
     }
 
     /**
      * 设置byte数组到本节点的指定位置
+     * 可变数据类型存放的是不包含长度前缀的内容,长度超出长度前缀所能表示的范围时,该位置会被清空
      */
     public Tree setBytes(int index, byte[] val) {
         if (index < des.length && des[index].type == DataType.TYPE_RAW) {
-            node.put(index, new Tree(val));
+            detach();
+            storeBytes(index, val, val == null ? 0 : val.length);
+            markForeign(index);
+        } else if (isString(index)) {
+            detach();
+            storeBytes(index, val == null || fitsPrefix(index, val.length) ? val : null, val == null ? 0 : val.length);
+            markForeign(index);
         }
         return this;
     }
 
     /**
      * 设置字符串数据到本节点的指定位置
+     * 编码后的长度超出长度前缀所能表示的范围或字符集不支持时,该位置会被清空
      */
-    public Tree setString(int index, String val, String charSet) {
-        if (index < des.length && (des[index].type == DataType.TYPE_MUABLE0 ||
-                des[index].type == DataType.TYPE_MUABLE1 ||
-                des[index].type == DataType.TYPE_MUABLE2 ||
-                des[index].type == DataType.TYPE_MUABLE1_BE ||
-                des[index].type == DataType.TYPE_MUABLE2_BE)) {
-            node.put(index, new Tree(des[index].type, val, charSet));
+    public Tree setString(int index, String val, Charset charset) {
+        if (isString(index)) {
+            detach();
+            byte[] src = charset == null ? null : val.getBytes(charset);
+            storeBytes(index, src != null && fitsPrefix(index, src.length) ? src : null, src == null ? 0 : src.length);
         }
         return this;
     }
 
+    /**
+     * 见{@link Tree#setString(int, String, Charset)},字符集通过{@link StringDecoder#forName(String)}查找
+     */
+    public Tree setString(int index, String val, String charSet) {
+        return setString(index, val, StringDecoder.forName(charSet));
+    }
+
     /**
      * 设置字符串数据到本节点的指定位置
      */
     public Tree setString(int index, String val) {
-        return setString(index, val, "GBK");
+        return setString(index, val, StringDecoder.GBK);
     }
 
     /**
@@ -259,7 +321,7 @@ public class Tree {
      */
     public Tree setChildTree(int index, Tree val) {
         if (index < des.length && des[index].type == DataType.TYPE_TREE) {
-            node.put(index, val);
+            refs[index] = val;
         }
         return this;
     }
@@ -268,15 +330,98 @@ public class Tree {
         return setChildTree(index, new Tree(des));
     }
 
+    /**
+     * 设置无符号8位数组到本节点的指定位置
+     * 固定个数的数组在构建时元素过多会被截断,不足时补0;
+     * 可变个数的数组元素个数超出个数前缀所能表示的范围时,该位置会被清空
+     */
+    public Tree setU8Array(int index, short[] val) {
+        return setArray(index, DataType.TYPE_U8, val);
+    }
+
+    /**
+     * 设置有符号8位数组到本节点的指定位置
+     */
+    public Tree setS8Array(int index, byte[] val) {
+        return setArray(index, DataType.TYPE_S8, val);
+    }
+
+    /**
+     * 设置无符号16位数组到本节点的指定位置
+     */
+    public Tree setU16Array(int index, int[] val) {
+        return setArray(index, DataType.TYPE_U16, val);
+    }
+
+    /**
+     * 设置有符号16位数组到本节点的指定位置
+     */
+    public Tree setS16Array(int index, short[] val) {
+        return setArray(index, DataType.TYPE_S16, val);
+    }
+
+    /**
+     * 设置无符号32位数组到本节点的指定位置
+     */
+    public Tree setU32Array(int index, long[] val) {
+        return setArray(index, DataType.TYPE_U32, val);
+    }
+
+    /**
+     * 设置有符号32位数组到本节点的指定位置
+     */
+    public Tree setS32Array(int index, int[] val) {
+        return setArray(index, DataType.TYPE_S32, val);
+    }
+
+    /**
+     * 设置有符号64位数组到本节点的指定位置
+     */
+    public Tree setS64Array(int index, long[] val) {
+        return setArray(index, DataType.TYPE_S64, val);
+    }
+
+    /**
+     * 设置float数组到本节点的指定位置
+     */
+    public Tree setFloatArray(int index, float[] val) {
+        return setArray(index, DataType.TYPE_FLOAT, val);
+    }
+
+    /**
+     * 设置double数组到本节点的指定位置
+     */
+    public Tree setDoubleArray(int index, double[] val) {
+        return setArray(index, DataType.TYPE_DOUBLE, val);
+    }
+
+    /**
+     * 设置子节点数组到本节点的指定位置,每个子节点的结构都需要与描述中的{@link DataDescribe#elementDes}一致
+     */
+    public Tree setChildTreeArray(int index, Tree[] val) {
+        return setArray(index, DataType.TYPE_TREE, val);
+    }
+
+    private Tree setArray(int index, int elementType, Object val) {
+        if (isArrayOf(index, elementType)) {
+            detach();
+            FieldCodec.Array codec = (FieldCodec.Array) schema.codecs[index];
+            refs[index] = val == null || codec.countOf(val) <= codec.maxCount() ? val : null;
+            markForeign(index);
+        }
+        return this;
+    }
+
     /**
      * 从本节点中指定位置获取无符号8位
      */
     public short getU8(int index) {
         if (index < des.length && des[index].type == DataType.TYPE_U8) {
-            Tree field = node.get(index);
-            if (field != null && field.data != null) {
-                return field.data[0] < 0 ? (short) (256 + field.data[0]) : (short) (field.data[0]);
+            if (source != null) {
+                int offset = locate(index);
+                return offset < 0 ? 0 : (short) (source[offset] & 0xff);
             }
+            return (short) numbers[index];
         }
         return 0;
     }
@@ -286,10 +431,11 @@ public class Tree {
      */
     public byte getS8(int index) {
         if (index < des.length && des[index].type == DataType.TYPE_S8) {
-            Tree field = node.get(index);
-            if (field != null && field.data != null) {
-                return field.data[0];
+            if (source != null) {
+                int offset = locate(index);
+                return offset < 0 ? 0 : source[offset];
             }
+            return (byte) numbers[index];
         }
         return 0;
     }
@@ -299,10 +445,12 @@ public class Tree {
      */
     public int getU16(int index) {
         if (index < des.length && des[index].type == DataType.TYPE_U16) {
-            Tree field = node.get(index);
-            if (field != null && field.data != null) {
-                return des[index].isLe ? EndianUtils.le2U16(field.data) : EndianUtils.be2U16(field.data);
+            if (source != null) {
+                int offset = locate(index);
+                if (offset < 0) return 0;
+                return des[index].isLe ? EndianUtils.le2U16(source, offset) : EndianUtils.be2U16(source, offset);
             }
+            return (int) numbers[index];
         }
         return 0;
     }
@@ -312,10 +460,12 @@ public class Tree {
      */
     public short getS16(int index) {
         if (index < des.length && des[index].type == DataType.TYPE_S16) {
-            Tree field = node.get(index);
-            if (field != null && field.data != null) {
-                return des[index].isLe ? EndianUtils.le2Short(field.data) : EndianUtils.be2Short(field.data);
+            if (source != null) {
+                int offset = locate(index);
+                if (offset < 0) return 0;
+                return des[index].isLe ? EndianUtils.le2Short(source, offset) : EndianUtils.be2Short(source, offset);
             }
+            return (short) numbers[index];
         }
         return 0;
     }
@@ -325,10 +475,12 @@ public class Tree {
      */
     public long getU32(int index) {
         if (index < des.length && des[index].type == DataType.TYPE_U32) {
-            Tree field = node.get(index);
-            if (field != null && field.data != null) {
-                return des[index].isLe ? EndianUtils.le2U32(field.data) : EndianUtils.be2U32(field.data);
+            if (source != null) {
+                int offset = locate(index);
+                if (offset < 0) return 0;
+                return des[index].isLe ? EndianUtils.le2U32(source, offset) : EndianUtils.be2U32(source, offset);
             }
+            return numbers[index];
         }
         return 0;
     }
@@ -338,10 +490,12 @@ public class Tree {
      */
     public int getS32(int index) {
         if (index < des.length && des[index].type == DataType.TYPE_S32) {
-            Tree field = node.get(index);
-            if (field != null && field.data != null) {
-                return des[index].isLe ? EndianUtils.le2Int(field.data) : EndianUtils.be2Int(field.data);
+            if (source != null) {
+                int offset = locate(index);
+                if (offset < 0) return 0;
+                return des[index].isLe ? EndianUtils.le2Int(source, offset) : EndianUtils.be2Int(source, offset);
             }
+            return (int) numbers[index];
         }
         return 0;
     }
@@ -351,10 +505,12 @@ public class Tree {
      */
     public long getS64(int index) {
         if (index < des.length && des[index].type == DataType.TYPE_S64) {
-            Tree field = node.get(index);
-            if (field != null && field.data != null) {
-                return des[index].isLe ? EndianUtils.le2Long(field.data) : EndianUtils.be2Long(field.data);
+            if (source != null) {
+                int offset = locate(index);
+                if (offset < 0) return 0;
+                return des[index].isLe ? EndianUtils.le2Long(source, offset) : EndianUtils.be2Long(source, offset);
             }
+            return numbers[index];
         }
         return 0;
     }
@@ -364,10 +520,12 @@ public class Tree {
      */
     public float getFloat(int index) {
         if (index < des.length && des[index].type == DataType.TYPE_FLOAT) {
-            Tree field = node.get(index);
-            if (field != null && field.data != null) {
-                return des[index].isLe ? EndianUtils.le2Float(field.data) : EndianUtils.be2Float(field.data);
+            if (source != null) {
+                int offset = locate(index);
+                if (offset < 0) return 0;
+                return des[index].isLe ? EndianUtils.le2Float(source, offset) : EndianUtils.be2Float(source, offset);
             }
+            return Float.intBitsToFloat((int) numbers[index]);
         }
         return 0;
     }
@@ -377,23 +535,81 @@ public class Tree {
      */
     public double getDouble(int index) {
         if (index < des.length && des[index].type == DataType.TYPE_DOUBLE) {
-            Tree field = node.get(index);
-            if (field != null && field.data != null) {
-                return des[index].isLe ? EndianUtils.le2Double(field.data) : EndianUtils.be2Double(field.data);
+            if (source != null) {
+                int offset = locate(index);
+                if (offset < 0) return 0;
+                return des[index].isLe ? EndianUtils.le2Double(source, offset) : EndianUtils.be2Double(source, offset);
             }
+            return Double.longBitsToDouble(numbers[index]);
+        }
+        return 0;
+    }
+
+    /**
+     * 从本节点中指定位置获取无符号32位的变长整数
+     */
+    public long getVarU32(int index) {
+        if (index < des.length && des[index].type == DataType.TYPE_VAR_U32) {
+            return source != null ? varintAt(index) : numbers[index];
+        }
+        return 0;
+    }
+
+    /**
+     * 从本节点中指定位置获取有符号32位的ZigZag变长整数
+     */
+    public int getVarS32(int index) {
+        if (index < des.length && des[index].type == DataType.TYPE_VAR_S32) {
+            return (int) (source != null ? varintAt(index) : numbers[index]);
+        }
+        return 0;
+    }
+
+    /**
+     * 从本节点中指定位置获取无符号64位的变长整数,超过63位的值为负数
+     */
+    public long getVarU64(int index) {
+        if (index < des.length && des[index].type == DataType.TYPE_VAR_U64) {
+            return source != null ? varintAt(index) : numbers[index];
+        }
+        return 0;
+    }
+
+    /**
+     * 从本节点中指定位置获取有符号64位的ZigZag变长整数
+     */
+    public long getVarS64(int index) {
+        if (index < des.length && des[index].type == DataType.TYPE_VAR_S64) {
+            return source != null ? varintAt(index) : numbers[index];
         }
         return 0;
     }
 
     /**
-     * 从本节点中指定位置获取byte数组
+     * 从原始数据中解码指定位置的变长整数
+     */
+    private long varintAt(int index) {
+        int offset = locate(index);
+        if (offset < 0) return 0;
+        return ((FieldCodec.VarInt) schema.codecs[index]).decode(Varint.readAt(source, offset));
+    }
+
+    /**
+     * 从本节点中指定位置获取byte数组,可变数据类型获取的是不包含长度前缀的内容
+     * 使用{@link Tree#parserByteArrayView(byte[])}解析时,或者解析时复用的数组比内容长时,会拷贝出一个新的数组
      */
     public byte[] getBytes(int index) {
-        if (index < des.length && des[index].type == DataType.TYPE_RAW) {
-            Tree field = node.get(index);
-            if (field != null) {
-                return field.data;
+        boolean isRaw = index < des.length && des[index].type == DataType.TYPE_RAW;
+        if (isRaw || isString(index)) {
+            if (source != null) {
+                int offset = locate(index);
+                if (offset < 0) return null;
+                int prefixLength = isRaw ? 0 : prefixLengthAt(index, offset);
+                return Arrays.copyOfRange(source, offset + prefixLength, offset + lengthOf(index));
             }
+            byte[] data = (byte[]) refs[index];
+            int length = bytesLength(index);
+            return data == null || data.length == length ? data : Arrays.copyOf(data, length);
         }
         return null;
     }
@@ -401,140 +617,412 @@ public class Tree {
     /**
      * 从本节点中指定位置使用指定字符集获取string数据
      */
-    public String getString(int index, String charSet) {
-        if (charSet != null && charSet.length() != 0) {
-            if (index < des.length && (des[index].type == DataType.TYPE_MUABLE0 ||
-                    des[index].type == DataType.TYPE_MUABLE1 ||
-                    des[index].type == DataType.TYPE_MUABLE2 ||
-                    des[index].type == DataType.TYPE_MUABLE1_BE ||
-                    des[index].type == DataType.TYPE_MUABLE2_BE)) {
-                Tree field = node.get(index);
-                if (field != null && field.data != null) {
-                    BytesReader reader = new BytesReader(field.data);
-                    switch (des[index].type) {
-                        case DataType.TYPE_MUABLE0:
-                            reader.getU8();
-                            break;
-                        case DataType.TYPE_MUABLE1:
-                            reader.getU16(true);
-                            break;
-                        case DataType.TYPE_MUABLE2:
-                            reader.getU32(true);
-                            break;
-                        case DataType.TYPE_MUABLE1_BE:
-                            reader.getU16(false);
-                            break;
-                        case DataType.TYPE_MUABLE2_BE:
-                            reader.getU32(false);
-                            break;
-                    }
-                    try {
-                        byte[] data = reader.getResidue();
-                        if (data != null) {
-                            return new String(data, charSet);
-                        }
-                    } catch (UnsupportedEncodingException ignored) {
-                    }
+    public String getString(int index, Charset charset) {
+        if (charset != null && isString(index)) {
+            if (source != null) {
+                int offset = locate(index);
+                int prefixLength = offset < 0 ? 0 : prefixLengthAt(index, offset);
+                if (offset >= 0 && lengthOf(index) > prefixLength) {
+                    return StringDecoder.decode(source, offset + prefixLength, lengthOf(index) - prefixLength, charset);
+                }
+            } else {
+                byte[] data = (byte[]) refs[index];
+                if (data != null && bytesLength(index) != 0) {
+                    return StringDecoder.decode(data, 0, bytesLength(index), charset);
                 }
             }
         }
         return null;
     }
 
+    /**
+     * 见{@link Tree#getString(int, Charset)},字符集通过{@link StringDecoder#forName(String)}查找
+     */
+    public String getString(int index, String charSet) {
+        return getString(index, StringDecoder.forName(charSet));
+    }
+
     /**
      * 从本节点中指定位置使用默认的GBK字符集获取string数据
      */
     public String getString(int index) {
-        return getString(index, "GBK");
+        return getString(index, StringDecoder.GBK);
+    }
+
+    /**
+     * 从本节点中指定位置获取string数据,解码的结果追加到dst中,复用decoder和dst时不会创建新的对象
+     *
+     * @return dst,该位置没有数据时不会追加任何内容
+     */
+    public StringBuilder getString(int index, StringDecoder decoder, StringBuilder dst) {
+        if (isString(index)) {
+            if (source != null) {
+                int offset = locate(index);
+                int prefixLength = offset < 0 ? 0 : prefixLengthAt(index, offset);
+                if (offset >= 0 && lengthOf(index) > prefixLength) {
+                    decoder.decode(source, offset + prefixLength, lengthOf(index) - prefixLength, dst);
+                }
+            } else {
+                byte[] data = (byte[]) refs[index];
+                if (data != null) {
+                    decoder.decode(data, 0, bytesLength(index), dst);
+                }
+            }
+        }
+        return dst;
+    }
+
+    private boolean isString(int index) {
+        return index < des.length && (des[index].type == DataType.TYPE_MUABLE0 ||
+                des[index].type == DataType.TYPE_MUABLE1 ||
+                des[index].type == DataType.TYPE_MUABLE2 ||
+                des[index].type == DataType.TYPE_MUABLE1_BE ||
+                des[index].type == DataType.TYPE_MUABLE2_BE ||
+                des[index].type == DataType.TYPE_VAR_MUABLE);
+    }
+
+    /**
+     * 长度为length的内容是否能用指定位置的长度前缀表示
+     */
+    private boolean fitsPrefix(int index, int length) {
+        switch (des[index].type) {
+            case DataType.TYPE_MUABLE0:
+                return length <= 255;
+            case DataType.TYPE_MUABLE1:
+            case DataType.TYPE_MUABLE1_BE:
+                return length <= 65535;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * 获取原始数据中指定位置的长度前缀占用的字节数
+     */
+    private int prefixLengthAt(int index, int offset) {
+        return ((FieldCodec.Prefixed) schema.codecs[index]).prefixLengthAt(source, offset);
     }
 
     /**
      * 从本节点中指定位置获取子节点
+     * 延迟解析时未包含在投影中的子节点会返回null
      */
     public Tree getChildTree(int index) {
-        return node.get(index);
+        if (index < des.length && des[index].type == DataType.TYPE_TREE && isChildParsed(index)) {
+            return (Tree) refs[index];
+        }
+        return null;
+    }
+
+    /**
+     * 从本节点中指定位置获取无符号8位数组
+     * 使用{@link Tree#parserByteArrayView(byte[])}解析时每次获取都会解码出一个新的数组
+     */
+    public short[] getU8Array(int index) {
+        return (short[]) getArray(index, DataType.TYPE_U8);
+    }
+
+    /**
+     * 从本节点中指定位置获取有符号8位数组
+     */
+    public byte[] getS8Array(int index) {
+        return (byte[]) getArray(index, DataType.TYPE_S8);
+    }
+
+    /**
+     * 从本节点中指定位置获取无符号16位数组
+     */
+    public int[] getU16Array(int index) {
+        return (int[]) getArray(index, DataType.TYPE_U16);
+    }
+
+    /**
+     * 从本节点中指定位置获取有符号16位数组
+     */
+    public short[] getS16Array(int index) {
+        return (short[]) getArray(index, DataType.TYPE_S16);
+    }
+
+    /**
+     * 从本节点中指定位置获取无符号32位数组
+     */
+    public long[] getU32Array(int index) {
+        return (long[]) getArray(index, DataType.TYPE_U32);
+    }
+
+    /**
+     * 从本节点中指定位置获取有符号32位数组
+     */
+    public int[] getS32Array(int index) {
+        return (int[]) getArray(index, DataType.TYPE_S32);
+    }
+
+    /**
+     * 从本节点中指定位置获取有符号64位数组
+     */
+    public long[] getS64Array(int index) {
+        return (long[]) getArray(index, DataType.TYPE_S64);
+    }
+
+    /**
+     * 从本节点中指定位置获取float数组
+     */
+    public float[] getFloatArray(int index) {
+        return (float[]) getArray(index, DataType.TYPE_FLOAT);
+    }
+
+    /**
+     * 从本节点中指定位置获取double数组
+     */
+    public double[] getDoubleArray(int index) {
+        return (double[]) getArray(index, DataType.TYPE_DOUBLE);
+    }
+
+    /**
+     * 从本节点中指定位置获取子节点数组
+     * 使用{@link Tree#parserByteArrayView(byte[])}解析时每次获取都会创建新的子节点,对其修改不会影响本节点,
+     * 需要修改时应修改后再通过{@link Tree#setChildTreeArray(int, Tree[])}设置回来
+     */
+    public Tree[] getChildTreeArray(int index) {
+        return (Tree[]) getArray(index, DataType.TYPE_TREE);
+    }
+
+    private Object getArray(int index, int elementType) {
+        if (isArrayOf(index, elementType)) {
+            if (source != null) {
+                int offset = locate(index);
+                return offset < 0 ? null : ((FieldCodec.Array) schema.codecs[index]).valueAt(this, index, offset);
+            }
+            return refs[index];
+        }
+        return null;
+    }
+
+    /**
+     * 指定位置是否是元素为指定类型的数组
+     */
+    private boolean isArrayOf(int index, int elementType) {
+        if (index >= des.length) return false;
+        switch (des[index].type) {
+            case DataType.TYPE_ARRAY:
+            case DataType.TYPE_ARRAY0:
+            case DataType.TYPE_ARRAY1:
+            case DataType.TYPE_ARRAY2:
+            case DataType.TYPE_ARRAY1_BE:
+            case DataType.TYPE_ARRAY2_BE:
+                return des[index].elementType == elementType;
+            default:
+                return false;
+        }
     }
 
     /**
      * 将包含的所有内容转化为byte数组
      */
     public byte[] toByteArray() {
-        ByteArrayList list = new ByteArrayList();
-        for (int index = 0; index < des.length; index++) {
-            Tree field = node.get(index);
-            DataDescribe dataDescribe = des[index];
-            switch (dataDescribe.type) {
-                case DataType.TYPE_U8:
-                case DataType.TYPE_S8:
-                case DataType.TYPE_U16:
-                case DataType.TYPE_S16:
-                case DataType.TYPE_U32:
-                case DataType.TYPE_S32:
-                case DataType.TYPE_S64:
-                case DataType.TYPE_FLOAT:
-                case DataType.TYPE_DOUBLE:
-                    if (field == null || field.data == null) {
-                        list.addSize(dataDescribe.length);
-                    } else {
-                        list.add(field.data);
-                    }
-                    break;
-                case DataType.TYPE_MUABLE0:
-                    if (field == null || field.data == null) {
-                        list.add((byte) 0);
-                    } else {
-                        list.add(field.data);
-                    }
-                    break;
-                case DataType.TYPE_MUABLE1:
-                    if (field == null || field.data == null) {
-                        list.add((short) 0, true);
-                    } else {
-                        list.add(field.data);
-                    }
-                    break;
-                case DataType.TYPE_MUABLE2:
-                    if (field == null || field.data == null) {
-                        list.add(0, true);
-                    } else {
-                        list.add(field.data);
-                    }
-                    break;
-                case DataType.TYPE_MUABLE1_BE:
-                    if (field == null || field.data == null) {
-                        list.add((short) 0, false);
-                    } else {
-                        list.add(field.data);
-                    }
-                    break;
-                case DataType.TYPE_MUABLE2_BE:
-                    if (field == null || field.data == null) {
-                        list.add(0, false);
-                    } else {
-                        list.add(field.data);
-                    }
-                    break;
-                case DataType.TYPE_TREE:
-                    if (field != null) {
-                        list.add(field.toByteArray());
-                    }
-                    break;
-                case DataType.TYPE_RAW:
-                    if (field == null || field.data == null) {
-                        list.addSize(dataDescribe.length);
-                    } else {
-                        if (dataDescribe.length != 0 && field.data.length != dataDescribe.length) {
-                            list.add(Arrays.copyOf(field.data, dataDescribe.length));
-                        } else {
-                            list.add(field.data);
-                        }
-                    }
-                    break;
-                default:
-                    throw new IllegalMonitorStateException("don't have the type " + dataDescribe.type);
+        byte[] rst = new byte[encodedSize()];
+        write(rst, 0);
+        return rst;
+    }
+
+    /**
+     * 计算包含的所有内容编码后的总长度,即{@link Tree#toByteArray()}返回的数组的长度
+     */
+    public int encodedSize() {
+        FieldCodec[] codecs = schema.codecs;
+        if (source != null) {
+            int size = 0;
+            for (int index = 0; index < codecs.length; index++) {
+                if (codecs[index] instanceof FieldCodec.Child && isChildParsed(index)) {
+                    size += codecs[index].size(this, index);
+                } else {
+                    size += offsetOf(index) >= 0 ? lengthOf(index) : codecs[index].emptyLength;
+                }
+            }
+            return size;
+        }
+        if (schema.firstVariableIndex == -1) {
+            return schema.fixedLength;
+        }
+        int size = schema.fixedLength;
+        for (int index = schema.firstVariableIndex; index < codecs.length; index++) {
+            size += codecs[index].size(this, index);
+        }
+        return size;
+    }
+
+    /**
+     * 将包含的所有内容写入dst中从off开始的位置,每个字节只会写入一次,不会产生中间数组
+     *
+     * @return 写入的长度
+     * @throws IndexOutOfBoundsException dst中从off开始的剩余空间不足{@link Tree#encodedSize()}时
+     */
+    public int writeTo(byte[] dst, int off) {
+        int size = encodedSize();
+        if (off < 0 || dst.length - off < size) {
+            throw new IndexOutOfBoundsException("Offset: " + off + ", Size: " + size + ", Length: " + dst.length);
+        }
+        write(dst, off);
+        return size;
+    }
+
+    /**
+     * 将包含的所有内容写入buffer的当前位置,写入后buffer的位置会向后移动写入的长度,buffer的字节序不会改变
+     *
+     * @return 写入的长度
+     * @throws BufferOverflowException buffer的剩余空间不足{@link Tree#encodedSize()}时
+     */
+    public int writeTo(ByteBuffer buffer) {
+        int size = encodedSize();
+        if (buffer.remaining() < size) {
+            throw new BufferOverflowException();
+        }
+        if (buffer.hasArray()) {
+            write(buffer.array(), buffer.arrayOffset() + buffer.position());
+            buffer.position(buffer.position() + size);
+        } else {
+            ByteOrder order = buffer.order();
+            try {
+                write(buffer);
+            } finally {
+                buffer.order(order);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * 将包含的所有内容按描述的顺序写入dst的off位置
+     *
+     * @return 写入后的位置
+     */
+    int write(byte[] dst, int off) {
+        FieldCodec[] codecs = schema.codecs;
+        if (source != null) {
+            for (int index = 0; index < codecs.length; index++) {
+                int offset = offsetOf(index);
+                if (codecs[index] instanceof FieldCodec.Child && isChildParsed(index)) {
+                    off = codecs[index].write(this, index, dst, off);
+                } else if (offset >= 0) {
+                    int length = lengthOf(index);
+                    System.arraycopy(source, offset, dst, off, length);
+                    off += length;
+                } else {
+                    int emptyLength = codecs[index].emptyLength;
+                    Arrays.fill(dst, off, off + emptyLength, (byte) 0);
+                    off += emptyLength;
+                }
+            }
+        } else {
+            for (int index = 0; index < codecs.length; index++) {
+                off = codecs[index].write(this, index, dst, off);
             }
         }
-        return list.toArray();
+        return off;
+    }
+
+    /**
+     * 将包含的所有内容按描述的顺序写入buffer的当前位置
+     */
+    void write(ByteBuffer buffer) {
+        FieldCodec[] codecs = schema.codecs;
+        if (source != null) {
+            for (int index = 0; index < codecs.length; index++) {
+                int offset = offsetOf(index);
+                if (codecs[index] instanceof FieldCodec.Child && isChildParsed(index)) {
+                    codecs[index].write(this, index, buffer);
+                } else if (offset >= 0) {
+                    buffer.put(source, offset, lengthOf(index));
+                } else {
+                    for (int i = 0; i < codecs[index].emptyLength; i++) buffer.put((byte) 0);
+                }
+            }
+        } else {
+            for (int index = 0; index < codecs.length; index++) {
+                codecs[index].write(this, index, buffer);
+            }
+        }
+    }
+
+    /**
+     * 清空本树及所有子节点中的数据,以便再次使用
+     * <p>
+     * 不会释放已经分配的存储:子节点会保留并一同清空,字符串、原始数据和数组的存储会保留下来,
+     * 下次调用{@link Tree#parserByteArray(BytesReader)}时字符串和原始数据容量足够、数组长度相同则直接复用,所以调用后不能再使用之前get到的数组.
+     * 配合{@link Tree#parserByteArrayView(byte[], int, int)}或{@link TreePool}使用时,稳定运行后每次解析都不需要分配新的对象
+     */
+    public Tree reset() {
+        Arrays.fill(numbers, 0);
+        FieldCodec[] codecs = schema.codecs;
+        for (int index = 0; index < codecs.length; index++) {
+            codecs[index].reset(this, index);
+        }
+        source = null;
+        lazy = false;
+        projection = null;
+        return this;
+    }
+
+    /**
+     * 获取用于存放指定字段的byte数组,有容量足够的保留数组时直接复用,数组可能比length长
+     */
+    byte[] obtainBytes(int index, int length) {
+        Object spare = obtainSpare(index);
+        if (spare instanceof byte[] && ((byte[]) spare).length >= length) {
+            return (byte[]) spare;
+        }
+        return new byte[length];
+    }
+
+    /**
+     * 将data的前length个字节作为字符串或原始数据字段的内容,data为null时清空
+     */
+    void storeBytes(int index, byte[] data, int length) {
+        refs[index] = data;
+        numbers[index] = data == null ? 0 : length;
+    }
+
+    /**
+     * 获取字符串或原始数据字段的内容的长度,为null时返回0
+     */
+    int bytesLength(int index) {
+        return refs[index] == null ? 0 : (int) numbers[index];
+    }
+
+    /**
+     * 取出指定字段保留下来的存储,没有时返回null,由调用者判断类型和长度是否可以复用
+     * 取出后该字段即将存放本树自己分配的数据
+     */
+    Object obtainSpare(int index) {
+        if (foreign != null) foreign[index] = false;
+        if (spares == null) return null;
+        Object spare = spares[index];
+        spares[index] = null;
+        return spare;
+    }
+
+    /**
+     * 清空指定字段,并将其存储保留下来供下次解析时复用
+     *
+     * @return 是否保留了下来,由调用者传入的存储不会被保留
+     */
+    boolean recycle(int index) {
+        Object data = refs[index];
+        refs[index] = null;
+        if (data != null && (foreign == null || !foreign[index])) {
+            if (spares == null) spares = new Object[refs.length];
+            spares[index] = data;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 标记指定字段的存储由调用者持有
+     */
+    private void markForeign(int index) {
+        if (foreign == null) foreign = new boolean[refs.length];
+        foreign[index] = true;
     }
 
     /**
@@ -542,7 +1030,12 @@ public class Tree {
      */
     public Tree parserByteArray(byte[] src) {
         if (src != null) {
-            return parserByteArray(new BytesReader(src));
+            if (reader == null) {
+                reader = new BytesReader(src);
+            } else {
+                reader.reset(src, 0, src.length);
+            }
+            return parserByteArray(reader);
         }
         return this;
     }
@@ -553,48 +1046,232 @@ public class Tree {
      */
     public Tree parserByteArray(BytesReader reader) {
         if (reader != null) {
-            for (int index = 0; index < des.length; index++) {
-                DataDescribe dataDescribe = des[index];
-                switch (dataDescribe.type) {
-                    case DataType.TYPE_U8:
-                    case DataType.TYPE_S8:
-                    case DataType.TYPE_U16:
-                    case DataType.TYPE_S16:
-                    case DataType.TYPE_U32:
-                    case DataType.TYPE_S32:
-                    case DataType.TYPE_S64:
-                    case DataType.TYPE_FLOAT:
-                    case DataType.TYPE_DOUBLE:
-                        node.put(index, new Tree(reader.getBytes(dataDescribe.length)));
-                        break;
-                    case DataType.TYPE_MUABLE0:
-                        node.put(index, new Tree(reader.getBytes(1 + reader.spyU8())));
-                        break;
-                    case DataType.TYPE_MUABLE1:
-                        node.put(index, new Tree(reader.getBytes(2 + reader.spyU16(true))));
-                        break;
-                    case DataType.TYPE_MUABLE2:
-                        node.put(index, new Tree(reader.getBytes(4 + (int) reader.spyU32(true))));
-                        break;
-                    case DataType.TYPE_MUABLE1_BE:
-                        node.put(index, new Tree(reader.getBytes(2 + reader.spyU16(false))));
-                        break;
-                    case DataType.TYPE_MUABLE2_BE:
-                        node.put(index, new Tree(reader.getBytes(4 + (int) reader.spyU32(false))));
-                        break;
-                    case DataType.TYPE_TREE:
-                        Tree field = node.get(index);
-                        if (field != null) field.parserByteArray(reader);
-                        break;
-                    case DataType.TYPE_RAW:
-                        node.put(index, new Tree(dataDescribe.length > 0 ?
-                                reader.getBytes(dataDescribe.length) : reader.getResidue()));
-                        break;
-                    default:
-                        throw new IllegalMonitorStateException("don't have the type " + dataDescribe.type);
-                }
+            clearView();
+            FieldCodec[] codecs = schema.codecs;
+            for (int index = 0; index < codecs.length; index++) {
+                codecs[index].parse(this, index, reader);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * 不再引用原始数据,之后各字段的数据由解析时直接放入存储中
+     */
+    void clearView() {
+        source = null;
+        lazy = false;
+        projection = null;
+    }
+
+    /**
+     * 不拷贝数据,将byte数组 解析为 根据结构描述{@link Tree#des}的 树
+     */
+    public Tree parserByteArrayView(byte[] src) {
+        if (src != null) {
+            return parserByteArrayView(src, 0, src.length);
+        }
+        return this;
+    }
+
+    /**
+     * 不拷贝数据,将byte数组中从offset开始的length个字节 解析为 根据结构描述{@link Tree#des}的 树
+     * <p>
+     * 解析时只记录每个字段在src中的位置和长度,get方法直接从src中读取,不会为每个字段创建新的数组和节点,
+     * 所以在使用完本树之前不能修改src中的数据.
+     * 之后调用set方法时会先将引用的数据拷贝出来,不再引用src
+     */
+    public Tree parserByteArrayView(byte[] src, int offset, int length) {
+        if (src != null) {
+            view(src, offset, offset + length);
+        }
+        return this;
+    }
+
+    /**
+     * 记录每个字段在src中的位置和长度
+     *
+     * @return 解析结束的位置
+     */
+    int view(byte[] src, int offset, int end) {
+        FieldCodec[] codecs = schema.codecs;
+        if (offsets == null) {
+            offsets = new int[codecs.length];
+            lengths = new int[codecs.length];
+        }
+        source = src;
+        lazy = false;
+        projection = null;
+        int index = 0;
+        if (end - offset >= schema.fixedLength) {
+            // 第一个可变长度字段之前的字段的位置都是固定的,不需要再逐个计算
+            int fixedCount = schema.firstVariableIndex == -1 ? codecs.length : schema.firstVariableIndex;
+            int[] fixedOffsets = schema.fixedOffsets;
+            for (; index < fixedCount; index++) {
+                offsets[index] = offset + fixedOffsets[index];
+                lengths[index] = codecs[index].fixedLength;
+            }
+            offset += schema.fixedLength;
+        }
+        for (; index < codecs.length; index++) {
+            int length;
+            if (codecs[index] instanceof FieldCodec.Child) {
+                Tree field = (Tree) refs[index];
+                length = field != null ? field.view(src, offset, end) - offset : 0;
+            } else {
+                length = codecs[index].measure(this, index, src, offset, end);
             }
+            if (length < 0) {
+                offsets[index] = -1;
+                lengths[index] = 0;
+            } else {
+                offsets[index] = offset;
+                lengths[index] = length;
+                offset += length;
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * 延迟解析,不拷贝数据,将byte数组 解析为 根据结构描述{@link Tree#des}的 树
+     */
+    public Tree parserByteArrayLazy(byte[] src, TreeProjection projection) {
+        if (src != null) {
+            return parserByteArrayLazy(src, 0, src.length, projection);
         }
         return this;
     }
+
+    /**
+     * 延迟解析,不拷贝数据,将byte数组中从offset开始的length个字节 解析为 根据结构描述{@link Tree#des}的 树
+     * <p>
+     * 解析时只读取可变长度字段的长度前缀,记录下每一段的起始位置,
+     * 其他字段的位置由所在段的起始位置和固定偏移得出,只有在调用get方法时才会去读取和解码.
+     * 与{@link Tree#parserByteArrayView(byte[], int, int)}一样,在使用完本树之前不能修改src中的数据
+     * <p>
+     * 数据不足时,超出范围的字段视为不存在
+     *
+     * @param projection 需要获取的字段,未包含的字段只会根据长度跳过,为null时获取所有字段
+     */
+    public Tree parserByteArrayLazy(byte[] src, int offset, int length, TreeProjection projection) {
+        if (src != null) {
+            lazy(src, offset, offset + length, projection);
+        }
+        return this;
+    }
+
+    /**
+     * 记录src中每一段的起始位置,包含在投影中的子节点同样延迟解析,未包含的只计算长度
+     *
+     * @return 解析结束的位置,数据不足时返回-1
+     */
+    int lazy(byte[] src, int offset, int end, TreeProjection projection) {
+        FieldCodec[] codecs = schema.codecs;
+        int[] variableIndexes = schema.variableIndexes;
+        if (segmentStarts == null) {
+            segmentStarts = new int[variableIndexes.length + 1];
+        }
+        if (lengths == null) {
+            lengths = new int[codecs.length];
+        }
+        source = src;
+        sourceEnd = end;
+        lazy = true;
+        this.projection = projection;
+        int start = offset;
+        segmentStarts[0] = start;
+        for (int k = 0; k < variableIndexes.length; k++) {
+            int index = variableIndexes[k];
+            int length = -1;
+            if (start >= 0 && start + schema.segmentOffsets[index] <= end) {
+                int fieldOffset = start + schema.segmentOffsets[index];
+                if (codecs[index] instanceof FieldCodec.Child && isChildParsed(index)) {
+                    Tree field = (Tree) refs[index];
+                    if (field == null) {
+                        length = 0;
+                    } else {
+                        int fieldEnd = field.lazy(src, fieldOffset, end, projection == null ? null : projection.getChild(index));
+                        length = fieldEnd < 0 ? -1 : fieldEnd - fieldOffset;
+                    }
+                } else {
+                    length = codecs[index].measure(this, index, src, fieldOffset, end);
+                }
+                start = length < 0 ? -1 : fieldOffset + length;
+            } else {
+                start = -1;
+            }
+            lengths[index] = length;
+            segmentStarts[k + 1] = start;
+        }
+        return start >= 0 && start + schema.tailLength <= end ? start + schema.tailLength : -1;
+    }
+
+    /**
+     * 不修改任何数据,计算src中从offset开始的数据按本树的结构占用的长度,数据不足时返回-1
+     */
+    int measure(byte[] src, int offset, int end) {
+        FieldCodec[] codecs = schema.codecs;
+        int[] variableIndexes = schema.variableIndexes;
+        int start = offset;
+        for (int index : variableIndexes) {
+            int fieldOffset = start + schema.segmentOffsets[index];
+            if (fieldOffset > end) return -1;
+            int length = codecs[index].measure(this, index, src, fieldOffset, end);
+            if (length < 0) return -1;
+            start = fieldOffset + length;
+        }
+        return start + schema.tailLength <= end ? start + schema.tailLength - offset : -1;
+    }
+
+    /**
+     * 获取字段在{@link Tree#source}中的位置,不存在时返回-1
+     */
+    int offsetOf(int index) {
+        if (!lazy) return offsets[index];
+        int start = segmentStarts[schema.segments[index]];
+        if (start < 0) return -1;
+        int offset = start + schema.segmentOffsets[index];
+        int length = lengthOf(index);
+        return length >= 0 && length <= sourceEnd - offset ? offset : -1;
+    }
+
+    /**
+     * 获取字段在{@link Tree#source}中占用的长度
+     */
+    int lengthOf(int index) {
+        if (!lazy) return lengths[index];
+        int fixedLength = schema.codecs[index].fixedLength;
+        return fixedLength >= 0 ? fixedLength : lengths[index];
+    }
+
+    /**
+     * get方法获取字段在{@link Tree#source}中的位置,延迟解析时未包含在投影中的字段视为不存在
+     */
+    private int locate(int index) {
+        if (projection != null && !projection.contains(index)) return -1;
+        return offsetOf(index);
+    }
+
+    /**
+     * 子节点是否与本树同时解析过,只有延迟解析时未包含在投影中的子节点没有被解析
+     */
+    boolean isChildParsed(int index) {
+        return !lazy || projection == null || projection.contains(index);
+    }
+
+    /**
+     * 将引用的原始数据解码到各字段的存储中,之后不再引用原始数据
+     */
+    private void detach() {
+        if (source != null) {
+            FieldCodec[] codecs = schema.codecs;
+            for (int index = 0; index < codecs.length; index++) {
+                codecs[index].detach(this, index);
+            }
+            source = null;
+            lazy = false;
+            projection = null;
+        }
+    }
 }
@@ -0,0 +1,82 @@
+package com.github.bytesutils;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * 同一结构的{@link Tree}的对象池,线程安全
+ * <p>
+ * 使用方式:
+ * 通过{@link TreePool#obtain()}获取一个Tree,解析或构建完成后调用{@link TreePool#recycle(Tree)}归还,
+ * 归还时会调用{@link Tree#reset()}清空数据,但保留已经分配的存储,所以归还后不能再使用该Tree以及从中get到的byte数组,重复归还同一个Tree会被忽略.
+ * 池中最多保存maxSize个Tree,池为空时会创建新的Tree,池已满时归还的Tree会被丢弃
+ */
+public class TreePool {
+
+    /**
+     * 池为空时用于创建新的Tree,包含子节点时需要在这里一并设置好子节点
+     */
+    public interface Factory {
+        Tree create();
+    }
+
+    private final ArrayBlockingQueue<Tree> trees;
+    private final Factory factory;
+
+    /**
+     * @param maxSize 池中最多保存的Tree的数量
+     * @param factory 池为空时用于创建新的Tree
+     */
+    public TreePool(int maxSize, Factory factory) {
+        trees = new ArrayBlockingQueue<>(maxSize);
+        this.factory = factory;
+    }
+
+    /**
+     * 创建不包含子节点的Tree的对象池,所有Tree共享同一个编译好的布局
+     */
+    public TreePool(final CompiledSchema schema, int maxSize) {
+        this(maxSize, new Factory() {
+            @Override
+            public Tree create() {
+                return new Tree(schema);
+            }
+        });
+    }
+
+    /**
+     * 创建不包含子节点的Tree的对象池,所有Tree共享同一个编译好的布局
+     */
+    public TreePool(DataDescribe[] des, int maxSize) {
+        this(new CompiledSchema(des), maxSize);
+    }
+
+    /**
+     * 从池中获取一个Tree,池为空时创建一个新的
+     */
+    public Tree obtain() {
+        Tree tree = trees.poll();
+        if (tree == null) return factory.create();
+        tree.recycled = false;
+        return tree;
+    }
+
+    /**
+     * 清空Tree中的数据后归还到池中,池已满时丢弃,已经归还过的Tree再次归还时忽略
+     */
+    public void recycle(Tree tree) {
+        if (tree != null) {
+            synchronized (tree) {
+                if (tree.recycled) return;
+                tree.recycled = true;
+            }
+            trees.offer(tree.reset());
+        }
+    }
+
+    /**
+     * 获取池中当前保存的Tree的数量
+     */
+    public int size() {
+        return trees.size();
+    }
+}
@@ -0,0 +1,67 @@
+package com.github.bytesutils;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * 延迟解析{@link Tree#parserByteArrayLazy(byte[], int, int, TreeProjection)}时需要获取的字段
+ * <p>
+ * 未包含的字段在解析时只会根据长度跳过,获取时会默认返回0或null;
+ * 未包含的子节点不会被解析,{@link Tree#getChildTree(int)}会返回null
+ * <p>
+ * 使用方式:
+ * new TreeProjection(1, 3).addChild(0, new TreeProjection(2))
+ * 表示需要获取第1个和第3个字段,以及第0个子节点中的第2个字段
+ */
+public class TreeProjection {
+    /**
+     * 需要获取的字段的索引
+     */
+    private final BitSet fields = new BitSet();
+    /**
+     * 子节点中需要获取的字段,为null时获取子节点的所有字段
+     */
+    private TreeProjection[] children = new TreeProjection[0];
+
+    public TreeProjection(int... indexes) {
+        add(indexes);
+    }
+
+    /**
+     * 添加需要获取的字段
+     */
+    public TreeProjection add(int... indexes) {
+        for (int index : indexes) {
+            fields.set(index);
+        }
+        return this;
+    }
+
+    /**
+     * 添加需要获取的子节点,以及该子节点中需要获取的字段
+     *
+     * @param child 为null时获取该子节点的所有字段
+     */
+    public TreeProjection addChild(int index, TreeProjection child) {
+        fields.set(index);
+        if (index >= children.length) {
+            children = Arrays.copyOf(children, index + 1);
+        }
+        children[index] = child;
+        return this;
+    }
+
+    /**
+     * 是否需要获取指定的字段
+     */
+    public boolean contains(int index) {
+        return fields.get(index);
+    }
+
+    /**
+     * 获取指定的子节点中需要获取的字段,为null时表示获取该子节点的所有字段
+     */
+    public TreeProjection getChild(int index) {
+        return index < children.length ? children[index] : null;
+    }
+}
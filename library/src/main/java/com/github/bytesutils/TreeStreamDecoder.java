@@ -0,0 +1,374 @@
+package com.github.bytesutils;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+
+/**
+ * 从{@link InputStream}或{@link ReadableByteChannel}中流式解析{@link Tree}
+ * <p>
+ * 数据通过固定大小的缓冲区读入,按描述的顺序逐个字段解析,不需要事先将整个数据读入byte数组.
+ * 字段跨越两次读取的边界时会保存当前解析到的位置,数据到达后从中断的位置继续,
+ * 超出缓冲区大小的字段会直接读入与其长度相同的数组中,所以无论流有多长,占用的内存只与单个Tree的大小有关.
+ * 读取到的超出当前Tree的数据会保留在缓冲区中,用于解析下一个Tree
+ * <p>
+ * 使用方式:
+ * while (decoder.decode(in, tree)) { ...使用tree中的数据 }
+ * 非阻塞的channel暂时没有数据时{@link TreeStreamDecoder#decode(ReadableByteChannel, Tree)}返回false,
+ * 之后再次使用同一个tree调用即可继续解析,通过{@link TreeStreamDecoder#isEndOfStream()}区分是否已经读取到流的结尾
+ * <p>
+ * 未指定长度的{@link DataType#TYPE_RAW}会读取到流的结尾为止;非线程安全
+ */
+public class TreeStreamDecoder {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    /**
+     * 正在解析的一层节点
+     */
+    private static final class Frame {
+        Tree tree;
+        /**
+         * 正在解析的字段的索引
+         */
+        int index;
+        /**
+         * 正在解析的子节点数组,不在解析子节点数组时为null
+         */
+        Tree[] elements;
+        /**
+         * 正在解析的子节点数组中元素的索引
+         */
+        int element;
+    }
+
+    private final byte[] buffer;
+    private final ByteBuffer channelBuffer;
+    private int pos;
+    private int limit;
+    private final BytesReader reader = new BytesReader(EMPTY);
+    private int maxFieldLength = 16 * 1024 * 1024;
+
+    private Frame[] frames = new Frame[4];
+    private int depth;
+    /**
+     * 当前Tree是否已经消耗了数据,用来区分流是在两个Tree之间结束还是在Tree中间被截断
+     */
+    private boolean consumed;
+    /**
+     * 超出缓冲区大小的字段直接读入的数组,以及已经读入的长度
+     */
+    private byte[] spill;
+    private ByteBuffer spillBuffer;
+    private int spillFilled;
+    /**
+     * 读取未指定长度的原始数据时保存已经读取到的数据
+     */
+    private ByteArrayList tail;
+    /**
+     * 未指定长度的原始数据读取到流的结尾后,剩余的字段都按没有数据处理
+     */
+    private boolean drained;
+    private boolean endOfStream;
+
+    private InputStream in;
+    private ReadableByteChannel channel;
+
+    /**
+     * 使用4096字节的缓冲区
+     */
+    public TreeStreamDecoder() {
+        this(4096);
+    }
+
+    /**
+     * @param bufferSize 缓冲区的大小,最小为16
+     */
+    public TreeStreamDecoder(int bufferSize) {
+        buffer = new byte[Math.max(bufferSize, 16)];
+        channelBuffer = ByteBuffer.wrap(buffer);
+    }
+
+    /**
+     * 设置单个字段允许的最大长度,超出时抛出IOException,用来防止错误的长度前缀导致分配过大的数组
+     * 默认为16M
+     */
+    public TreeStreamDecoder setMaxFieldLength(int maxFieldLength) {
+        this.maxFieldLength = maxFieldLength;
+        return this;
+    }
+
+    /**
+     * 从阻塞的输入流中解析出一个完整的Tree
+     *
+     * @return 是否解析出了一个完整的Tree,流在两个Tree之间结束时返回false
+     * @throws EOFException 流在Tree的中间结束时
+     */
+    public boolean decode(InputStream in, Tree tree) throws IOException {
+        this.in = in;
+        try {
+            return decode(tree);
+        } finally {
+            this.in = null;
+        }
+    }
+
+    /**
+     * 从channel中解析出一个完整的Tree,channel可以是非阻塞的
+     *
+     * @return 是否解析出了一个完整的Tree,暂时没有数据或者流在两个Tree之间结束时返回false
+     * @throws EOFException 流在Tree的中间结束时
+     */
+    public boolean decode(ReadableByteChannel channel, Tree tree) throws IOException {
+        this.channel = channel;
+        try {
+            return decode(tree);
+        } finally {
+            this.channel = null;
+        }
+    }
+
+    /**
+     * 是否已经读取到流的结尾
+     */
+    public boolean isEndOfStream() {
+        return endOfStream;
+    }
+
+    /**
+     * 是否有Tree解析到一半,正在等待数据
+     */
+    public boolean isDecoding() {
+        return depth > 0;
+    }
+
+    /**
+     * 获取缓冲区中已经读取但还未解析的数据的长度
+     */
+    public int buffered() {
+        return limit - pos;
+    }
+
+    /**
+     * 丢弃解析到一半的Tree和缓冲区中的数据,之后可以从新的流开始解析
+     */
+    public void reset() {
+        Arrays.fill(frames, 0, depth, null);
+        depth = 0;
+        pos = 0;
+        limit = 0;
+        spill = null;
+        spillBuffer = null;
+        tail = null;
+        drained = false;
+        endOfStream = false;
+    }
+
+    private boolean decode(Tree tree) throws IOException {
+        if (depth == 0) {
+            if (endOfStream) return false;
+            consumed = false;
+            drained = false;
+            push(tree);
+        } else if (frames[0].tree != tree) {
+            throw new IllegalStateException("another tree is being decoded");
+        }
+        while (depth > 0) {
+            Frame frame = frames[depth - 1];
+            FieldCodec[] codecs = frame.tree.schema.codecs;
+            if (frame.index == codecs.length) {
+                pop();
+                continue;
+            }
+            Tree current = frame.tree;
+            int index = frame.index;
+            FieldCodec codec = codecs[index];
+            if (frame.elements != null) {
+                if (frame.element < frame.elements.length) {
+                    push(frame.elements[frame.element]);
+                } else {
+                    frame.elements = null;
+                    frame.index++;
+                }
+            } else if (drained) {
+                codec.parse(current, index, reader.reset(EMPTY, 0, 0));
+                frame.index++;
+            } else if (codec instanceof FieldCodec.Child) {
+                Tree child = (Tree) current.refs[index];
+                if (child == null) {
+                    frame.index++;
+                } else {
+                    push(child);
+                }
+            } else if (codec instanceof FieldCodec.TreeArray) {
+                if (!startElements(frame, (FieldCodec.TreeArray) codec)) return false;
+            } else if (codec instanceof FieldCodec.Raw && ((FieldCodec.Raw) codec).length <= 0) {
+                if (!drain(current, index, codec)) return false;
+                frame.index++;
+            } else if (codec instanceof FieldCodec.Unsupported) {
+                codec.parse(current, index, reader);
+            } else {
+                if (!field(current, index, codec)) return false;
+                frame.index++;
+            }
+        }
+        return true;
+    }
+
+    private void push(Tree tree) {
+        if (depth == frames.length) frames = Arrays.copyOf(frames, depth * 2);
+        Frame frame = frames[depth];
+        if (frame == null) frame = frames[depth] = new Frame();
+        frame.tree = tree;
+        frame.index = 0;
+        frame.elements = null;
+        frame.element = 0;
+        depth++;
+        tree.clearView();
+    }
+
+    private void pop() {
+        frames[--depth].tree = null;
+        if (depth > 0) {
+            Frame parent = frames[depth - 1];
+            if (parent.elements != null) {
+                parent.element++;
+            } else {
+                parent.index++;
+            }
+        }
+    }
+
+    /**
+     * 读取子节点数组的个数前缀,准备好存放元素的数组
+     *
+     * @return 数据不足时返回false
+     */
+    private boolean startElements(Frame frame, FieldCodec.TreeArray codec) throws IOException {
+        while (limit - pos < codec.prefixLength) {
+            if (!fill()) return false;
+        }
+        long count = codec.countAt(buffer, pos);
+        checkLength(count * codec.minSize);
+        pos += codec.prefixLength;
+        consumed = true;
+        Tree[] elements = codec.obtainElements(frame.tree, frame.index, (int) count);
+        frame.tree.refs[frame.index] = elements;
+        frame.elements = elements;
+        frame.element = 0;
+        return true;
+    }
+
+    /**
+     * 解析一个可以得出长度的字段,超出缓冲区大小时直接读入与其长度相同的数组中
+     *
+     * @return 数据不足时返回false
+     */
+    private boolean field(Tree tree, int index, FieldCodec codec) throws IOException {
+        if (spill == null) {
+            long length;
+            while ((length = codec.requiredLength(buffer, pos, limit)) < 0 || length > limit - pos) {
+                if (length > buffer.length) {
+                    checkLength(length);
+                    spill = new byte[(int) length];
+                    spillBuffer = null;
+                    spillFilled = limit - pos;
+                    System.arraycopy(buffer, pos, spill, 0, spillFilled);
+                    pos = limit;
+                    consumed = true;
+                    break;
+                }
+                if (!fill()) return false;
+            }
+            if (spill == null) {
+                codec.parse(tree, index, reader.reset(buffer, pos, limit));
+                pos += (int) length;
+                consumed = true;
+                return true;
+            }
+        }
+        while (spillFilled < spill.length) {
+            int n = read(spill, spillFilled, spill.length - spillFilled);
+            if (n < 0) throw new EOFException();
+            if (n == 0) return false;
+            spillFilled += n;
+        }
+        codec.parse(tree, index, reader.reset(spill, 0, spill.length));
+        spill = null;
+        spillBuffer = null;
+        return true;
+    }
+
+    /**
+     * 读取未指定长度的原始数据,直到流的结尾
+     *
+     * @return 数据不足时返回false
+     */
+    private boolean drain(Tree tree, int index, FieldCodec codec) throws IOException {
+        if (tail == null) tail = new ByteArrayList(buffer.length);
+        while (true) {
+            if (limit > pos) {
+                tail.add(buffer, pos, limit - pos);
+                pos = limit;
+                consumed = true;
+            }
+            pos = limit = 0;
+            int n = read(buffer, 0, buffer.length);
+            if (n < 0) break;
+            if (n == 0) return false;
+            limit = n;
+        }
+        endOfStream = true;
+        drained = true;
+        byte[] data = tail.toArray();
+        codec.parse(tree, index, reader.reset(data, 0, data.length));
+        tail = null;
+        return true;
+    }
+
+    /**
+     * 读取更多的数据到缓冲区中,缓冲区已满时先将未解析的数据移动到开头
+     *
+     * @return 是否读取到了数据
+     * @throws EOFException 流在Tree的中间结束时
+     */
+    private boolean fill() throws IOException {
+        if (limit == buffer.length && pos > 0) {
+            System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        }
+        int n = read(buffer, limit, buffer.length - limit);
+        if (n < 0) {
+            endOfStream = true;
+            if (consumed || pos < limit) throw new EOFException();
+            reset();
+            endOfStream = true;
+            return false;
+        }
+        limit += n;
+        return n > 0;
+    }
+
+    private int read(byte[] dst, int off, int len) throws IOException {
+        if (in != null) return in.read(dst, off, len);
+        ByteBuffer target;
+        if (dst == buffer) {
+            target = channelBuffer;
+        } else {
+            if (spillBuffer == null) spillBuffer = ByteBuffer.wrap(spill);
+            target = spillBuffer;
+        }
+        target.limit(off + len).position(off);
+        return channel.read(target);
+    }
+
+    private void checkLength(long length) throws IOException {
+        if (length > maxFieldLength) {
+            throw new IOException("field length " + length + " exceeds " + maxFieldLength);
+        }
+    }
+}
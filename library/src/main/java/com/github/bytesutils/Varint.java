@@ -0,0 +1,88 @@
+package com.github.bytesutils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * LEB128变长整数和ZigZag编码
+ * <p>
+ * 每个字节的低7位为数据,从低位开始存放,最高位为1表示后面还有字节;
+ * 有符号数先经过ZigZag编码将绝对值较小的负数映射为较小的无符号数,如 0->0 -1->1 1->2 -2->3
+ */
+final class Varint {
+
+    /**
+     * 32位和64位的变长整数最多占用的字节数
+     */
+    static final int MAX_LENGTH32 = 5;
+    static final int MAX_LENGTH64 = 10;
+
+    private Varint() {
+    }
+
+    static long zigzag(long n) {
+        return (n << 1) ^ (n >> 63);
+    }
+
+    static long unzigzag(long n) {
+        return (n >>> 1) ^ -(n & 1);
+    }
+
+    /**
+     * 获取无符号的value编码后占用的字节数
+     */
+    static int sizeOf(long value) {
+        // 每7位一个字节,value为0时也占用1个字节
+        return (63 - Long.numberOfLeadingZeros(value | 1)) / 7 + 1;
+    }
+
+    /**
+     * 将无符号的value编码到dst的off位置
+     *
+     * @return 写入后的位置
+     */
+    static int write(long value, byte[] dst, int off) {
+        while ((value & ~0x7FL) != 0) {
+            dst[off++] = (byte) (value | 0x80);
+            value >>>= 7;
+        }
+        dst[off++] = (byte) value;
+        return off;
+    }
+
+    /**
+     * 将无符号的value编码到buffer的当前位置
+     */
+    static void write(long value, ByteBuffer buffer) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) (value | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * 获取src中从off开始的变长整数占用的字节数
+     *
+     * @param maxLength 最多占用的字节数
+     * @return 数据不完整时返回-1,超过maxLength个字节还没有结束时返回-2
+     */
+    static int lengthAt(byte[] src, int off, int end, int maxLength) {
+        for (int i = 0; i < maxLength; i++) {
+            if (off + i >= end) return -1;
+            if (src[off + i] >= 0) return i + 1;
+        }
+        return -2;
+    }
+
+    /**
+     * 解码src中从off开始的变长整数,调用前需要通过{@link Varint#lengthAt(byte[], int, int, int)}确认数据完整
+     */
+    static long readAt(byte[] src, int off) {
+        long rst = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = src[off++];
+            rst |= (long) (b & 0x7f) << shift;
+            if (b >= 0) return rst;
+        }
+    }
+}